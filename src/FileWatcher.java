@@ -4,6 +4,7 @@ import javax.swing.UnsupportedLookAndFeelException;
 import controller.FileListController;
 import controller.FileWatcherController;
 import controller.LogController;
+import model.EventBus;
 import model.SystemWatch;
 import view.MainFrame;
 
@@ -32,11 +33,12 @@ public class FileWatcher {
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
-                SystemWatch sysWatch = new SystemWatch(propertyChangeSupport);
+                EventBus eventBus = new EventBus();
+                SystemWatch sysWatch = new SystemWatch(propertyChangeSupport, eventBus);
                 MainFrame view = new MainFrame(propertyChangeSupport);
                 new FileWatcherController(propertyChangeSupport, sysWatch);
                 new FileListController(propertyChangeSupport);
-                new LogController(propertyChangeSupport);
+                new LogController(propertyChangeSupport, eventBus);
                 view.setVisible(true);
             }
         });
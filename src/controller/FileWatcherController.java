@@ -6,6 +6,7 @@ import java.beans.PropertyChangeSupport;
 import java.nio.file.Path;
 
 import model.DBFriend;
+import model.ExportFormat;
 import model.ModelProperties;
 import model.SystemWatch;
 import view.ViewProperties;
@@ -72,7 +73,11 @@ public class FileWatcherController implements PropertyChangeListener {
                  myDBFriend.getTableModel((String[]) theEvent.getNewValue());
                 break;
             case ViewProperties.EMAIL:
-                myDBFriend.sendEmail((String) theEvent.getNewValue());
+                String[] receivedEmail = (String[]) theEvent.getNewValue();
+                myDBFriend.sendEmail(receivedEmail[0], ExportFormat.valueOf(receivedEmail[1]));
+                break;
+            case ViewProperties.CANCEL_EXPORT:
+                myDBFriend.cancelExport();
                 break;
             default:
                 break;
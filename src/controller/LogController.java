@@ -1,47 +1,75 @@
 package controller;
 
-import model.Event;
+import model.EventBus;
 import model.LogListModel;
 import model.ModelProperties;
+import model.UiPublisher;
 import view.ViewProperties;
 
 import javax.swing.*;
-import javax.swing.event.TableModelEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 
 /**
  * The LogController keeps track of events, listens for updates, and adds new events to the log table.
+ * Events arrive in batches on the event bus from the watcher's threads and reach the table on the
+ * event dispatch thread through a {@link UiPublisher}, so a burst of events never waits for the table to repaint.
  */
 public class LogController implements PropertyChangeListener {
     private static final LogListModel myLogListModel = new LogListModel();
     private static final JTable myJTable = new JTable(myLogListModel);
     private final PropertyChangeSupport myPCS;
+    private final UiPublisher myPublisher;
+
+    /**
+     * Whether the log table had rows the last time it changed, so its first rows are announced once.
+     */
+    private boolean myHasRows;
 
     /**
      * Sets up the log controller and listens for updates.
      *
      * @param thePCS Notifies the UI and other system components when the log changes.
+     * @param theBus Delivers the batches of events caught by the watcher.
      */
-    public LogController(final PropertyChangeSupport thePCS) {
+    public LogController(final PropertyChangeSupport thePCS, final EventBus theBus) {
         myPCS = thePCS;
+        myPublisher = new UiPublisher(UiPublisher.DEFAULT_RATE, myLogListModel.getWindow(),
+                myLogListModel::addEvents, this::showStats);
         myPCS.addPropertyChangeListener(this);
+        theBus.subscribe(EventBus.EVENTS, myPublisher::offer);
 
         initTableListener();
     }
 
     /**
-     * Tracks changes in the log table and informs other components when updates occur.
+     * Tracks changes in the log table and informs other components when the table gets its first
+     * rows after being empty, whatever kind of change brought them. Later rows are shown by the
+     * same model, so nothing is sent for them.
      */
     private void initTableListener() {
         myJTable.getModel().addTableModelListener(theEvent -> {
-            if (theEvent.getType() == TableModelEvent.INSERT) {
+            boolean hasRows = myLogListModel.getRowCount() > 0;
+            if (hasRows && !myHasRows) {
                 myPCS.firePropertyChange(ModelProperties.LOG_LIST_MODEL_UPDATED, null, myJTable.getModel());
             }
+            myHasRows = hasRows;
         });
     }
 
+    /**
+     * Tells the UI how fast events arrive and how many are no longer in view, either because
+     * newer events pushed them out of the table or because they were skipped before being shown.
+     *
+     * @param theRate    The number of events per second.
+     * @param theSkipped The number of events skipped before being shown.
+     */
+    private void showStats(final long theRate, final long theSkipped) {
+        myPCS.firePropertyChange(ModelProperties.LOG_STATS, null,
+                new long[] {theRate, theSkipped + myLogListModel.getDroppedCount()});
+    }
+
     /**
      * Checks if a file extension and directory combination exists in the table.
      *
@@ -63,18 +91,15 @@ public class LogController implements PropertyChangeListener {
     }
 
     /**
-     * Updates the log table when new events are added or clears it when needed.
+     * Clears the log table when the log is saved or cleared.
      *
      * @param theEvent The event containing details about the change.
      */
     @Override
     public void propertyChange(final PropertyChangeEvent theEvent) {
         switch (theEvent.getPropertyName()) {
-            case ModelProperties.EVENT:
-                Event eventDetails = (Event) theEvent.getNewValue();
-                myLogListModel.addRow(eventDetails.toArray());
-                break;
             case ViewProperties.SAVE_LOG, ViewProperties.CLEAR_LOG:
+                myPublisher.clear();
                 myLogListModel.clearTable();
                 break;
             default:
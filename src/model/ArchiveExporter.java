@@ -0,0 +1,327 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the rows of the event log that match some criteria to an event archive, the columnar
+ * format read by {@link EventArchive}. Rows are streamed from a read-only connection and written a
+ * block at a time, so no more than one block is held in memory however many rows match. Times
+ * keep the milliseconds stored in the database. The archive is written next to its destination
+ * and moved there once it is complete, so a failed or cancelled export leaves no partial file.
+ */
+final class ArchiveExporter implements EventExporter {
+
+    /**
+     * Number of rows in a block, unless another size is given.
+     */
+    static final int DEFAULT_BLOCK_ROWS = 1 << 16;
+
+    /**
+     * SQL that reads the archived columns, up to the search condition.
+     */
+    private static final String SELECT_COLUMNS = """
+            SELECT path, extension, event, ts, filename
+            FROM event_log WHERE\s""";
+
+    /**
+     * Criteria that select the rows to export.
+     */
+    private final SearchCriteria myCriteria;
+
+    /**
+     * Number of rows in a block.
+     */
+    private final int myBlockRows;
+
+    /**
+     * Index of every path, extension and event kind written so far, by column.
+     */
+    private final List<Map<String, Integer>> myDictionaries;
+
+    /**
+     * The blocks written so far.
+     */
+    private final List<EventArchive.Block> myBlocks;
+
+    /**
+     * The dictionary indexes of the rows of the block being built, by column.
+     */
+    private final int[][] myIds;
+
+    /**
+     * The times of the rows of the block being built.
+     */
+    private final long[] myTimes;
+
+    /**
+     * The file names of the rows of the block being built.
+     */
+    private final String[] myFileNames;
+
+    /**
+     * Compresses each block while an export runs.
+     */
+    private Deflater myDeflater;
+
+    /**
+     * Number of rows in the block being built.
+     */
+    private int myRows;
+
+    /**
+     * Offset in the file of the next byte to be written.
+     */
+    private long myOffset;
+
+    /**
+     * Flag indicating whether the export has been cancelled.
+     */
+    private volatile boolean myIsCancelled;
+
+    /**
+     * Constructs an ArchiveExporter.
+     *
+     * @param theCriteria  The criteria that select the rows to export.
+     * @param theBlockRows The number of rows in a block.
+     * @throws IllegalArgumentException if the block size is not positive
+     */
+    ArchiveExporter(final SearchCriteria theCriteria, final int theBlockRows) {
+        if (theBlockRows < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        myCriteria = theCriteria;
+        myBlockRows = theBlockRows;
+        myDictionaries = new ArrayList<>();
+        myBlocks = new ArrayList<>();
+        myIds = new int[EventArchive.DICTIONARY_COLUMNS][theBlockRows];
+        myTimes = new long[theBlockRows];
+        myFileNames = new String[theBlockRows];
+    }
+
+    @Override
+    public void cancel() {
+        myIsCancelled = true;
+    }
+
+    /**
+     * {@inheritDoc} The rows are counted first so progress can be reported against the total.
+     */
+    @Override
+    public long export(final Path theFile, final Progress theProgress) throws DatabaseException {
+        long total = count();
+        theProgress.update(0, total);
+        Path part = theFile.resolveSibling(theFile.getFileName() + ".part");
+        myDictionaries.clear();
+        for (int column = 0; column < EventArchive.DICTIONARY_COLUMNS; column++) {
+            myDictionaries.add(new HashMap<>());
+        }
+        myBlocks.clear();
+        myRows = 0;
+        myDeflater = new Deflater(Deflater.BEST_SPEED);
+        long written;
+        try {
+            if (theFile.getParent() != null) {
+                Files.createDirectories(theFile.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(part), 1 << 16))) {
+                out.writeInt(EventArchive.MAGIC);
+                myOffset = 4;
+                written = DBManager.getDBManager().read(SELECT_COLUMNS + myCriteria.getCondition(), theStatement -> {
+                    myCriteria.bind(theStatement, 1);
+                    try (ResultSet res = theStatement.executeQuery()) {
+                        return writeRows(res, out, total, theProgress);
+                    } catch (IOException theE) {
+                        throw new SQLException("Error writing event archive", theE);
+                    }
+                });
+                if (!myIsCancelled) {
+                    writeBlock(out);
+                    writeFooter(out);
+                }
+            }
+            if (myIsCancelled) {
+                throw new CancellationException("Archive export cancelled");
+            }
+            Files.move(part, theFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException theE) {
+            throw new DatabaseException("Could not write " + theFile, theE);
+        } finally {
+            myDeflater.end();
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException theE) {
+                System.err.println("Could not delete " + part + ": " + theE.getMessage());
+            }
+        }
+        theProgress.update(written, total);
+        return written;
+    }
+
+    /**
+     * Counts the matching rows.
+     *
+     * @return The number of rows the export will write.
+     * @throws DatabaseException if the rows could not be counted.
+     */
+    private long count() throws DatabaseException {
+        String sql = myCriteria.isEmpty()
+                ? "SELECT count(*) FROM events"
+                : "SELECT count(*) FROM event_log WHERE " + myCriteria.getCondition();
+        return DBManager.getDBManager().read(sql, theStatement -> {
+            myCriteria.bind(theStatement, 1);
+            try (ResultSet res = theStatement.executeQuery()) {
+                return res.next() ? res.getLong(1) : 0L;
+            }
+        });
+    }
+
+    /**
+     * Adds every row of a result set to blocks, writing each block once it is full and stopping
+     * early if the export is cancelled.
+     *
+     * @param theRes      The rows to write.
+     * @param theOut      The archive.
+     * @param theTotal    The number of rows expected, for progress reports.
+     * @param theProgress Receives progress reports.
+     * @return The number of rows written.
+     * @throws SQLException if the rows could not be read.
+     * @throws IOException  if a block could not be written.
+     */
+    private long writeRows(final ResultSet theRes, final DataOutputStream theOut, final long theTotal,
+                           final Progress theProgress) throws SQLException, IOException {
+        long written = 0;
+        while (theRes.next()) {
+            for (int column = 0; column < EventArchive.DICTIONARY_COLUMNS; column++) {
+                String value = theRes.getString(column + 1);
+                Map<String, Integer> dictionary = myDictionaries.get(column);
+                Integer id = dictionary.putIfAbsent(value == null ? "" : value, dictionary.size());
+                myIds[column][myRows] = id == null ? dictionary.size() - 1 : id;
+            }
+            myTimes[myRows] = theRes.getLong(4);
+            String fileName = theRes.getString(5);
+            myFileNames[myRows] = fileName == null ? "" : fileName;
+            if (++myRows == myBlockRows) {
+                writeBlock(theOut);
+            }
+            if (++written % CsvExporter.PROGRESS_INTERVAL == 0) {
+                if (myIsCancelled || Thread.currentThread().isInterrupted()) {
+                    myIsCancelled = true;
+                    return written;
+                }
+                theProgress.update(written, theTotal);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Encodes, compresses and writes the block being built, if it has any rows, and starts the next.
+     *
+     * @param theOut The archive.
+     * @throws IOException if the block could not be written.
+     */
+    private void writeBlock(final DataOutputStream theOut) throws IOException {
+        if (myRows == 0) {
+            return;
+        }
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(myRows * 16);
+        int[][] present = new int[EventArchive.DICTIONARY_COLUMNS][];
+        for (int column = 0; column < EventArchive.DICTIONARY_COLUMNS; column++) {
+            for (int row = 0; row < myRows; row++) {
+                EventArchive.writeVarLong(raw, myIds[column][row]);
+            }
+            present[column] = present(myIds[column]);
+        }
+        long previous = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int row = 0; row < myRows; row++) {
+            EventArchive.writeVarLong(raw, EventArchive.zigzag(myTimes[row] - previous));
+            previous = myTimes[row];
+            min = Math.min(min, previous);
+            max = Math.max(max, previous);
+        }
+        for (int row = 0; row < myRows; row++) {
+            byte[] name = myFileNames[row].getBytes(StandardCharsets.UTF_8);
+            EventArchive.writeVarLong(raw, name.length);
+            raw.write(name, 0, name.length);
+        }
+        byte[] input = raw.toByteArray();
+        myDeflater.reset();
+        myDeflater.setInput(input);
+        myDeflater.finish();
+        byte[] chunk = new byte[1 << 16];
+        int compressed = 0;
+        while (!myDeflater.finished()) {
+            int length = myDeflater.deflate(chunk);
+            theOut.write(chunk, 0, length);
+            compressed += length;
+        }
+        myBlocks.add(new EventArchive.Block(myOffset, compressed, input.length, myRows, min, max, present));
+        myOffset += compressed;
+        myRows = 0;
+        Arrays.fill(myFileNames, null);
+    }
+
+    /**
+     * Lists the distinct dictionary indexes of a column of the block being built, if there are few.
+     *
+     * @param theIds The indexes of the column.
+     * @return The distinct indexes in ascending order, or null if there are more than
+     * {@link EventArchive#PRESENT_LIMIT}.
+     */
+    private int[] present(final int[] theIds) {
+        int[] distinct = Arrays.copyOf(theIds, myRows);
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i] != distinct[i - 1]) {
+                if (count == EventArchive.PRESENT_LIMIT) {
+                    return null;
+                }
+                distinct[count++] = distinct[i];
+            }
+        }
+        return Arrays.copyOf(distinct, count);
+    }
+
+    /**
+     * Writes the dictionaries, the block list and the trailer.
+     *
+     * @param theOut The archive.
+     * @throws IOException if the footer could not be written.
+     */
+    private void writeFooter(final DataOutputStream theOut) throws IOException {
+        for (Map<String, Integer> dictionary : myDictionaries) {
+            String[] values = new String[dictionary.size()];
+            dictionary.forEach((theValue, theId) -> values[theId] = theValue);
+            theOut.writeInt(values.length);
+            for (String value : values) {
+                theOut.writeUTF(value);
+            }
+        }
+        theOut.writeInt(myBlocks.size());
+        for (EventArchive.Block block : myBlocks) {
+            block.write(theOut);
+        }
+        theOut.writeLong(myOffset);
+        theOut.writeInt(EventArchive.MAGIC);
+    }
+}
@@ -0,0 +1,263 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the rows of the event log that match some criteria to a CSV file. Rows are streamed from
+ * a read-only connection straight into a large direct buffer, so no more than one buffer of the
+ * file is held in memory however many rows match. The file can be gzip-compressed as it is written.
+ * Every field is quoted and quotes inside a field are doubled. The file is written next to its
+ * destination and moved there once it is complete, so a failed or cancelled export leaves no partial file.
+ */
+final class CsvExporter implements EventExporter {
+
+    /**
+     * Size of the write buffer in bytes.
+     */
+    static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Number of rows written between progress reports and checks for cancellation.
+     */
+    static final int PROGRESS_INTERVAL = 1 << 16;
+
+    /**
+     * SQL that reads the exported columns, up to the search condition.
+     */
+    private static final String SELECT_COLUMNS = "SELECT filename, extension, path, event, timestamp FROM event_log WHERE ";
+
+    /**
+     * First line of the file.
+     */
+    private static final String HEADER = "\"filename\",\"extension\",\"path\",\"event\",\"timestamp\"\n";
+
+    /**
+     * Criteria that select the rows to export.
+     */
+    private final SearchCriteria myCriteria;
+
+    /**
+     * Whether the file is gzip-compressed.
+     */
+    private final boolean myIsCompressed;
+
+    /**
+     * Buffer the rows are encoded into before they are written.
+     */
+    private final ByteBuffer myBuffer;
+
+    /**
+     * Flag indicating whether the export has been cancelled.
+     */
+    private volatile boolean myIsCancelled;
+
+    /**
+     * Constructs a CsvExporter.
+     *
+     * @param theCriteria   The criteria that select the rows to export.
+     * @param theCompressed true to gzip-compress the file, false to write plain CSV.
+     */
+    CsvExporter(final SearchCriteria theCriteria, final boolean theCompressed) {
+        myCriteria = theCriteria;
+        myIsCompressed = theCompressed;
+        myBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    @Override
+    public void cancel() {
+        myIsCancelled = true;
+    }
+
+    /**
+     * {@inheritDoc} The rows are counted first so progress can be reported against the total.
+     */
+    @Override
+    public long export(final Path theFile, final Progress theProgress) throws DatabaseException {
+        long total = count();
+        theProgress.update(0, total);
+        Path part = theFile.resolveSibling(theFile.getFileName() + ".part");
+        long written;
+        try {
+            if (theFile.getParent() != null) {
+                Files.createDirectories(theFile.getParent());
+            }
+            try (WritableByteChannel channel = open(part)) {
+                written = DBManager.getDBManager().read(SELECT_COLUMNS + myCriteria.getCondition(), theStatement -> {
+                    myCriteria.bind(theStatement, 1);
+                    try (ResultSet res = theStatement.executeQuery()) {
+                        return writeRows(res, channel, total, theProgress);
+                    } catch (IOException theE) {
+                        throw new SQLException("Error writing CSV", theE);
+                    }
+                });
+            }
+            if (myIsCancelled) {
+                throw new CancellationException("CSV export cancelled");
+            }
+            Files.move(part, theFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException theE) {
+            throw new DatabaseException("Could not write " + theFile, theE);
+        } finally {
+            myBuffer.clear();
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException theE) {
+                System.err.println("Could not delete " + part + ": " + theE.getMessage());
+            }
+        }
+        theProgress.update(written, total);
+        return written;
+    }
+
+    /**
+     * Counts the matching rows.
+     *
+     * @return The number of rows the export will write.
+     * @throws DatabaseException if the rows could not be counted.
+     */
+    private long count() throws DatabaseException {
+        String sql = myCriteria.isEmpty()
+                ? "SELECT count(*) FROM events"
+                : "SELECT count(*) FROM event_log WHERE " + myCriteria.getCondition();
+        return DBManager.getDBManager().read(sql, theStatement -> {
+            myCriteria.bind(theStatement, 1);
+            try (ResultSet res = theStatement.executeQuery()) {
+                return res.next() ? res.getLong(1) : 0L;
+            }
+        });
+    }
+
+    /**
+     * Opens the channel the file is written through.
+     *
+     * @param theFile The file to write.
+     * @return A channel to the file, compressing what is written to it if the file is compressed.
+     * @throws IOException if the file could not be opened.
+     */
+    private WritableByteChannel open(final Path theFile) throws IOException {
+        if (myIsCompressed) {
+            return Channels.newChannel(new GZIPOutputStream(Files.newOutputStream(theFile), BUFFER_SIZE));
+        }
+        return FileChannel.open(theFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Writes the header and every row of a result set, stopping early if the export is cancelled.
+     *
+     * @param theRes      The rows to write.
+     * @param theChannel  The destination of the CSV.
+     * @param theTotal    The number of rows expected, for progress reports.
+     * @param theProgress Receives progress reports.
+     * @return The number of rows written.
+     * @throws SQLException if the rows could not be read.
+     * @throws IOException  if the CSV could not be written.
+     */
+    private long writeRows(final ResultSet theRes, final WritableByteChannel theChannel, final long theTotal,
+                           final Progress theProgress) throws SQLException, IOException {
+        myBuffer.clear();
+        myBuffer.put(HEADER.getBytes(StandardCharsets.US_ASCII));
+        long written = 0;
+        while (theRes.next()) {
+            for (int column = 1; column <= 5; column++) {
+                putField(theRes.getString(column), theChannel);
+                myBuffer.put(column < 5 ? (byte) ',' : (byte) '\n');
+            }
+            if (++written % PROGRESS_INTERVAL == 0) {
+                if (myIsCancelled || Thread.currentThread().isInterrupted()) {
+                    myIsCancelled = true;
+                    return written;
+                }
+                theProgress.update(written, theTotal);
+            }
+        }
+        flush(theChannel);
+        return written;
+    }
+
+    /**
+     * Encodes one quoted field into the buffer, leaving room for the separator after it.
+     * ASCII text is copied a byte at a time; other text is encoded as UTF-8.
+     *
+     * @param theValue   The value of the field, or null for an empty field.
+     * @param theChannel The channel the buffer is flushed to when it is full.
+     * @throws IOException if the buffer could not be flushed.
+     */
+    private void putField(final String theValue, final WritableByteChannel theChannel) throws IOException {
+        String value = theValue == null ? "" : theValue;
+        // the worst case of ASCII text is every character a doubled quote, plus both quotes and a separator
+        int worst = 2 * value.length() + 3;
+        if (myBuffer.remaining() < worst) {
+            flush(theChannel);
+        }
+        if (worst <= myBuffer.remaining()) {
+            int start = myBuffer.position();
+            myBuffer.put((byte) '"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    myBuffer.position(start);
+                    putEncoded(value, theChannel);
+                    return;
+                }
+                if (c == '"') {
+                    myBuffer.put((byte) '"');
+                }
+                myBuffer.put((byte) c);
+            }
+            myBuffer.put((byte) '"');
+        } else {
+            putEncoded(value, theChannel);
+        }
+    }
+
+    /**
+     * Encodes one quoted field of any text as UTF-8, flushing the buffer as often as it fills.
+     *
+     * @param theValue   The value of the field.
+     * @param theChannel The channel the buffer is flushed to when it is full.
+     * @throws IOException if the buffer could not be flushed.
+     */
+    private void putEncoded(final String theValue, final WritableByteChannel theChannel) throws IOException {
+        byte[] bytes = ('"' + theValue.replace("\"", "\"\"") + '"').getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!myBuffer.hasRemaining()) {
+                flush(theChannel);
+            }
+            int length = Math.min(myBuffer.remaining(), bytes.length - offset);
+            myBuffer.put(bytes, offset, length);
+            offset += length;
+        }
+        if (!myBuffer.hasRemaining()) {
+            flush(theChannel);
+        }
+    }
+
+    /**
+     * Writes the contents of the buffer to a channel and empties it.
+     *
+     * @param theChannel The channel to write to.
+     * @throws IOException if the buffer could not be written.
+     */
+    private void flush(final WritableByteChannel theChannel) throws IOException {
+        myBuffer.flip();
+        while (myBuffer.hasRemaining()) {
+            theChannel.write(myBuffer);
+        }
+        myBuffer.clear();
+    }
+}
@@ -1,23 +1,26 @@
 package model;
 
-import javax.swing.table.DefaultTableModel;
-
 import java.beans.PropertyChangeSupport;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class helps retrieve data from the database and send email reports.
  */
 public class DBFriend {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("uuuu-M-d");
+    private static final String EXPORT_FILE = "database/file_watcher_log";
     private final PropertyChangeSupport myPCS;
     private final Email myEmail;
-    private String currentQuery;
+    private final ExecutorService myExporter;
+    private volatile EventExporter myExport;
+    private SearchCriteria myCriteria;
+    private EventPageModel myPageModel;
 
     /**
      * Creates an instance of DBFriend to interact with the database.
@@ -26,130 +29,130 @@ public class DBFriend {
      */
     public DBFriend(PropertyChangeSupport thePCS) {
         myPCS = thePCS;
-        currentQuery = "SELECT * FROM event_log";
+        myCriteria = SearchCriteria.ALL;
         myEmail = new Email();
+        myExporter = Executors.newSingleThreadExecutor(theTask -> {
+            Thread thread = new Thread(theTask, "log-export");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
-     * Retrieves data from the database, formats it as a table, and updates the UI.
+     * Creates a table model over the matching rows of the database and updates the UI.
+     * The model loads its rows in pages on a background thread, so this returns at once;
+     * the model of the previous search stops loading.
      *
      * @param theQuery Search criteria used to filter database results, such as filename, extension, or date range.
      */
     public void getTableModel(String[] theQuery) {
-        DefaultTableModel tableModel = new DefaultTableModel();
-        String[] columnNames = {"Filename", "Extension", "Path", "Event", "Timestamp"};
-        tableModel.setColumnIdentifiers(columnNames);
-        String query = processQuery(theQuery);
-        try (ResultSet resultSet = query(query)) {
-            if (resultSet != null) {
-                while (resultSet.next()) {
-                    Object[] rowData = new Object[columnNames.length];
-                    rowData[0] = resultSet.getString("filename");
-                    rowData[1] = resultSet.getString("extension");
-                    rowData[2] = resultSet.getString("path");
-                    rowData[3] = resultSet.getString("event");
-                    rowData[4] = resultSet.getString("timestamp");
-                    tableModel.addRow(rowData);
-                }
-            }
-            myPCS.firePropertyChange(ModelProperties.TABLE_MODEL_QUERY, null, tableModel);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        if (myPageModel != null) {
+            myPageModel.close();
         }
+        myPageModel = new EventPageModel(processQuery(theQuery), EventPageModel.DEFAULT_PAGE_SIZE);
+        myPCS.firePropertyChange(ModelProperties.TABLE_MODEL_QUERY, null, myPageModel);
     }
 
     /**
-     * It sends an email with the database log attached as a CSV file.
+     * It exports the rows of the last search to a file on a background thread and then sends
+     * an email with the file attached. The progress of the export is reported through
+     * {@link ModelProperties#EXPORT_PROGRESS} and its end through {@link ModelProperties#EXPORT_DONE}.
+     * Nothing is started while another export is running.
      *
-     * @param theEmail The recipient's email address.
+     * @param theEmail  The recipient's email address.
+     * @param theFormat The format of the attached file.
      */
-    public void sendEmail(String theEmail) {
+    public void sendEmail(String theEmail, ExportFormat theFormat) {
         if (!Email.gCheck()) {
             System.err.println("Unable to send email, credentials are not setup.");
             return;
         }
-        File csv = generateCSV();
-        System.out.println("oh man we're sending email");
-        myEmail.sendEmailWithLogFile(theEmail, csv);
+        if (myExport != null) {
+            System.err.println("Unable to send email, an export is already running.");
+            return;
+        }
+        EventExporter exporter = theFormat.exporter(myCriteria);
+        myExport = exporter;
+        myExporter.execute(() -> {
+            File file = generateExport(exporter, new File(EXPORT_FILE + theFormat.getSuffix()));
+            myExport = null;
+            myPCS.firePropertyChange(ModelProperties.EXPORT_DONE, null, file);
+            if (file != null) {
+                System.out.println("oh man we're sending email");
+                myEmail.sendEmailWithLogFile(theEmail, file);
+            }
+        });
+    }
+
+    /**
+     * Cancels the running export, if any. No email is sent for a cancelled export.
+     */
+    public void cancelExport() {
+        EventExporter exporter = myExport;
+        if (exporter != null) {
+            exporter.cancel();
+        }
     }
 
     /**
-     * Generates a CSV file from the database log.
+     * Generates a file from the rows of the database log that match the last search.
      *
-     * @return A file that stores the exported log information.
+     * @param theExporter The exporter that writes the file.
+     * @param theFile     The file to write.
+     * @return A file that stores the exported log information, or null if the export failed or was cancelled.
      */
-    private File generateCSV() {
-        File logFile = new File("database/file_watcher_log.csv");
+    private File generateExport(EventExporter theExporter, File theFile) {
         try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(logFile));
-            ResultSet resSet = DBManager.getDBManager().executeQuery(currentQuery);
-            ResultSetMetaData metaData = resSet.getMetaData();
-            int colNum = metaData.getColumnCount();
-            for (int i = 1; i < colNum; i++) {
-                writer.append('"').append(metaData.getColumnName(i)).write("\",");
-            }
-            writer.append('"').append(metaData.getColumnName(colNum)).append("\"\n");
-            while (resSet.next()) {
-                for (int i = 1; i < colNum; i++) {
-                    writer.append('"').append(resSet.getString(i)).write("\",");
-                }
-                writer.append('"').append(resSet.getString(colNum)).write("\"\n");
-            }
-            writer.close();
-        } catch (DatabaseException | SQLException | IOException theE) {
-            System.err.println("Error writing CSV: " + theE.getMessage());
+            theExporter.export(theFile.toPath(), (theWritten, theTotal) ->
+                    myPCS.firePropertyChange(ModelProperties.EXPORT_PROGRESS, null, new long[] {theWritten, theTotal}));
+            return theFile;
+        } catch (DatabaseException theE) {
+            System.err.println("Error exporting log: " + theE.getMessage());
+        } catch (CancellationException theE) {
+            System.out.println("Export cancelled");
         }
-        return logFile;
+        return null;
     }
 
     /**
-     * It takes the user input and builds an SQL query to search the database.
+     * It takes the user input and builds the criteria that select matching rows of the event log.
+     * The filename, extension and path are each matched anywhere in their column, ignoring ASCII case.
+     * Filename and path text is looked up in the trigram indexes. The criteria are kept for the CSV export.
      *
      * @param theQ An array of filters like filename, extension, and date range.
-     * @return The SQL query string that will be executed.
+     * @return The search criteria.
      */
-    private String processQuery(String[] theQ) {
-        StringBuilder sB = new StringBuilder("SELECT filename, extension, path, event, timestamp FROM event_log WHERE 1=1 ");
-        if (!theQ[0].isEmpty()) {
-            sB.append("AND filename LIKE '%").append(theQ[0]).append("%'");
-        }
-        if (!theQ[1].isEmpty()) {
-            sB.append("AND extension LIKE '%").append(theQ[1]).append("%'");
-        }
-        if (!theQ[2].isEmpty()) {
-            sB.append("AND path LIKE '%").append(theQ[2]).append("%'");
-        }
+    private SearchCriteria processQuery(String[] theQ) {
+        SearchCriteria.Builder builder = new SearchCriteria.Builder();
+        builder.fileName(theQ[0], SearchCriteria.Match.CONTAINS);
+        builder.extension(theQ[1], SearchCriteria.Match.CONTAINS);
+        builder.path(theQ[2], SearchCriteria.Match.CONTAINS);
         switch (theQ[3]) {
-            case "CREATE" -> sB.append("AND event='").append("ENTRY_CREATE").append("'");
-            case "MODIFY" -> sB.append("AND event='").append("ENTRY_MODIFY").append("'");
-            case "DELETE" -> sB.append("AND event='").append("ENTRY_DELETE").append("'");
+            case "CREATE" -> builder.kind("ENTRY_CREATE");
+            case "MODIFY" -> builder.kind("ENTRY_MODIFY");
+            case "DELETE" -> builder.kind("ENTRY_DELETE");
         }
-        if (!theQ[4].isEmpty() && !theQ[5].isEmpty()) {
-            sB.append("AND timestamp BETWEEN '").append(theQ[4]).append("' AND '").append(theQ[5]).append("'");
-        } else if (!theQ[4].isEmpty()) {
-            sB.append("AND timestamp >= '").append(theQ[4]).append("'");
-        } else if (!theQ[5].isEmpty()) {
-            sB.append("AND timestamp <= '").append(theQ[5]).append("'");
-        }
-        System.out.println(sB.toString());
-        currentQuery = sB.toString();
-        return sB.toString();
+        builder.from(parseDate(theQ[4]));
+        builder.to(parseDate(theQ[5]));
+        myCriteria = builder.build();
+        return myCriteria;
     }
 
     /**
-     * Executes a given SQL query and returns the results.
+     * Parses a date typed in the search window.
      *
-     * @param theQuery The SQL query to run on the database.
-     * @return A ResultSet containing the query results, or null if an error occurs.
+     * @param theDate The date as year-month-day, or empty.
+     * @return The date, or null if it is empty or not a valid date.
      */
-    private ResultSet query(String theQuery) {
+    private LocalDate parseDate(String theDate) {
+        if (theDate.isEmpty()) {
+            return null;
+        }
         try {
-            return DBManager.getDBManager().executeQuery(theQuery);
-        } catch (DatabaseException e) {
-            System.err.println(e.getMessage());
+            return LocalDate.parse(theDate, DATE_FORMAT);
+        } catch (DateTimeParseException theE) {
+            System.err.println("Ignoring invalid date: " + theDate);
             return null;
         }
     }
-
-
 }
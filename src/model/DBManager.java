@@ -10,17 +10,52 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * This class manages the database connection and operations.
+ * This class manages the database connections and operations.
+ * All writes go through one writer connection, and every method that uses it is synchronized,
+ * so the writer is never used by two threads at once. Searches and exports lease a read-only
+ * connection from a pool through {@link #read(ReaderPool.Query)} and never wait for the writer.
  */
 final class DBManager {
 
     private static final DBManager DB_INSTANCE = new DBManager();
-    private Connection connection;
+    private static final int READER_COUNT = 4;
+    static final int SCHEMA_VERSION = 7;
+    private static final int APPEND_BATCH_SIZE = 1024;
+    private static final String INSERT_EVENT = """
+            INSERT INTO
+            events (path_id, extension_id, kind_id, filename, ts, event_count, first_ts)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final String INSERT_WATCH = """
+            INSERT INTO
+            watch_table (filename, path)
+            VALUES (?, ?)
+            """;
+    private static final String UPDATE_JOURNAL_MARK =
+            "UPDATE journal_mark SET last_record = max(last_record, ?) WHERE id = 1";
+    private static final String SELECT_JOURNAL_MARK = "SELECT last_record FROM journal_mark WHERE id = 1";
+    private static final String SELECT_WATCH = "SELECT filename FROM watch_table WHERE path = ?";
+    private static final String DELETE_WATCH = "DELETE FROM watch_table WHERE path = ?";
+    private static final String DELETE_WATCH_TREE = "DELETE FROM watch_table WHERE path = ? OR (path >= ? AND path < ?)";
+    private final Map<String, PreparedStatement> statements;
+    private final Map<String, Map<String, Long>> dictionaries;
+    private volatile Connection connection;
+    private volatile ReaderPool readers;
+    private volatile StorageProfile profile;
 
     private DBManager() {
         connection = null;
+        readers = null;
+        statements = new HashMap<>();
+        dictionaries = new HashMap<>();
+        profile = StorageProfile.BALANCED;
     }
 
     /**
@@ -46,7 +81,7 @@ final class DBManager {
      *
      * @throws DatabaseException if there is an error connecting to the database.
      */
-    void connect() throws DatabaseException {
+    synchronized void connect() throws DatabaseException {
         File dbPath = new File("database/log.sql");
         Path path = Path.of(dbPath.getAbsolutePath());
         if (!Files.exists(path)) {
@@ -58,27 +93,132 @@ final class DBManager {
             }
         }
         String dbUrl = "jdbc:sqlite:" + dbPath.getAbsolutePath();
+        closeConnections();
         try {
             connection = DriverManager.getConnection(dbUrl);
             System.out.println("Connected to database");
+            applyProfile();
             initDB();
+            readers = new ReaderPool(dbUrl, READER_COUNT, profile);
         } catch (SQLException theE) {
             throw new DatabaseException("Error connecting to database", theE);
         }
     }
 
+    /**
+     * Leases a read-only connection and runs a query on it. The query must close its statements
+     * and result sets before it returns.
+     *
+     * @param theQuery the query to run.
+     * @param <T>      the type of the query result.
+     * @return the result of the query.
+     * @throws DatabaseException if not connected, no reader is free in time or the query fails.
+     */
+    <T> T read(ReaderPool.Query<T> theQuery) throws DatabaseException {
+        ReaderPool pool = readers;
+        if (pool == null) {
+            throw new DatabaseException("Not connected to database");
+        }
+        return pool.read(theQuery);
+    }
+
+    /**
+     * Leases a read-only connection and runs a query with its cached prepared statement for some SQL.
+     * The query must close its result sets but not the statement.
+     *
+     * @param theSql   the SQL of the statement.
+     * @param theQuery the query to run.
+     * @param <T>      the type of the query result.
+     * @return the result of the query.
+     * @throws DatabaseException if not connected, no reader is free in time or the query fails.
+     */
+    <T> T read(String theSql, ReaderPool.Prepared<T> theQuery) throws DatabaseException {
+        ReaderPool pool = readers;
+        if (pool == null) {
+            throw new DatabaseException("Not connected to database");
+        }
+        return pool.read(theSql, theQuery);
+    }
+
+    /**
+     * Sets the storage profile. It is applied to the writer now if connected, and to every
+     * connection at the next connect.
+     *
+     * @param theProfile the profile to use.
+     * @throws DatabaseException if the profile could not be applied to the current connection.
+     */
+    void setStorageProfile(StorageProfile theProfile) throws DatabaseException {
+        if (theProfile == null) {
+            throw new IllegalArgumentException("Storage profile is null");
+        }
+        profile = theProfile;
+        if (isConnected()) {
+            try {
+                applyProfile();
+            } catch (SQLException theE) {
+                throw new DatabaseException("Error applying storage profile", theE);
+            }
+        }
+    }
+
+    /**
+     * Gets the storage profile.
+     *
+     * @return the profile applied at connect.
+     */
+    StorageProfile getStorageProfile() {
+        return profile;
+    }
+
+    /**
+     * Runs the pragmas of the storage profile on the connection.
+     *
+     * @throws SQLException if a pragma fails.
+     */
+    private synchronized void applyProfile() throws SQLException {
+        StorageProfile current = profile;
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma : current.getPragmas()) {
+                statement.execute(pragma);
+            }
+        }
+        System.out.println("Storage profile: " + current);
+    }
+
     /**
      * It disconnects from the database.
      *
      * @throws DatabaseException if an error occurs while disconnecting.
      */
-    void disconnect() throws DatabaseException {
+    synchronized void disconnect() throws DatabaseException {
+        closeConnections();
+        System.out.println("Disconnected from database");
+    }
+
+    /**
+     * Closes the reader pool and the writer connection if they are open.
+     *
+     * @throws DatabaseException if an error occurs while closing the writer.
+     */
+    private synchronized void closeConnections() throws DatabaseException {
+        if (readers != null) {
+            readers.close();
+            readers = null;
+        }
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException theE) {
+                System.err.println("SQL Error: " + theE.getMessage());
+            }
+        }
+        statements.clear();
+        dictionaries.clear();
         try {
             if (isConnected()) {
                 connection.close();
                 connection = null;
             }
-            System.out.println("Disconnected from database");
         } catch (SQLException theE) {
             throw new DatabaseException("Error disconnecting from database", theE);
         }
@@ -91,13 +231,15 @@ final class DBManager {
      * @return a ResultSet containing the query results.
      * @throws DatabaseException if the query fails.
      */
-    public ResultSet executeQuery(String theQuery) throws DatabaseException {
+    public synchronized ResultSet executeQuery(String theQuery) throws DatabaseException {
         if (!isConnected()) {
             throw new DatabaseException("Not connected to database");
         }
 
         try {
-            return connection.createStatement().executeQuery(theQuery);
+            Statement statement = connection.createStatement();
+            statement.closeOnCompletion();
+            return statement.executeQuery(theQuery);
         } catch (SQLException e) {
             throw new DatabaseException("Error executing query", e);
         }
@@ -117,59 +259,79 @@ final class DBManager {
     // }
 
     /**
-     * It clears all data from the event log table.
+     * It clears all data from the event log table, along with the file names and paths it used.
+     * Extensions and event kinds are kept since there are only a few of them.
      *
      * @throws DatabaseException if an error occurs while clearing the table.
      */
-    void clearTable() throws DatabaseException {
+    synchronized void clearTable() throws DatabaseException {
         if (!isConnected()) {
             throw new DatabaseException("Not connected to database");
         }
-        try {
-            Statement statement = connection.createStatement();
-            statement.execute("DELETE FROM event_log");
-        } catch (SQLException theE) {
-            throw new DatabaseException("Error clearing table", theE);
-        }
+        dictionaries.remove("paths");
+        inTransaction("Error clearing table", () -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM events");
+                statement.executeUpdate("DELETE FROM filenames");
+                statement.executeUpdate("INSERT INTO filenames_fts (filenames_fts) VALUES ('delete-all')");
+                statement.executeUpdate("DELETE FROM paths");
+                statement.executeUpdate("INSERT INTO paths_fts (paths_fts) VALUES ('delete-all')");
+            }
+        });
     }
 
     /**
-     * It clears all data from the temporary event log table.
+     * Takes the names of the files recorded in the watch table for a directory.
+     * The names are read and their rows deleted in one transaction.
      *
-     * @throws DatabaseException if an error occurs while clearing the table.
+     * @param thePath the directory to take the watched files of.
+     * @return the names of the files that were recorded for the directory.
+     * @throws DatabaseException if an error occurs while reading or deleting the rows, in which case none are deleted.
      */
-    void clearTempTable() throws DatabaseException {
+    synchronized List<String> getWatchFiles(Path thePath) throws DatabaseException {
         if (!isConnected()) {
             throw new DatabaseException("Not connected to database");
         }
-        try {
-            Statement statement = connection.createStatement();
-            statement.executeUpdate("DELETE FROM event_log_temp");
-        } catch (SQLException theE) {
-            throw new DatabaseException("Error clearing table", theE);
-        }
+        String path = thePath.toAbsolutePath().toString();
+        List<String> names = new ArrayList<>();
+        inTransaction("Could not take files from watch table", () -> {
+            PreparedStatement select = prepared(SELECT_WATCH);
+            select.setString(1, path);
+            try (ResultSet res = select.executeQuery()) {
+                while (res.next()) {
+                    names.add(res.getString("filename"));
+                }
+            }
+            PreparedStatement delete = prepared(DELETE_WATCH);
+            delete.setString(1, path);
+            delete.executeUpdate();
+        });
+        return names;
     }
 
     /**
-     * Gets a list of files being monitored in the database for a specific path.
+     * Deletes the watch table rows of a directory and of every directory below it with one range delete.
      *
-     * @param thePath the path to check for watched files.
-     * @return a ResultSet containing the filenames and paths.
+     * @param thePath the root of the subtree to delete.
+     * @return the number of rows deleted.
+     * @throws DatabaseException if an error occurs while deleting the rows.
      */
-    ResultSet getWatchFiles(Path thePath) {
-        ResultSet res = null;
+    synchronized int removeWatchTree(Path thePath) throws DatabaseException {
+        if (!isConnected()) {
+            throw new DatabaseException("Not connected to database");
+        }
+        String path = thePath.toAbsolutePath().toString();
+        String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+        String end = prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
         try {
-            String path = thePath.toAbsolutePath().toString();
-            PreparedStatement preparedStatement = connection.prepareStatement("SELECT filename, path FROM watch_table WHERE path = ?");
-            preparedStatement.setString(1, path);
-            res = preparedStatement.executeQuery();
-            preparedStatement = connection.prepareStatement("DELETE FROM watch_table WHERE path = ?");
-            preparedStatement.setString(1, path);
-            preparedStatement.executeUpdate();
+            PreparedStatement statement = prepared(DELETE_WATCH_TREE);
+            statement.setString(1, path);
+            statement.setString(2, prefix);
+            statement.setString(3, end);
+            return statement.executeUpdate();
         } catch (SQLException theE) {
-            System.err.println("Could not query watch table " + theE.getMessage());
+            throw new DatabaseException("Could not delete from watch table", theE);
         }
-        return res;
     }
 
     /**
@@ -177,12 +339,11 @@ final class DBManager {
      *
      * @throws DatabaseException if an error occurs while clearing the table.
      */
-    void clearWatchTable() throws DatabaseException {
+    synchronized void clearWatchTable() throws DatabaseException {
         if (!isConnected()) {
             throw new DatabaseException("Not connected to database");
         }
-        try {
-            Statement statement = connection.createStatement();
+        try (Statement statement = connection.createStatement()) {
             statement.executeUpdate("DELETE FROM watch_table");
         } catch (SQLException theE) {
             throw new DatabaseException("Error clearing table", theE);
@@ -190,90 +351,153 @@ final class DBManager {
     }
 
     /**
-     * This adds a file to the watch table.
+     * Replaces the files recorded in the watch table for one directory in a single transaction.
      *
-     * @param theFile the file to add.
-     * @throws DatabaseException if an error occurs while adding the file.
+     * @param theDirectory the directory that holds the files.
+     * @param theFileNames the names of the files the directory holds now.
+     * @throws DatabaseException if an error occurs while replacing the files, in which case the old rows are kept.
      */
-    void addToWatch(File theFile) throws DatabaseException {
+    synchronized void setWatchFiles(Path theDirectory, List<String> theFileNames) throws DatabaseException {
         if (!isConnected()) {
             throw new DatabaseException("Not connected to database");
         }
-        try (PreparedStatement statement = connection.prepareStatement("""
-                INSERT INTO
-                watch_table (filename, path)
-                VALUES (?, ?)
-                """)) {
-            statement.setString(1, theFile.getName());
-            statement.setString(2, theFile.getParent());
-            statement.execute();
-        } catch (SQLException theE) {
-            System.err.println("SQL Error: " + theE.getMessage());
-        }
+        String path = theDirectory.toAbsolutePath().toString();
+        inTransaction("Error adding files to watch table", () -> {
+            PreparedStatement delete = prepared(DELETE_WATCH);
+            delete.setString(1, path);
+            delete.executeUpdate();
+            PreparedStatement statement = prepared(INSERT_WATCH);
+            for (String fileName : theFileNames) {
+                statement.setString(1, fileName);
+                statement.setString(2, path);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        });
+    }
 
+    /**
+     * Appends events to the event log in a single transaction, writing each row once.
+     * Paths, extensions and event kinds are looked up in their tables, and added if new,
+     * with the ids remembered for later appends. The count of a coalesced event and the time
+     * of its first watch event are stored with it.
+     *
+     * @param theEvents the events to append, oldest first. They are read once.
+     * @throws DatabaseException if an error occurs while appending the events, in which case none are appended.
+     */
+    synchronized void appendEvents(Iterable<Event> theEvents) throws DatabaseException {
+        appendEvents(theEvents, 0);
     }
 
     /**
-     * This adds an event to the temporary event log table.
+     * Appends events to the event log and records the last session journal record they cover,
+     * both in a single transaction, so a journal replayed after a crash is not saved twice.
      *
-     * @param theEvent theEvent the event to add.
-     * @throws DatabaseException if an error occurs while adding the event.
+     * @param theEvents     the events to append, oldest first. They are read once.
+     * @param theLastRecord the sequence number of the last journal record the events cover.
+     *                      The recorded number never goes down.
+     * @throws DatabaseException if an error occurs while appending the events, in which case none are appended.
      */
-    void addEvent(Event theEvent) throws DatabaseException {
+    synchronized void appendEvents(Iterable<Event> theEvents, long theLastRecord) throws DatabaseException {
         if (!isConnected()) {
             throw new DatabaseException("Not connected to database");
         }
-        // System.out.println("Adding event: " + theEvent);
-        try (PreparedStatement statement = connection.prepareStatement("""
-                INSERT INTO
-                event_log_temp (extension, filename, path, event)
-                VALUES (?, ?, ?, ?)
-                """)) {
-            statement.setString(1, theEvent.getExtension());
-            statement.setString(2, theEvent.getFileName());
-            statement.setString(3, theEvent.getPath());
-            statement.setString(4, theEvent.geEventKind());
-            // statement.setString(5, theEvent.getTimeStamp().toString());
-            statement.execute();
-        } catch (SQLException theE) {
-            throw new DatabaseException("Error adding event to database", theE);
+        try {
+            inTransaction("Error adding events to database", () -> {
+                PreparedStatement statement = prepared(INSERT_EVENT);
+                // a failed append may have left rows batched on the cached statement
+                statement.clearBatch();
+                int pending = 0;
+                for (Event event : theEvents) {
+                    statement.setLong(1, dictionaryId("paths", "path", event.getPath()));
+                    statement.setLong(2, dictionaryId("extensions", "extension", event.getExtension()));
+                    statement.setLong(3, dictionaryId("event_kinds", "kind", event.geEventKind()));
+                    statement.setString(4, event.getFileName());
+                    statement.setLong(5, EventCodec.toEpochMillis(event.getTimeStamp()));
+                    statement.setInt(6, event.getCount());
+                    if (event.getCount() > 1) {
+                        statement.setLong(7, EventCodec.toEpochMillis(event.getFirstTimeStamp()));
+                    } else {
+                        statement.setNull(7, Types.INTEGER);
+                    }
+                    statement.addBatch();
+                    if (++pending == APPEND_BATCH_SIZE) {
+                        statement.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    statement.executeBatch();
+                }
+                PreparedStatement mark = prepared(UPDATE_JOURNAL_MARK);
+                mark.setLong(1, theLastRecord);
+                mark.executeUpdate();
+            });
+        } catch (DatabaseException theE) {
+            // ids added by the rolled back transaction no longer exist
+            dictionaries.clear();
+            throw theE;
         }
     }
 
     /**
-     * It moves all events from the temporary event log table to the main event log table.
+     * Gets the sequence number of the last session journal record that was saved.
      *
-     * @throws DatabaseException if an error occurs while merging the tables.
+     * @return the sequence number, or 0 if no journal record was saved.
+     * @throws DatabaseException if not connected or the number could not be read.
      */
-    void mergeTempEvents() throws DatabaseException {
+    synchronized long getJournalMark() throws DatabaseException {
         if (!isConnected()) {
             throw new DatabaseException("Not connected to database");
         }
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("""
-                    INSERT INTO
-                    event_log (extension, filename, path, event, timestamp)
-                    SELECT extension, filename, path, event, timestamp
-                    FROM event_log_temp
-                    """);
-            statement.executeUpdate("DELETE FROM event_log_temp");
+        try (ResultSet res = prepared(SELECT_JOURNAL_MARK).executeQuery()) {
+            return res.next() ? res.getLong(1) : 0;
         } catch (SQLException theE) {
-            throw new DatabaseException("Error adding events to database", theE);
+            throw new DatabaseException("Error reading journal mark", theE);
         }
     }
 
+    /**
+     * Gets the id of a value in a lookup table, adding the value if it is new.
+     *
+     * @param theTable  the lookup table.
+     * @param theColumn the column that holds the values.
+     * @param theValue  the value to look up; null is stored as an empty string.
+     * @return the id of the value.
+     * @throws SQLException if the value could not be looked up or added.
+     */
+    private long dictionaryId(String theTable, String theColumn, String theValue) throws SQLException {
+        String value = theValue == null ? "" : theValue;
+        Map<String, Long> ids = dictionaries.computeIfAbsent(theTable, theKey -> new HashMap<>());
+        Long id = ids.get(value);
+        if (id == null) {
+            PreparedStatement insert = prepared(
+                    "INSERT OR IGNORE INTO " + theTable + " (" + theColumn + ") VALUES (?)");
+            insert.setString(1, value);
+            insert.executeUpdate();
+            PreparedStatement select = prepared("SELECT id FROM " + theTable + " WHERE " + theColumn + " = ?");
+            select.setString(1, value);
+            try (ResultSet res = select.executeQuery()) {
+                res.next();
+                id = res.getLong(1);
+            }
+            ids.put(value, id);
+        }
+        return id;
+    }
+
     /**
      * Sets up the database by creating tables if they are missing.
      *
      * @throws DatabaseException if an error occurs while setting up the database.
      */
-    void initDB() throws DatabaseException {
+    synchronized void initDB() throws DatabaseException {
         if (!isConnected()) {
             throw new DatabaseException("Not connected to database");
         }
         try (Statement statement = connection.createStatement()) {
             ResultSet res = statement.executeQuery(
-                    "SELECT * FROM sqlite_master WHERE type='table' AND name='event_log';");
+                    "SELECT * FROM sqlite_master WHERE type IN ('table', 'view') AND name='event_log';");
             if (!res.next()) {
                 statement.executeUpdate("""
                         CREATE TABLE "event_log" (
@@ -287,19 +511,6 @@ final class DBManager {
                         );
                         """);
             }
-            res = statement.executeQuery(
-                    "SELECT * FROM sqlite_master WHERE type='table' AND name='event_log_temp';");
-            if (!res.next()) {
-                statement.executeUpdate("""
-                        CREATE TABLE "event_log_temp" (
-                        \t"extension"\tTEXT,
-                        \t"filename"\tTEXT,
-                        \t"path"\tTEXT,
-                        \t"event"\tTEXT,
-                        \t"timestamp"\tDATETIME DEFAULT CURRENT_TIMESTAMP NOT NULL
-                        );
-                        """);
-            }
             res = statement.executeQuery(
                     "SELECT * FROM sqlite_master WHERE type='table' AND name='watch_table';");
             if (!res.next()) {
@@ -314,6 +525,350 @@ final class DBManager {
             System.err.println("SQL Error: " + theE.getMessage());
             throw new DatabaseException("Error initializing database", theE);
         }
+        migrate();
     }
 
+    /**
+     * Brings the schema of an existing database up to {@link #SCHEMA_VERSION}, one version at a time.
+     * The version is kept in SQLite's user_version, which is 0 for databases made before versioning.
+     *
+     * @throws DatabaseException if a migration fails, in which case the database keeps its old version.
+     */
+    private synchronized void migrate() throws DatabaseException {
+        int version;
+        try (Statement statement = connection.createStatement();
+             ResultSet res = statement.executeQuery("PRAGMA user_version")) {
+            version = res.next() ? res.getInt(1) : 0;
+        } catch (SQLException theE) {
+            throw new DatabaseException("Error reading schema version", theE);
+        }
+        if (version >= SCHEMA_VERSION) {
+            return;
+        }
+        System.out.println("Migrating database from version " + version + " to " + SCHEMA_VERSION);
+        inTransaction("Error migrating database", () -> {
+            try (Statement statement = connection.createStatement()) {
+                if (version < 1) {
+                    statement.executeUpdate("CREATE INDEX IF NOT EXISTS watch_table_path ON watch_table (path)");
+                    statement.executeUpdate("CREATE INDEX IF NOT EXISTS event_log_timestamp ON event_log (timestamp)");
+                    statement.executeUpdate(
+                            "CREATE INDEX IF NOT EXISTS event_log_event ON event_log (event, timestamp)");
+                    statement.executeUpdate("CREATE INDEX IF NOT EXISTS event_log_extension ON event_log (extension)");
+                    statement.executeUpdate("CREATE INDEX IF NOT EXISTS event_log_path ON event_log (path)");
+                    statement.executeUpdate("CREATE INDEX IF NOT EXISTS event_log_filename ON event_log (filename)");
+                }
+                if (version < 2) {
+                    normalizeEventLog(statement);
+                }
+                if (version < 3) {
+                    dropStagingTable(statement);
+                }
+                if (version < 4) {
+                    indexSubstrings(statement);
+                }
+                if (version < 5) {
+                    recordBursts(statement);
+                }
+                if (version < 6) {
+                    markJournal(statement);
+                }
+                if (version < 7) {
+                    exposeEpochMillis(statement);
+                }
+                statement.executeUpdate("PRAGMA user_version = " + SCHEMA_VERSION);
+            }
+        });
+    }
+
+    /**
+     * Migrates to version 2: moves event_log into the events table, which refers to paths, extensions
+     * and event kinds by id through lookup tables and stores times as epoch milliseconds.
+     * event_log becomes a view with the old columns, so existing queries keep working.
+     *
+     * @param theStatement the statement to run the migration with, inside the migration transaction.
+     * @throws SQLException if a step fails.
+     */
+    private void normalizeEventLog(Statement theStatement) throws SQLException {
+        theStatement.executeUpdate("""
+                CREATE TABLE paths (
+                	id	INTEGER PRIMARY KEY,
+                	path	TEXT NOT NULL UNIQUE
+                )
+                """);
+        theStatement.executeUpdate("""
+                CREATE TABLE extensions (
+                	id	INTEGER PRIMARY KEY,
+                	extension	TEXT NOT NULL UNIQUE
+                )
+                """);
+        theStatement.executeUpdate("""
+                CREATE TABLE event_kinds (
+                	id	INTEGER PRIMARY KEY,
+                	kind	TEXT NOT NULL UNIQUE
+                )
+                """);
+        theStatement.executeUpdate("""
+                INSERT INTO event_kinds (kind)
+                VALUES ('ENTRY_CREATE'), ('ENTRY_MODIFY'), ('ENTRY_DELETE')
+                """);
+        theStatement.executeUpdate("""
+                CREATE TABLE events (
+                	id	INTEGER PRIMARY KEY AUTOINCREMENT,
+                	path_id	INTEGER NOT NULL REFERENCES paths (id),
+                	extension_id	INTEGER NOT NULL REFERENCES extensions (id),
+                	kind_id	INTEGER NOT NULL REFERENCES event_kinds (id),
+                	filename	TEXT NOT NULL,
+                	ts	INTEGER NOT NULL
+                )
+                """);
+        theStatement.executeUpdate(
+                "INSERT OR IGNORE INTO paths (path) SELECT DISTINCT coalesce(path, '') FROM event_log");
+        theStatement.executeUpdate("""
+                INSERT OR IGNORE INTO extensions (extension)
+                SELECT DISTINCT coalesce(extension, '') FROM event_log
+                """);
+        theStatement.executeUpdate(
+                "INSERT OR IGNORE INTO event_kinds (kind) SELECT DISTINCT coalesce(event, '') FROM event_log");
+        theStatement.executeUpdate("""
+                INSERT INTO events (id, path_id, extension_id, kind_id, filename, ts)
+                SELECT l.id, p.id, x.id, k.id, coalesce(l.filename, ''),
+                CAST(strftime('%s', l.timestamp) AS INTEGER) * 1000
+                FROM event_log l
+                JOIN paths p ON p.path = coalesce(l.path, '')
+                JOIN extensions x ON x.extension = coalesce(l.extension, '')
+                JOIN event_kinds k ON k.kind = coalesce(l.event, '')
+                """);
+        theStatement.executeUpdate("DROP TABLE event_log");
+        theStatement.executeUpdate("""
+                CREATE VIEW event_log AS
+                SELECT e.id AS id, x.extension AS extension, e.filename AS filename, p.path AS path,
+                k.kind AS event, strftime('%Y-%m-%d %H:%M:%S', e.ts / 1000, 'unixepoch') AS timestamp
+                FROM events e
+                JOIN paths p ON p.id = e.path_id
+                JOIN extensions x ON x.id = e.extension_id
+                JOIN event_kinds k ON k.id = e.kind_id
+                """);
+        theStatement.executeUpdate(
+                "CREATE INDEX events_timestamp ON events (strftime('%Y-%m-%d %H:%M:%S', ts / 1000, 'unixepoch'))");
+        theStatement.executeUpdate("CREATE INDEX events_kind ON events (kind_id, ts)");
+        theStatement.executeUpdate("CREATE INDEX events_extension ON events (extension_id)");
+        theStatement.executeUpdate("CREATE INDEX events_path ON events (path_id)");
+        theStatement.executeUpdate("CREATE INDEX events_filename ON events (filename)");
+        if (tableExists(theStatement, "event_log_temp")) {
+            theStatement.executeUpdate("ALTER TABLE event_log_temp ADD COLUMN ts INTEGER");
+        }
+    }
+
+    /**
+     * Migrates to version 3: the unsaved session is no longer staged in event_log_temp. Events left
+     * there by an older version are kept by moving them into the events table before it is dropped.
+     *
+     * @param theStatement the statement to run the migration with, inside the migration transaction.
+     * @throws SQLException if a step fails.
+     */
+    private void dropStagingTable(Statement theStatement) throws SQLException {
+        if (!tableExists(theStatement, "event_log_temp")) {
+            return;
+        }
+        theStatement.executeUpdate(
+                "INSERT OR IGNORE INTO paths (path) SELECT DISTINCT coalesce(path, '') FROM event_log_temp");
+        theStatement.executeUpdate("""
+                INSERT OR IGNORE INTO extensions (extension)
+                SELECT DISTINCT coalesce(extension, '') FROM event_log_temp
+                """);
+        theStatement.executeUpdate(
+                "INSERT OR IGNORE INTO event_kinds (kind) SELECT DISTINCT coalesce(event, '') FROM event_log_temp");
+        theStatement.executeUpdate("""
+                INSERT INTO
+                events (path_id, extension_id, kind_id, filename, ts)
+                SELECT p.id, x.id, k.id, coalesce(t.filename, ''),
+                coalesce(t.ts, CAST(strftime('%s', t.timestamp) AS INTEGER) * 1000)
+                FROM event_log_temp t
+                JOIN paths p ON p.path = coalesce(t.path, '')
+                JOIN extensions x ON x.extension = coalesce(t.extension, '')
+                JOIN event_kinds k ON k.kind = coalesce(t.event, '')
+                """);
+        theStatement.executeUpdate("DROP TABLE event_log_temp");
+    }
+
+    /**
+     * Migrates to version 4: adds trigram full-text indexes over file names and paths, so a search
+     * for text anywhere in them looks up the index instead of reading every row. Like paths, each
+     * distinct file name is kept once, in the filenames table, and only new names are indexed, so
+     * an event of a file seen before costs one lookup. The indexes are contentless, holding only
+     * the trigrams keyed by the id of the name, and triggers keep them in step with the events.
+     *
+     * @param theStatement the statement to run the migration with, inside the migration transaction.
+     * @throws SQLException if a step fails.
+     */
+    private void indexSubstrings(Statement theStatement) throws SQLException {
+        theStatement.executeUpdate("""
+                CREATE TABLE filenames (
+                	id	INTEGER PRIMARY KEY,
+                	filename	TEXT NOT NULL UNIQUE
+                )
+                """);
+        theStatement.executeUpdate(
+                "CREATE VIRTUAL TABLE filenames_fts USING fts5 (filename, content = '', tokenize = 'trigram')");
+        theStatement.executeUpdate(
+                "CREATE VIRTUAL TABLE paths_fts USING fts5 (path, content = '', tokenize = 'trigram')");
+        theStatement.executeUpdate("""
+                CREATE TRIGGER filenames_fts_insert AFTER INSERT ON filenames BEGIN
+                INSERT INTO filenames_fts (rowid, filename) VALUES (new.id, new.filename);
+                END
+                """);
+        theStatement.executeUpdate("""
+                CREATE TRIGGER paths_fts_insert AFTER INSERT ON paths BEGIN
+                INSERT INTO paths_fts (rowid, path) VALUES (new.id, new.path);
+                END
+                """);
+        theStatement.executeUpdate("""
+                CREATE TRIGGER events_filename_insert AFTER INSERT ON events BEGIN
+                INSERT OR IGNORE INTO filenames (filename) VALUES (new.filename);
+                END
+                """);
+        theStatement.executeUpdate("INSERT OR IGNORE INTO filenames (filename) SELECT DISTINCT filename FROM events");
+        theStatement.executeUpdate("INSERT INTO paths_fts (rowid, path) SELECT id, path FROM paths");
+    }
+
+    /**
+     * Migrates to version 5: events keep how many watch events they stand for and, when that is
+     * more than one, when the first of them happened, so a burst collapsed by the coalescer is not
+     * stored as a single plain event. Existing rows count as one event. event_log shows both as
+     * event_count and first_timestamp after its original columns.
+     *
+     * @param theStatement the statement to run the migration with, inside the migration transaction.
+     * @throws SQLException if a step fails.
+     */
+    private void recordBursts(Statement theStatement) throws SQLException {
+        theStatement.executeUpdate("ALTER TABLE events ADD COLUMN event_count INTEGER NOT NULL DEFAULT 1");
+        theStatement.executeUpdate("ALTER TABLE events ADD COLUMN first_ts INTEGER");
+        theStatement.executeUpdate("DROP VIEW event_log");
+        theStatement.executeUpdate("""
+                CREATE VIEW event_log AS
+                SELECT e.id AS id, x.extension AS extension, e.filename AS filename, p.path AS path,
+                k.kind AS event, strftime('%Y-%m-%d %H:%M:%S', e.ts / 1000, 'unixepoch') AS timestamp,
+                e.event_count AS event_count,
+                strftime('%Y-%m-%d %H:%M:%S', coalesce(e.first_ts, e.ts) / 1000, 'unixepoch') AS first_timestamp
+                FROM events e
+                JOIN paths p ON p.id = e.path_id
+                JOIN extensions x ON x.id = e.extension_id
+                JOIN event_kinds k ON k.id = e.kind_id
+                """);
+    }
+
+    /**
+     * Migrates to version 6: keeps the sequence number of the last session journal record that was
+     * saved, in a table of one row that is updated in the same transaction as the events, so the
+     * journal replay can skip records that are already in the database.
+     *
+     * @param theStatement the statement to run the migration with, inside the migration transaction.
+     * @throws SQLException if a step fails.
+     */
+    private void markJournal(Statement theStatement) throws SQLException {
+        theStatement.executeUpdate("""
+                CREATE TABLE journal_mark (
+                	id	INTEGER PRIMARY KEY CHECK (id = 1),
+                	last_record	INTEGER NOT NULL
+                )
+                """);
+        theStatement.executeUpdate("INSERT INTO journal_mark (id, last_record) VALUES (1, 0)");
+    }
+
+    /**
+     * Migrates to version 7: event_log also shows the stored time in epoch milliseconds as ts, after
+     * its other columns, so readers that need the exact time, such as the archive export, do not have
+     * to look each row up in the events table again.
+     *
+     * @param theStatement the statement to run the migration with, inside the migration transaction.
+     * @throws SQLException if a step fails.
+     */
+    private void exposeEpochMillis(Statement theStatement) throws SQLException {
+        theStatement.executeUpdate("DROP VIEW event_log");
+        theStatement.executeUpdate("""
+                CREATE VIEW event_log AS
+                SELECT e.id AS id, x.extension AS extension, e.filename AS filename, p.path AS path,
+                k.kind AS event, strftime('%Y-%m-%d %H:%M:%S', e.ts / 1000, 'unixepoch') AS timestamp,
+                e.event_count AS event_count,
+                strftime('%Y-%m-%d %H:%M:%S', coalesce(e.first_ts, e.ts) / 1000, 'unixepoch') AS first_timestamp,
+                e.ts AS ts
+                FROM events e
+                JOIN paths p ON p.id = e.path_id
+                JOIN extensions x ON x.id = e.extension_id
+                JOIN event_kinds k ON k.id = e.kind_id
+                """);
+    }
+
+    /**
+     * Checks whether a table exists.
+     *
+     * @param theStatement the statement to check with.
+     * @param theTable     the name of the table.
+     * @return true if the table exists, false otherwise.
+     * @throws SQLException if the schema could not be read.
+     */
+    private static boolean tableExists(Statement theStatement, String theTable) throws SQLException {
+        try (ResultSet res = theStatement.executeQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = '" + theTable + "'")) {
+            return res.next();
+        }
+    }
+
+    /**
+     * Gets the prepared statement for fixed SQL on the writer connection, preparing it the first time.
+     * Statements stay open until the connection is closed; callers must not close them.
+     *
+     * @param theSql the SQL of the statement.
+     * @return the prepared statement.
+     * @throws SQLException if the statement could not be prepared.
+     */
+    private PreparedStatement prepared(String theSql) throws SQLException {
+        PreparedStatement statement = statements.get(theSql);
+        if (statement == null) {
+            statement = connection.prepareStatement(theSql);
+            statements.put(theSql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Runs database work in a single transaction, rolling it back if any part of it fails.
+     *
+     * @param theMessage the message of the exception thrown if the work fails.
+     * @param theWork    the work to run.
+     * @throws DatabaseException if the work fails, in which case none of it is committed.
+     */
+    private void inTransaction(String theMessage, Transaction theWork) throws DatabaseException {
+        try {
+            connection.setAutoCommit(false);
+            theWork.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException theE) {
+            try {
+                connection.rollback();
+            } catch (SQLException theRollbackE) {
+                theE.addSuppressed(theRollbackE);
+            }
+            throw new DatabaseException(theMessage, theE);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException theE) {
+                System.err.println("SQL Error: " + theE.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Database work that runs inside a transaction.
+     */
+    @FunctionalInterface
+    private interface Transaction {
+        /**
+         * Runs the work.
+         *
+         * @throws SQLException if a statement fails.
+         */
+        void run() throws SQLException;
+    }
 }
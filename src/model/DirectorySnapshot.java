@@ -0,0 +1,422 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the entries of each watched directory so that a directory can be rescanned
+ * and compared with what was last seen, for example after the watch service overflows.
+ * It also serves as the index of file names used to log the files of a deleted directory.
+ * Entry names are interned, since the same names recur across many directories of a tree.
+ */
+final class DirectorySnapshot {
+
+    /**
+     * Listings of every captured directory.
+     */
+    private final ConcurrentHashMap<Path, Listing> myListings;
+
+    /**
+     * Constructs an empty snapshot.
+     */
+    DirectorySnapshot() {
+        myListings = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Stores entries of a directory that were collected elsewhere, such as during a tree walk.
+     *
+     * @param theDirectory The directory the entries belong to.
+     * @param theBuilder   The collected entries.
+     */
+    void store(final Path theDirectory, final Listing.Builder theBuilder) {
+        myListings.put(theDirectory, theBuilder.build());
+    }
+
+    /**
+     * Records that an entry was created or modified. Entries of directories that were never captured are ignored.
+     *
+     * @param theEntry       The full path of the entry.
+     * @param theTime        The modification time the entry has now, in milliseconds.
+     * @param theIsDirectory Whether the entry is a directory.
+     */
+    void record(final Path theEntry, final long theTime, final boolean theIsDirectory) {
+        Listing listing = myListings.get(theEntry.getParent());
+        if (listing != null) {
+            listing.put(theEntry.getFileName().toString(), theTime, theIsDirectory);
+        }
+    }
+
+    /**
+     * Records that an entry was deleted.
+     *
+     * @param theEntry The full path of the entry.
+     */
+    void remove(final Path theEntry) {
+        Listing listing = myListings.get(theEntry.getParent());
+        if (listing != null) {
+            listing.remove(theEntry.getFileName().toString());
+        }
+    }
+
+    /**
+     * Gets the names of the files, but not subdirectories, last seen in a directory.
+     *
+     * @param theDirectory The directory to look up.
+     * @return The sorted file names, or null if the directory was never captured.
+     */
+    String[] fileNames(final Path theDirectory) {
+        Listing listing = myListings.get(theDirectory);
+        return listing == null ? null : listing.fileNames();
+    }
+
+    /**
+     * Drops everything known about a directory.
+     *
+     * @param theDirectory The directory to forget.
+     */
+    void forget(final Path theDirectory) {
+        myListings.remove(theDirectory);
+    }
+
+    /**
+     * Drops everything known about a directory and every directory below it.
+     *
+     * @param theRoot The root of the tree to forget.
+     */
+    void forgetTree(final Path theRoot) {
+        myListings.keySet().removeIf(theDirectory -> theDirectory.startsWith(theRoot));
+    }
+
+    /**
+     * Clears every listing.
+     */
+    void clear() {
+        myListings.clear();
+    }
+
+    /**
+     * Lists a directory again and works out which entries were created, modified or deleted
+     * since it was last seen. The stored listing is replaced by the new one once the comparison
+     * is done, under the old listing's lock so that no record or remove falls between the two.
+     *
+     * @param theDirectory The directory to rescan.
+     * @return The changes found, with directory entries flagged. Empty if the directory was never captured.
+     */
+    List<Change> rescan(final Path theDirectory) {
+        List<Change> changes = new ArrayList<>();
+        Listing old = myListings.get(theDirectory);
+        if (old == null) {
+            return changes;
+        }
+        Listing.Builder builder = new Listing.Builder();
+        if (!readDirectory(theDirectory, builder)) {
+            return changes;
+        }
+        Listing current = builder.build();
+        synchronized (old) {
+            old.diff(current, changes);
+            myListings.replace(theDirectory, old, current);
+        }
+        return changes;
+    }
+
+    /**
+     * Reads every entry of a directory into a builder.
+     *
+     * @param theDirectory The directory to read.
+     * @param theBuilder   The builder that receives the entries.
+     * @return true if the directory could be read, false otherwise.
+     */
+    private static boolean readDirectory(final Path theDirectory, final Listing.Builder theBuilder) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(theDirectory)) {
+            for (Path entry : stream) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    theBuilder.add(entry.getFileName().toString(), attrs.lastModifiedTime().toMillis(),
+                            attrs.isDirectory());
+                } catch (IOException theE) {
+                    // the entry was removed while listing; treat it as gone
+                }
+            }
+            return true;
+        } catch (IOException theE) {
+            System.err.println("Could not list directory: " + theDirectory + " - " + theE.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * A change found by a rescan.
+     */
+    static final class Change {
+        /**
+         * Kind of the change.
+         */
+        private final WatchEvent.Kind<Path> myKind;
+
+        /**
+         * Name of the changed entry.
+         */
+        private final String myName;
+
+        /**
+         * Whether the changed entry is a directory.
+         */
+        private final boolean myIsDirectory;
+
+        /**
+         * Constructs a Change.
+         *
+         * @param theKind        Kind of the change
+         * @param theName        Name of the changed entry
+         * @param theIsDirectory Whether the changed entry is a directory
+         */
+        private Change(WatchEvent.Kind<Path> theKind, String theName, boolean theIsDirectory) {
+            myKind = theKind;
+            myName = theName;
+            myIsDirectory = theIsDirectory;
+        }
+
+        /**
+         * Gets the kind of the change.
+         *
+         * @return The change kind
+         */
+        WatchEvent.Kind<Path> getKind() {
+            return myKind;
+        }
+
+        /**
+         * Gets the name of the changed entry.
+         *
+         * @return The entry name
+         */
+        String getName() {
+            return myName;
+        }
+
+        /**
+         * Checks if the changed entry is a directory.
+         *
+         * @return true if the entry is a directory, false otherwise
+         */
+        boolean isDirectory() {
+            return myIsDirectory;
+        }
+    }
+
+    /**
+     * The entries of one directory, kept as parallel arrays sorted by name.
+     * The time of each entry is its modification time when it was last listed or recorded.
+     */
+    static final class Listing {
+        /**
+         * Sorted entry names.
+         */
+        private String[] myNames;
+
+        /**
+         * Last known modification time of each entry, in epoch milliseconds.
+         */
+        private long[] myTimes;
+
+        /**
+         * Whether each entry is a directory.
+         */
+        private boolean[] myDirectories;
+
+        /**
+         * Number of entries in use.
+         */
+        private int mySize;
+
+        /**
+         * Constructs a listing from arrays that are already sorted.
+         *
+         * @param theNames       Sorted entry names
+         * @param theTimes       Time of each entry
+         * @param theDirectories Whether each entry is a directory
+         */
+        private Listing(String[] theNames, long[] theTimes, boolean[] theDirectories) {
+            myNames = theNames;
+            myTimes = theTimes;
+            myDirectories = theDirectories;
+            mySize = theNames.length;
+        }
+
+        /**
+         * Adds or updates an entry.
+         *
+         * @param theName        The entry name
+         * @param theTime        The modification time of the entry in epoch milliseconds
+         * @param theIsDirectory Whether the entry is a directory
+         */
+        private synchronized void put(String theName, long theTime, boolean theIsDirectory) {
+            int index = Arrays.binarySearch(myNames, 0, mySize, theName);
+            if (index >= 0) {
+                myTimes[index] = theTime;
+                myDirectories[index] = theIsDirectory;
+                return;
+            }
+            index = -index - 1;
+            if (mySize == myNames.length) {
+                int capacity = Math.max(4, mySize * 2);
+                myNames = Arrays.copyOf(myNames, capacity);
+                myTimes = Arrays.copyOf(myTimes, capacity);
+                myDirectories = Arrays.copyOf(myDirectories, capacity);
+            }
+            System.arraycopy(myNames, index, myNames, index + 1, mySize - index);
+            System.arraycopy(myTimes, index, myTimes, index + 1, mySize - index);
+            System.arraycopy(myDirectories, index, myDirectories, index + 1, mySize - index);
+            myNames[index] = theName.intern();
+            myTimes[index] = theTime;
+            myDirectories[index] = theIsDirectory;
+            mySize++;
+        }
+
+        /**
+         * Removes an entry if it is present.
+         *
+         * @param theName The entry name
+         */
+        private synchronized void remove(String theName) {
+            int index = Arrays.binarySearch(myNames, 0, mySize, theName);
+            if (index < 0) {
+                return;
+            }
+            int moved = mySize - index - 1;
+            System.arraycopy(myNames, index + 1, myNames, index, moved);
+            System.arraycopy(myTimes, index + 1, myTimes, index, moved);
+            System.arraycopy(myDirectories, index + 1, myDirectories, index, moved);
+            mySize--;
+            myNames[mySize] = null;
+        }
+
+        /**
+         * Gets the names of the entries that are not directories.
+         *
+         * @return The sorted file names
+         */
+        private synchronized String[] fileNames() {
+            int count = 0;
+            for (int i = 0; i < mySize; i++) {
+                if (!myDirectories[i]) {
+                    count++;
+                }
+            }
+            String[] names = new String[count];
+            for (int i = 0, j = 0; i < mySize; i++) {
+                if (!myDirectories[i]) {
+                    names[j++] = myNames[i];
+                }
+            }
+            return names;
+        }
+
+        /**
+         * Compares this listing with a newer one by merging the two sorted name arrays.
+         * A file whose modification time differs in either direction counts as modified, so that
+         * coarse timestamps, clock skew and restored times do not hide a change.
+         *
+         * @param theCurrent The newer listing
+         * @param theChanges The list that receives the changes
+         */
+        private synchronized void diff(Listing theCurrent, List<Change> theChanges) {
+            int i = 0;
+            int j = 0;
+            while (i < mySize || j < theCurrent.mySize) {
+                int cmp;
+                if (i == mySize) {
+                    cmp = 1;
+                } else if (j == theCurrent.mySize) {
+                    cmp = -1;
+                } else {
+                    cmp = myNames[i].compareTo(theCurrent.myNames[j]);
+                }
+                if (cmp < 0) {
+                    theChanges.add(new Change(StandardWatchEventKinds.ENTRY_DELETE, myNames[i], myDirectories[i]));
+                    i++;
+                } else if (cmp > 0) {
+                    theChanges.add(new Change(StandardWatchEventKinds.ENTRY_CREATE, theCurrent.myNames[j],
+                            theCurrent.myDirectories[j]));
+                    j++;
+                } else {
+                    if (!theCurrent.myDirectories[j] && theCurrent.myTimes[j] != myTimes[i]) {
+                        theChanges.add(new Change(StandardWatchEventKinds.ENTRY_MODIFY, myNames[i], false));
+                    }
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        /**
+         * Collects the entries of a directory in any order and sorts them into a listing.
+         */
+        static final class Builder {
+            /**
+             * Entry names in the order they were added.
+             */
+            private final List<String> myNames = new ArrayList<>();
+
+            /**
+             * Time of each added entry.
+             */
+            private final List<Long> myTimes = new ArrayList<>();
+
+            /**
+             * Whether each added entry is a directory.
+             */
+            private final List<Boolean> myDirectories = new ArrayList<>();
+
+            /**
+             * Adds an entry.
+             *
+             * @param theName        The entry name
+             * @param theTime        The modification time of the entry in epoch milliseconds
+             * @param theIsDirectory Whether the entry is a directory
+             */
+            void add(String theName, long theTime, boolean theIsDirectory) {
+                myNames.add(theName.intern());
+                myTimes.add(theTime);
+                myDirectories.add(theIsDirectory);
+            }
+
+            /**
+             * Sorts the added entries by name into a listing.
+             *
+             * @return The listing
+             */
+            private Listing build() {
+                int size = myNames.size();
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, Comparator.comparing(myNames::get));
+                String[] names = new String[size];
+                long[] times = new long[size];
+                boolean[] directories = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    names[i] = myNames.get(order[i]);
+                    times[i] = myTimes.get(order[i]);
+                    directories[i] = myDirectories.get(order[i]);
+                }
+                return new Listing(names, times, directories);
+            }
+        }
+    }
+}
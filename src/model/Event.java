@@ -11,6 +11,8 @@ public final class Event {
     private final String myPath;
     private final String myEventKind;
     private final LocalDateTime myTimeStamp;
+    private final LocalDateTime myFirstTimeStamp;
+    private final int myCount;
 
     /**
      * Creates an Event with file details and the type of change.
@@ -27,6 +29,31 @@ public final class Event {
         myPath = thePath;
         myEventKind = theEventKind;
         myTimeStamp =  LocalDateTime.now();
+        myFirstTimeStamp = myTimeStamp;
+        myCount = 1;
+    }
+
+    /**
+     * Creates an Event that stands for a burst of events on the same file.
+     *
+     * @param theExtension The file extension.
+     * @param theFileName The name of the file.
+     * @param thePath The file's location.
+     * @param theEventKind The type of event the burst amounts to.
+     * @param theFirstTimeStamp When the first event of the burst happened.
+     * @param theTimeStamp When the last event of the burst happened.
+     * @param theCount How many events the burst contained.
+     */
+    public Event(final String theExtension, final String theFileName, final String thePath,
+            final String theEventKind, final LocalDateTime theFirstTimeStamp, final LocalDateTime theTimeStamp,
+            final int theCount) {
+        myExtension = theExtension;
+        myFileName = theFileName;
+        myPath = thePath;
+        myEventKind = theEventKind;
+        myTimeStamp = theTimeStamp;
+        myFirstTimeStamp = theFirstTimeStamp;
+        myCount = theCount;
     }
 
     public final String getExtension() {
@@ -49,6 +76,14 @@ public final class Event {
         return myTimeStamp;
     }
 
+    public final LocalDateTime getFirstTimeStamp() {
+        return myFirstTimeStamp;
+    }
+
+    public final int getCount() {
+        return myCount;
+    }
+
     public final Object[] toArray() {
         return new Object[] { myExtension, myFileName, myPath, myEventKind, myTimeStamp };
     }
@@ -66,6 +101,10 @@ public final class Event {
                 .append("\npath: ").append(myPath)
                 .append("\nkind: ").append(myEventKind)
                 .append("\ntime: ").append(myTimeStamp);
+        if (myCount > 1) {
+            sB.append("\ncount: ").append(myCount)
+                    .append("\nfirst time: ").append(myFirstTimeStamp);
+        }
         return sB.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,525 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads an event archive, the columnar file written by {@link ArchiveExporter}. The archive is a
+ * sequence of blocks followed by a footer. Paths, extensions and event kinds are replaced by their
+ * index in a dictionary kept in the footer. A block holds a run of rows column by column: the path,
+ * extension and kind indexes, the times as differences from the row before and the file names,
+ * all as variable-length integers and deflated together. The footer also lists every block with
+ * its earliest and latest time and, for each dictionary column, the indexes found in it when there
+ * are few. A scan checks its filter against the dictionaries and that list first, so blocks that
+ * cannot hold a match are never read or inflated, and builds events only for the rows that match.
+ */
+final class EventArchive implements Closeable {
+
+    /**
+     * File name suffix of an archive.
+     */
+    static final String SUFFIX = ".fwa";
+
+    /**
+     * Bytes at the start and end of every archive.
+     */
+    static final int MAGIC = 0x46574131;
+
+    /**
+     * Number of dictionary-encoded columns: path, extension and event kind, in that order.
+     */
+    static final int DICTIONARY_COLUMNS = 3;
+
+    /**
+     * Largest number of distinct indexes of a column listed for a block. A block with more lists none.
+     */
+    static final int PRESENT_LIMIT = 64;
+
+    /**
+     * Bytes of the trailer: the footer offset and the magic number.
+     */
+    private static final int TRAILER_SIZE = 12;
+
+    /**
+     * The archive file.
+     */
+    private final FileChannel myChannel;
+
+    /**
+     * The path, extension and event kind dictionaries.
+     */
+    private final String[][] myDictionaries;
+
+    /**
+     * The blocks of the archive, in file order.
+     */
+    private final List<Block> myBlocks;
+
+    /**
+     * Number of blocks read by the last scan.
+     */
+    private int myBlocksRead;
+
+    /**
+     * Opens an archive and reads its footer.
+     *
+     * @param theFile The archive file.
+     * @throws IOException if the file could not be read or is not an archive.
+     */
+    EventArchive(final Path theFile) throws IOException {
+        myChannel = FileChannel.open(theFile, StandardOpenOption.READ);
+        try {
+            long size = myChannel.size();
+            if (size < 4 + TRAILER_SIZE || readFully(0, 4).getInt() != MAGIC) {
+                throw new IOException("Not an event archive: " + theFile);
+            }
+            ByteBuffer trailer = readFully(size - TRAILER_SIZE, TRAILER_SIZE);
+            long footer = trailer.getLong();
+            if (trailer.getInt() != MAGIC || footer < 4 || footer > size - TRAILER_SIZE) {
+                throw new IOException("Event archive is incomplete: " + theFile);
+            }
+            ByteBuffer bytes = readFully(footer, (int) (size - TRAILER_SIZE - footer));
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(bytes.array(), 0, bytes.limit()));
+            myDictionaries = new String[DICTIONARY_COLUMNS][];
+            for (int column = 0; column < DICTIONARY_COLUMNS; column++) {
+                myDictionaries[column] = new String[in.readInt()];
+                for (int i = 0; i < myDictionaries[column].length; i++) {
+                    myDictionaries[column][i] = in.readUTF();
+                }
+            }
+            int blocks = in.readInt();
+            myBlocks = new ArrayList<>(blocks);
+            for (int i = 0; i < blocks; i++) {
+                myBlocks.add(Block.read(in));
+            }
+        } catch (IOException | RuntimeException theE) {
+            myChannel.close();
+            throw theE;
+        }
+    }
+
+    /**
+     * Gets the number of blocks in the archive.
+     *
+     * @return The number of blocks.
+     */
+    int getBlockCount() {
+        return myBlocks.size();
+    }
+
+    /**
+     * Gets the number of blocks the last scan had to read, the rest having been skipped by its filter.
+     *
+     * @return The number of blocks read.
+     */
+    int getBlocksRead() {
+        return myBlocksRead;
+    }
+
+    /**
+     * Hands every event that matches some criteria to a consumer, in the order they were archived.
+     * The criteria match the same events here as in a search of the database.
+     * Events have the time they were logged as both their first and last time and a count of one.
+     *
+     * @param theCriteria The criteria the events must match.
+     * @param theConsumer Receives the matching events.
+     * @return The number of matching events.
+     * @throws IOException if a block could not be read or is damaged.
+     */
+    long scan(final SearchCriteria theCriteria, final Consumer<Event> theConsumer) throws IOException {
+        BitSet[] allowed = new BitSet[DICTIONARY_COLUMNS];
+        allowed[0] = allowed(myDictionaries[0], theCriteria.getPath(), theCriteria.getPathMatch());
+        allowed[1] = allowed(myDictionaries[1], theCriteria.getExtension(), theCriteria.getExtensionMatch());
+        allowed[2] = allowed(myDictionaries[2], theCriteria.getKind(), SearchCriteria.Match.EXACT);
+        myBlocksRead = 0;
+        long matched = 0;
+        Inflater inflater = new Inflater();
+        try {
+            for (Block block : myBlocks) {
+                if (block.mayMatch(theCriteria, allowed)) {
+                    myBlocksRead++;
+                    try {
+                        matched += scanBlock(block, inflate(block, inflater), theCriteria, allowed, theConsumer);
+                    } catch (BufferUnderflowException | IndexOutOfBoundsException theE) {
+                        throw new IOException("Damaged block at " + block.myOffset, theE);
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return matched;
+    }
+
+    @Override
+    public void close() throws IOException {
+        myChannel.close();
+    }
+
+    /**
+     * Reads and inflates the columns of a block.
+     *
+     * @param theBlock    The block.
+     * @param theInflater The inflater to use.
+     * @return The inflated columns.
+     * @throws IOException if the block could not be read or does not inflate to its size.
+     */
+    private ByteBuffer inflate(final Block theBlock, final Inflater theInflater) throws IOException {
+        ByteBuffer compressed = readFully(theBlock.myOffset, theBlock.myCompressedSize);
+        byte[] raw = new byte[theBlock.myRawSize];
+        theInflater.reset();
+        theInflater.setInput(compressed.array(), 0, compressed.limit());
+        try {
+            if (theInflater.inflate(raw) != raw.length || !theInflater.finished()) {
+                throw new IOException("Damaged block at " + theBlock.myOffset);
+            }
+        } catch (DataFormatException theE) {
+            throw new IOException("Damaged block at " + theBlock.myOffset, theE);
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    /**
+     * Decodes the rows of a block and hands those that match to a consumer. The dictionary
+     * columns and times are decoded for every row; a file name becomes a string only if the
+     * rest of its row matches.
+     *
+     * @param theBlock    The block.
+     * @param theColumns  The inflated columns of the block.
+     * @param theCriteria The criteria the events must match.
+     * @param theAllowed  The dictionary indexes the criteria allow, by column, or null where any is allowed.
+     * @param theConsumer Receives the matching events.
+     * @return The number of matching events.
+     */
+    private long scanBlock(final Block theBlock, final ByteBuffer theColumns, final SearchCriteria theCriteria,
+                           final BitSet[] theAllowed, final Consumer<Event> theConsumer) {
+        int rows = theBlock.myRows;
+        int[][] ids = new int[DICTIONARY_COLUMNS][rows];
+        for (int column = 0; column < DICTIONARY_COLUMNS; column++) {
+            for (int row = 0; row < rows; row++) {
+                ids[column][row] = (int) readVarLong(theColumns);
+            }
+        }
+        long[] times = new long[rows];
+        long time = 0;
+        for (int row = 0; row < rows; row++) {
+            time += unzigzag(readVarLong(theColumns));
+            times[row] = time;
+        }
+        long matched = 0;
+        for (int row = 0; row < rows; row++) {
+            int length = (int) readVarLong(theColumns);
+            boolean match = times[row] >= theCriteria.getFromMillis() && times[row] < theCriteria.getToMillis();
+            for (int column = 0; match && column < DICTIONARY_COLUMNS; column++) {
+                match = theAllowed[column] == null || theAllowed[column].get(ids[column][row]);
+            }
+            if (!match) {
+                theColumns.position(theColumns.position() + length);
+                continue;
+            }
+            String fileName = new String(theColumns.array(), theColumns.position(), length, StandardCharsets.UTF_8);
+            theColumns.position(theColumns.position() + length);
+            if (theCriteria.getFileName() != null
+                    && !matches(fileName, theCriteria.getFileName(), theCriteria.getFileNameMatch())) {
+                continue;
+            }
+            LocalDateTime when = EventCodec.fromEpochMillis(times[row]);
+            theConsumer.accept(new Event(myDictionaries[1][ids[1][row]], fileName, myDictionaries[0][ids[0][row]],
+                    myDictionaries[2][ids[2][row]], when, when, 1));
+            matched++;
+        }
+        return matched;
+    }
+
+    /**
+     * Finds the dictionary indexes whose values match some text.
+     *
+     * @param theDictionary The dictionary.
+     * @param theValue      The text to match, or null to match any value.
+     * @param theMatch      How the text is matched.
+     * @return The matching indexes, or null if every index matches.
+     */
+    private static BitSet allowed(final String[] theDictionary, final String theValue,
+                                  final SearchCriteria.Match theMatch) {
+        if (theValue == null) {
+            return null;
+        }
+        BitSet allowed = new BitSet(theDictionary.length);
+        for (int i = 0; i < theDictionary.length; i++) {
+            if (matches(theDictionary[i], theValue, theMatch)) {
+                allowed.set(i);
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Matches a value against some text.
+     *
+     * @param theCandidate The value.
+     * @param theValue     The text to match.
+     * @param theMatch     How the text is matched.
+     * @return true if the value matches, false otherwise.
+     */
+    private static boolean matches(final String theCandidate, final String theValue,
+                                   final SearchCriteria.Match theMatch) {
+        return switch (theMatch) {
+            case EXACT -> theCandidate.equals(theValue);
+            case PREFIX -> theCandidate.startsWith(theValue);
+            case CONTAINS -> foldAscii(theCandidate).contains(foldAscii(theValue));
+        };
+    }
+
+    /**
+     * Lower-cases the ASCII letters of some text and leaves every other character as it is,
+     * the same folding SQLite's LIKE applies.
+     *
+     * @param theText The text.
+     * @return The folded text.
+     */
+    private static String foldAscii(final String theText) {
+        char[] chars = null;
+        for (int i = 0; i < theText.length(); i++) {
+            char c = theText.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = theText.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars == null ? theText : new String(chars);
+    }
+
+    /**
+     * Reads bytes of the archive.
+     *
+     * @param thePosition Where the bytes start.
+     * @param theLength   The number of bytes.
+     * @return A heap buffer holding the bytes, ready to be read.
+     * @throws IOException if the bytes could not be read, including when the file ends before them.
+     */
+    private ByteBuffer readFully(final long thePosition, final int theLength) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(theLength);
+        while (buffer.hasRemaining()) {
+            if (myChannel.read(buffer, thePosition + buffer.position()) < 0) {
+                throw new IOException("Event archive ends early");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Writes an unsigned variable-length integer: seven bits a byte, low bits first.
+     *
+     * @param theOut   The destination.
+     * @param theValue The value, read as unsigned.
+     */
+    static void writeVarLong(final ByteArrayOutputStream theOut, final long theValue) {
+        long value = theValue;
+        while ((value & ~0x7FL) != 0) {
+            theOut.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        theOut.write((int) value);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer written by {@link #writeVarLong(ByteArrayOutputStream, long)}.
+     *
+     * @param theIn The source.
+     * @return The value.
+     */
+    static long readVarLong(final ByteBuffer theIn) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = theIn.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Maps a signed value to an unsigned one with small magnitudes staying small.
+     *
+     * @param theValue The signed value.
+     * @return The unsigned value.
+     */
+    static long zigzag(final long theValue) {
+        return (theValue << 1) ^ (theValue >> 63);
+    }
+
+    /**
+     * Reverses {@link #zigzag(long)}.
+     *
+     * @param theValue The unsigned value.
+     * @return The signed value.
+     */
+    static long unzigzag(final long theValue) {
+        return (theValue >>> 1) ^ -(theValue & 1);
+    }
+
+    /**
+     * Where a block is and what it may hold.
+     */
+    static final class Block {
+        /**
+         * Offset of the deflated columns in the file.
+         */
+        private final long myOffset;
+
+        /**
+         * Size of the deflated columns in bytes.
+         */
+        private final int myCompressedSize;
+
+        /**
+         * Size of the inflated columns in bytes.
+         */
+        private final int myRawSize;
+
+        /**
+         * Number of rows.
+         */
+        private final int myRows;
+
+        /**
+         * Earliest time in epoch milliseconds.
+         */
+        private final long myMinTime;
+
+        /**
+         * Latest time in epoch milliseconds.
+         */
+        private final long myMaxTime;
+
+        /**
+         * The dictionary indexes found in the block, by column, or null where there are too many to list.
+         */
+        private final int[][] myPresent;
+
+        /**
+         * Constructs a Block.
+         *
+         * @param theOffset         Offset of the deflated columns in the file.
+         * @param theCompressedSize Size of the deflated columns in bytes.
+         * @param theRawSize        Size of the inflated columns in bytes.
+         * @param theRows           Number of rows.
+         * @param theMinTime        Earliest time in epoch milliseconds.
+         * @param theMaxTime        Latest time in epoch milliseconds.
+         * @param thePresent        The dictionary indexes found in the block, by column, or null where there are too many.
+         */
+        Block(final long theOffset, final int theCompressedSize, final int theRawSize, final int theRows,
+              final long theMinTime, final long theMaxTime, final int[][] thePresent) {
+            myOffset = theOffset;
+            myCompressedSize = theCompressedSize;
+            myRawSize = theRawSize;
+            myRows = theRows;
+            myMinTime = theMinTime;
+            myMaxTime = theMaxTime;
+            myPresent = thePresent;
+        }
+
+        /**
+         * Writes the block's entry in the footer.
+         *
+         * @param theOut The footer.
+         * @throws IOException if the entry could not be written.
+         */
+        void write(final DataOutput theOut) throws IOException {
+            theOut.writeLong(myOffset);
+            theOut.writeInt(myCompressedSize);
+            theOut.writeInt(myRawSize);
+            theOut.writeInt(myRows);
+            theOut.writeLong(myMinTime);
+            theOut.writeLong(myMaxTime);
+            for (int[] present : myPresent) {
+                theOut.writeInt(present == null ? -1 : present.length);
+                if (present != null) {
+                    for (int id : present) {
+                        theOut.writeInt(id);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads a block's entry in the footer.
+         *
+         * @param theIn The footer.
+         * @return The block.
+         * @throws IOException if the entry could not be read.
+         */
+        private static Block read(final DataInputStream theIn) throws IOException {
+            long offset = theIn.readLong();
+            int compressed = theIn.readInt();
+            int raw = theIn.readInt();
+            int rows = theIn.readInt();
+            long min = theIn.readLong();
+            long max = theIn.readLong();
+            int[][] present = new int[DICTIONARY_COLUMNS][];
+            for (int column = 0; column < DICTIONARY_COLUMNS; column++) {
+                int count = theIn.readInt();
+                if (count >= 0) {
+                    present[column] = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        present[column][i] = theIn.readInt();
+                    }
+                }
+            }
+            return new Block(offset, compressed, raw, rows, min, max, present);
+        }
+
+        /**
+         * Checks whether the block may hold an event that matches some criteria.
+         *
+         * @param theCriteria The criteria.
+         * @param theAllowed  The dictionary indexes the criteria allow, by column, or null where any is allowed.
+         * @return false if no event of the block can match, true otherwise.
+         */
+        private boolean mayMatch(final SearchCriteria theCriteria, final BitSet[] theAllowed) {
+            if (myMaxTime < theCriteria.getFromMillis() || myMinTime >= theCriteria.getToMillis()) {
+                return false;
+            }
+            for (int column = 0; column < DICTIONARY_COLUMNS; column++) {
+                if (theAllowed[column] == null) {
+                    continue;
+                }
+                if (theAllowed[column].isEmpty()) {
+                    return false;
+                }
+                if (myPresent[column] != null) {
+                    boolean any = false;
+                    for (int id : myPresent[column]) {
+                        any |= theAllowed[column].get(id);
+                    }
+                    if (!any) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
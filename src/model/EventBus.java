@@ -0,0 +1,125 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Typed publish and subscribe for high-rate messages, such as the events the watcher captures.
+ * Each topic keeps its own array of subscribers, replaced as a whole when a subscriber is added
+ * or removed, so publishing takes no lock, allocates nothing and calls only the subscribers of its
+ * topic with the value as it is. Low-rate commands between the view and the controllers keep
+ * going through PropertyChangeSupport. Subscribers are called on the publishing thread and must
+ * not block; one that throws is reported and the rest are still called.
+ */
+public final class EventBus {
+
+    /**
+     * Batches of captured events, oldest first, published once per batch by the watcher.
+     */
+    public static final Topic<List<Event>> EVENTS = new Topic<>("events");
+
+    /**
+     * Subscribers of a topic that has none.
+     */
+    private static final Consumer<?>[] NONE = new Consumer<?>[0];
+
+    /**
+     * Subscribers by topic.
+     */
+    private final Map<Topic<?>, Consumer<?>[]> mySubscribers;
+
+    /**
+     * Constructs an EventBus with no subscribers.
+     */
+    public EventBus() {
+        mySubscribers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds a subscriber to a topic. The same subscriber added twice is called twice.
+     *
+     * @param theTopic      The topic.
+     * @param theSubscriber Called with every value published to the topic.
+     * @param <T>           The type of the values of the topic.
+     */
+    public <T> void subscribe(final Topic<T> theTopic, final Consumer<? super T> theSubscriber) {
+        mySubscribers.compute(theTopic, (theKey, theOld) -> {
+            Consumer<?>[] old = theOld == null ? NONE : theOld;
+            Consumer<?>[] subscribers = Arrays.copyOf(old, old.length + 1);
+            subscribers[old.length] = theSubscriber;
+            return subscribers;
+        });
+    }
+
+    /**
+     * Removes a subscriber from a topic once. Nothing happens if it is not subscribed.
+     *
+     * @param theTopic      The topic.
+     * @param theSubscriber The subscriber to remove.
+     * @param <T>           The type of the values of the topic.
+     */
+    public <T> void unsubscribe(final Topic<T> theTopic, final Consumer<? super T> theSubscriber) {
+        mySubscribers.computeIfPresent(theTopic, (theKey, theOld) -> {
+            for (int i = 0; i < theOld.length; i++) {
+                if (theOld[i] == theSubscriber) {
+                    Consumer<?>[] subscribers = new Consumer<?>[theOld.length - 1];
+                    System.arraycopy(theOld, 0, subscribers, 0, i);
+                    System.arraycopy(theOld, i + 1, subscribers, i, theOld.length - i - 1);
+                    return subscribers.length == 0 ? null : subscribers;
+                }
+            }
+            return theOld;
+        });
+    }
+
+    /**
+     * Hands a value to every subscriber of a topic, in the order they subscribed, on the calling thread.
+     *
+     * @param theTopic The topic.
+     * @param theValue The value.
+     * @param <T>      The type of the values of the topic.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void publish(final Topic<T> theTopic, final T theValue) {
+        Consumer<?>[] subscribers = mySubscribers.get(theTopic);
+        if (subscribers == null) {
+            return;
+        }
+        for (Consumer<?> subscriber : subscribers) {
+            try {
+                ((Consumer<? super T>) subscriber).accept(theValue);
+            } catch (RuntimeException theE) {
+                System.err.println("Error in " + theTopic + " subscriber: " + theE.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A kind of message on the bus and the type of its values. Topics are compared by identity.
+     *
+     * @param <T> The type of the values of the topic.
+     */
+    public static final class Topic<T> {
+        /**
+         * Name of the topic, for messages.
+         */
+        private final String myName;
+
+        /**
+         * Constructs a Topic.
+         *
+         * @param theName Name of the topic, for messages.
+         */
+        public Topic(final String theName) {
+            myName = theName;
+        }
+
+        @Override
+        public String toString() {
+            return myName;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package model;
+
+import java.io.File;
+import java.nio.file.StandardWatchEventKinds;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collapses bursts of events on the same file into one event. Events are held per full path
+ * until no new event for that path has arrived for the quiet window, then one event is passed on
+ * that records how many events it replaces and when the first and last of them happened.
+ * A file that never goes quiet, such as a log being appended to, is not held forever: once its
+ * burst has been held for the maximum hold time, the next event on it passes the burst on and
+ * starts a new one. A burst that ends with a delete is always passed on as a delete.
+ */
+final class EventCoalescer {
+
+    /**
+     * Kind name of create events.
+     */
+    private static final String CREATE = StandardWatchEventKinds.ENTRY_CREATE.name();
+
+    /**
+     * Kind name of modify events.
+     */
+    private static final String MODIFY = StandardWatchEventKinds.ENTRY_MODIFY.name();
+
+    /**
+     * Kind name of delete events.
+     */
+    private static final String DELETE = StandardWatchEventKinds.ENTRY_DELETE.name();
+
+    /**
+     * Number of quiet windows a burst is held at most, unless another hold time is given.
+     */
+    static final int DEFAULT_HOLD_WINDOWS = 4;
+
+    /**
+     * How long a path must be quiet before its burst is passed on, in nanoseconds.
+     */
+    private final long myWindowNanos;
+
+    /**
+     * How long a burst is held at most before the next event on its path passes it on, in nanoseconds.
+     */
+    private final long myMaxHoldNanos;
+
+    /**
+     * Next stage, which receives each coalesced event.
+     */
+    private final Consumer<Event> myDownstream;
+
+    /**
+     * Bursts waiting for their quiet window, ordered from least to most recently updated.
+     */
+    private final LinkedHashMap<String, Burst> myBursts;
+
+    /**
+     * Thread that passes on bursts once they are quiet.
+     */
+    private final Thread myThread;
+
+    /**
+     * Monitor the coalescer thread waits on between passes, so that close can wake it.
+     */
+    private final Object myTick;
+
+    /**
+     * Flag indicating whether the coalescer accepts new events.
+     */
+    private volatile boolean myIsRunning;
+
+    /**
+     * Creates and starts an event coalescer that holds a burst for at most
+     * {@link #DEFAULT_HOLD_WINDOWS} quiet windows.
+     *
+     * @param theWindow     How long a file must be quiet before its burst is passed on.
+     * @param theDownstream The next stage, which receives each coalesced event.
+     * @throws IllegalArgumentException if the window is not positive
+     */
+    EventCoalescer(final Duration theWindow, final Consumer<Event> theDownstream) {
+        this(theWindow, theWindow.multipliedBy(DEFAULT_HOLD_WINDOWS), theDownstream);
+    }
+
+    /**
+     * Creates and starts an event coalescer.
+     *
+     * @param theWindow     How long a file must be quiet before its burst is passed on.
+     * @param theMaxHold    How long a burst is held at most before the next event on its file passes it on.
+     * @param theDownstream The next stage, which receives each coalesced event.
+     * @throws IllegalArgumentException if the window is not positive or the hold time is shorter than the window
+     */
+    EventCoalescer(final Duration theWindow, final Duration theMaxHold, final Consumer<Event> theDownstream) {
+        if (theWindow.isNegative() || theWindow.isZero()) {
+            throw new IllegalArgumentException("Quiet window must be positive");
+        }
+        if (theMaxHold.compareTo(theWindow) < 0) {
+            throw new IllegalArgumentException("Maximum hold time must be at least the quiet window");
+        }
+        myWindowNanos = theWindow.toNanos();
+        myMaxHoldNanos = theMaxHold.toNanos();
+        myDownstream = theDownstream;
+        myBursts = new LinkedHashMap<>();
+        myTick = new Object();
+        myIsRunning = true;
+        myThread = new Thread(this::runCoalescer, "event-coalesce");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * Adds an event to the burst for its file, starting a new burst if there is none. If the burst
+     * has been held for the maximum hold time, it is passed on and the event starts a new one.
+     *
+     * @param theEvent The event to add.
+     * @throws IllegalStateException if the coalescer has been closed.
+     */
+    void submit(final Event theEvent) {
+        if (!myIsRunning) {
+            throw new IllegalStateException("Event coalescer is closed");
+        }
+        String key = theEvent.getPath() + File.separator + theEvent.getFileName();
+        Event held = null;
+        synchronized (myBursts) {
+            Burst burst = myBursts.remove(key);
+            if (burst == null) {
+                burst = new Burst(theEvent);
+            } else if (System.nanoTime() - burst.myStartNanos >= myMaxHoldNanos) {
+                held = burst.toEvent();
+                burst = new Burst(theEvent);
+            } else {
+                burst.add(theEvent);
+            }
+            myBursts.put(key, burst);
+        }
+        if (held != null) {
+            myDownstream.accept(held);
+        }
+    }
+
+    /**
+     * Passes on every waiting burst without waiting for its quiet window.
+     */
+    void flush() {
+        List<Event> ready = new ArrayList<>();
+        synchronized (myBursts) {
+            for (Burst burst : myBursts.values()) {
+                ready.add(burst.toEvent());
+            }
+            myBursts.clear();
+        }
+        ready.forEach(myDownstream);
+    }
+
+    /**
+     * Stops accepting events, passes on every waiting burst and stops the coalescer thread.
+     * The thread is woken rather than interrupted, so bursts it is already passing on are not
+     * cut off by an interrupt in the next stage.
+     */
+    void close() {
+        myIsRunning = false;
+        synchronized (myTick) {
+            myTick.notifyAll();
+        }
+        try {
+            myThread.join();
+        } catch (InterruptedException theE) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Gets the number of files with a burst waiting for its quiet window.
+     *
+     * @return The number of waiting bursts.
+     */
+    int pending() {
+        synchronized (myBursts) {
+            return myBursts.size();
+        }
+    }
+
+    /**
+     * Passes on quiet bursts until the coalescer is closed.
+     */
+    private void runCoalescer() {
+        long tickMillis = Math.max(1, myWindowNanos / 4_000_000);
+        try {
+            while (myIsRunning) {
+                synchronized (myTick) {
+                    if (myIsRunning) {
+                        myTick.wait(tickMillis);
+                    }
+                }
+                passOnQuiet();
+            }
+        } catch (InterruptedException theE) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Passes on every burst whose file has been quiet for the whole window.
+     * Bursts are ordered by their last update, so the search stops at the first burst that is not quiet.
+     */
+    private void passOnQuiet() {
+        List<Event> ready = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (myBursts) {
+            Iterator<Burst> it = myBursts.values().iterator();
+            while (it.hasNext()) {
+                Burst burst = it.next();
+                if (now - burst.myLastNanos < myWindowNanos) {
+                    break;
+                }
+                ready.add(burst.toEvent());
+                it.remove();
+            }
+        }
+        ready.forEach(myDownstream);
+    }
+
+    /**
+     * The events seen for one file since its burst started.
+     */
+    private static final class Burst {
+        /**
+         * First event of the burst.
+         */
+        private final Event myFirst;
+
+        /**
+         * Most recent event of the burst.
+         */
+        private Event myLast;
+
+        /**
+         * Number of events in the burst.
+         */
+        private int myCount;
+
+        /**
+         * When the burst started, from System.nanoTime.
+         */
+        private final long myStartNanos;
+
+        /**
+         * When the most recent event was added, from System.nanoTime.
+         */
+        private long myLastNanos;
+
+        /**
+         * Starts a burst.
+         *
+         * @param theEvent The first event of the burst
+         */
+        private Burst(Event theEvent) {
+            myFirst = theEvent;
+            myLast = theEvent;
+            myCount = theEvent.getCount();
+            myStartNanos = System.nanoTime();
+            myLastNanos = myStartNanos;
+        }
+
+        /**
+         * Adds an event to the burst.
+         *
+         * @param theEvent The event to add
+         */
+        private void add(Event theEvent) {
+            myLast = theEvent;
+            myCount += theEvent.getCount();
+            myLastNanos = System.nanoTime();
+        }
+
+        /**
+         * Builds the single event that stands for the burst. A burst that ends with a delete is a delete,
+         * one that starts with a create is a create, and a delete followed by a create is a modify.
+         *
+         * @return The coalesced event
+         */
+        private Event toEvent() {
+            if (myCount == 1) {
+                return myFirst;
+            }
+            String first = myFirst.geEventKind();
+            String last = myLast.geEventKind();
+            String kind;
+            if (DELETE.equals(last)) {
+                kind = DELETE;
+            } else if (CREATE.equals(first)) {
+                kind = CREATE;
+            } else if (DELETE.equals(first)) {
+                kind = MODIFY;
+            } else {
+                kind = last;
+            }
+            return new Event(myLast.getExtension(), myLast.getFileName(), myLast.getPath(), kind,
+                    myFirst.getFirstTimeStamp(), myLast.getTimeStamp(), myCount);
+        }
+    }
+}
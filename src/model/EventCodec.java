@@ -0,0 +1,77 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Compact binary form of an event, used wherever events are kept on disk outside the database.
+ * A record is the four strings of the event in modified UTF-8 followed by its first and last
+ * times in epoch milliseconds and its count.
+ */
+final class EventCodec {
+
+    /**
+     * Prevents instantiation.
+     */
+    private EventCodec() {
+    }
+
+    /**
+     * Writes an event.
+     *
+     * @param theOut   The destination.
+     * @param theEvent The event to write.
+     * @throws IOException if the event could not be written.
+     */
+    static void write(final DataOutput theOut, final Event theEvent) throws IOException {
+        theOut.writeUTF(theEvent.getExtension());
+        theOut.writeUTF(theEvent.getFileName());
+        theOut.writeUTF(theEvent.getPath());
+        theOut.writeUTF(theEvent.geEventKind());
+        theOut.writeLong(toEpochMillis(theEvent.getFirstTimeStamp()));
+        theOut.writeLong(toEpochMillis(theEvent.getTimeStamp()));
+        theOut.writeInt(theEvent.getCount());
+    }
+
+    /**
+     * Reads an event written by {@link #write(DataOutput, Event)}.
+     *
+     * @param theIn The source.
+     * @return The event.
+     * @throws IOException if the event could not be read, including when the source ends part way through it.
+     */
+    static Event read(final DataInput theIn) throws IOException {
+        String extension = theIn.readUTF();
+        String fileName = theIn.readUTF();
+        String path = theIn.readUTF();
+        String kind = theIn.readUTF();
+        LocalDateTime first = fromEpochMillis(theIn.readLong());
+        LocalDateTime last = fromEpochMillis(theIn.readLong());
+        int count = theIn.readInt();
+        return new Event(extension, fileName, path, kind, first, last, count);
+    }
+
+    /**
+     * Converts a local time to epoch milliseconds in the system time zone.
+     *
+     * @param theTime The local time.
+     * @return The time in epoch milliseconds.
+     */
+    static long toEpochMillis(final LocalDateTime theTime) {
+        return theTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Converts epoch milliseconds to a local time in the system time zone.
+     *
+     * @param theMillis The time in epoch milliseconds.
+     * @return The local time.
+     */
+    static LocalDateTime fromEpochMillis(final long theMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(theMillis), ZoneId.systemDefault());
+    }
+}
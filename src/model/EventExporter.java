@@ -0,0 +1,42 @@
+package model;
+
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Writes the rows of the event log that match some criteria to a file. An export runs on the
+ * calling thread; {@link #cancel()} may be called from any thread.
+ */
+interface EventExporter {
+
+    /**
+     * Exports the matching rows to a file, replacing it if it exists. A failed or cancelled
+     * export leaves no partial file.
+     *
+     * @param theFile     The file to write.
+     * @param theProgress Receives the number of rows written so far and the total, on the calling thread.
+     * @return The number of rows written.
+     * @throws DatabaseException     if the rows could not be read or the file could not be written.
+     * @throws CancellationException if the export was cancelled.
+     */
+    long export(Path theFile, Progress theProgress) throws DatabaseException;
+
+    /**
+     * Asks a running export to stop. It stops at its next progress report.
+     */
+    void cancel();
+
+    /**
+     * Receives the progress of an export.
+     */
+    @FunctionalInterface
+    interface Progress {
+        /**
+         * Reports how far the export has got.
+         *
+         * @param theWritten The number of rows written so far.
+         * @param theTotal   The number of rows the export will write.
+         */
+        void update(long theWritten, long theTotal);
+    }
+}
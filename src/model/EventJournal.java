@@ -0,0 +1,354 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of captured events, kept in numbered segment files that are written through
+ * a file channel. Each record is its length, a CRC-32C of its bytes, its sequence number and the
+ * event in the form written by {@link EventCodec}. Sequence numbers rise by one per record and keep
+ * rising across runs, so a save can store the last one it covered and replay can skip everything
+ * at or below it. A batch is written with one call and synced to disk once, so durability costs
+ * one sync per batch rather than one per event. A crash part way through a record leaves a
+ * record that is cut short or whose checksum fails, and replay of that segment stops there.
+ * No segment stays mapped or open once it is rotated, so it can be deleted on every platform.
+ * The journal is not thread-safe; its owner must serialize calls.
+ */
+final class EventJournal {
+
+    /**
+     * Size of a segment file in bytes, unless another size is given.
+     */
+    static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+    /**
+     * Bytes in front of each record: its length and its checksum.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * File name prefix of a segment.
+     */
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    /**
+     * File name suffix of a segment.
+     */
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    /**
+     * Directory that holds the segments.
+     */
+    private final Path myDirectory;
+
+    /**
+     * Size a segment may grow to before a new one is opened, in bytes.
+     */
+    private final int mySegmentSize;
+
+    /**
+     * Buffer each record is encoded into before it is added to the batch.
+     */
+    private final RecordBuffer myRecord;
+
+    /**
+     * Buffer the records of a batch are collected in before they are written.
+     */
+    private final RecordBuffer myBatch;
+
+    /**
+     * Checksum of the record being written.
+     */
+    private final CRC32C myChecksum;
+
+    /**
+     * Channel to the segment being written, or null if no segment is open.
+     */
+    private FileChannel mySegment;
+
+    /**
+     * Number of bytes in the segment being written, including those still in the batch.
+     */
+    private long mySegmentBytes;
+
+    /**
+     * Number of the next segment to be opened.
+     */
+    private long myNextSequence;
+
+    /**
+     * Sequence number of the last record written or replayed.
+     */
+    private long myLastRecord;
+
+    /**
+     * Opens the journal kept in a directory. Nothing is written until the first append.
+     *
+     * @param theDirectory   The directory that holds the segments.
+     * @param theSegmentSize The size a segment may grow to in bytes.
+     * @throws IllegalArgumentException if the segment size cannot hold a record header
+     */
+    EventJournal(final Path theDirectory, final int theSegmentSize) {
+        if (theSegmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + theSegmentSize);
+        }
+        myDirectory = theDirectory;
+        mySegmentSize = theSegmentSize;
+        myRecord = new RecordBuffer();
+        myBatch = new RecordBuffer();
+        myChecksum = new CRC32C();
+        myNextSequence = 1;
+    }
+
+    /**
+     * Reads every complete record of the segments left in the directory, oldest first, skipping
+     * the records a save has already covered. Segments that hold only such records were left
+     * behind by a truncate that failed or never ran, and are deleted now. Later segments and
+     * records are numbered after everything seen.
+     *
+     * @param theSaved The sequence number of the last record that was saved, or 0 if none was.
+     * @return The events of the journal that were not saved.
+     * @throws IOException if a segment could not be read.
+     */
+    List<Event> replay(final long theSaved) throws IOException {
+        List<Event> events = new ArrayList<>();
+        myLastRecord = Math.max(myLastRecord, theSaved);
+        for (var segment : segments().entrySet()) {
+            myNextSequence = Math.max(myNextSequence, segment.getKey() + 1);
+            int before = events.size();
+            readSegment(ByteBuffer.wrap(Files.readAllBytes(segment.getValue())), theSaved, events);
+            if (events.size() == before) {
+                deleteSegment(segment.getValue());
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Writes a batch of events to the end of the journal and syncs them to disk, opening a new
+     * segment whenever the current one is full.
+     *
+     * @param theEvents The events to write, oldest first.
+     * @throws IOException if the events could not be written or synced.
+     */
+    void append(final List<Event> theEvents) throws IOException {
+        try {
+            for (Event event : theEvents) {
+                myRecord.reset();
+                myRecord.myOut.writeLong(++myLastRecord);
+                EventCodec.write(myRecord.myOut, event);
+                int needed = HEADER_SIZE + myRecord.size();
+                if (mySegment == null || (mySegmentBytes > 0 && mySegmentBytes + needed > mySegmentSize)) {
+                    writeBatch();
+                    closeSegment();
+                    openSegment();
+                }
+                myChecksum.reset();
+                myChecksum.update(myRecord.array(), 0, myRecord.size());
+                myBatch.myOut.writeInt(myRecord.size());
+                myBatch.myOut.writeInt((int) myChecksum.getValue());
+                myBatch.write(myRecord.array(), 0, myRecord.size());
+                mySegmentBytes += needed;
+            }
+            writeBatch();
+        } finally {
+            myBatch.reset();
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last record written or replayed.
+     *
+     * @return The sequence number, or the saved one passed to replay if it is higher.
+     */
+    long lastRecord() {
+        return myLastRecord;
+    }
+
+    /**
+     * Closes the current segment, so later appends go to a new one.
+     *
+     * @return A marker that {@link #truncate(long)} takes to delete every segment written before this call.
+     */
+    long rotate() {
+        closeSegment();
+        return myNextSequence;
+    }
+
+    /**
+     * Deletes the segments written before a call to {@link #rotate()}.
+     *
+     * @param theMarker The marker returned by the rotation.
+     */
+    void truncate(final long theMarker) {
+        try {
+            for (Path segment : segments().headMap(theMarker).values()) {
+                deleteSegment(segment);
+            }
+        } catch (IOException theE) {
+            System.err.println("Error truncating event journal: " + theE.getMessage());
+        }
+    }
+
+    /**
+     * Deletes every segment.
+     */
+    void clear() {
+        truncate(rotate());
+    }
+
+    /**
+     * Writes the collected records to the current segment and syncs them to disk.
+     *
+     * @throws IOException if the records could not be written or synced.
+     */
+    private void writeBatch() throws IOException {
+        if (myBatch.size() == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(myBatch.array(), 0, myBatch.size());
+        while (buffer.hasRemaining()) {
+            mySegment.write(buffer);
+        }
+        mySegment.force(false);
+        myBatch.reset();
+    }
+
+    /**
+     * Creates the next segment and opens it for writing.
+     *
+     * @throws IOException if the segment could not be created.
+     */
+    private void openSegment() throws IOException {
+        Files.createDirectories(myDirectory);
+        Path file = myDirectory.resolve(SEGMENT_PREFIX + String.format("%010d", myNextSequence++) + SEGMENT_SUFFIX);
+        mySegment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        mySegmentBytes = 0;
+    }
+
+    /**
+     * Closes the segment being written, if one is open.
+     */
+    private void closeSegment() {
+        if (mySegment != null) {
+            try {
+                mySegment.close();
+            } catch (IOException theE) {
+                System.err.println("Error closing event journal segment: " + theE.getMessage());
+            }
+            mySegment = null;
+        }
+    }
+
+    /**
+     * Deletes a segment file, reporting a failure rather than throwing it.
+     *
+     * @param theSegment The segment to delete.
+     */
+    private static void deleteSegment(final Path theSegment) {
+        try {
+            Files.deleteIfExists(theSegment);
+        } catch (IOException theE) {
+            System.err.println("Could not delete " + theSegment + ": " + theE.getMessage());
+        }
+    }
+
+    /**
+     * Lists the segments in the directory by number.
+     *
+     * @return The segment files keyed by their number.
+     * @throws IOException if the directory could not be listed.
+     */
+    private TreeMap<Long, Path> segments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(myDirectory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(myDirectory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException theE) {
+                    System.err.println("Ignoring unknown journal file: " + file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Reads the complete records of one segment, stopping at the first damaged or cut short record.
+     *
+     * @param theSegment The segment contents.
+     * @param theSaved   The sequence number of the last saved record; records at or below it are skipped.
+     * @param theEvents  The list the events are added to.
+     * @throws IOException if a record that passed its checksum could not be decoded.
+     */
+    private void readSegment(final ByteBuffer theSegment, final long theSaved, final List<Event> theEvents)
+            throws IOException {
+        while (theSegment.remaining() >= HEADER_SIZE) {
+            int length = theSegment.getInt();
+            int checksum = theSegment.getInt();
+            if (length <= 0 || length > theSegment.remaining()) {
+                return;
+            }
+            int offset = theSegment.arrayOffset() + theSegment.position();
+            theSegment.position(theSegment.position() + length);
+            myChecksum.reset();
+            myChecksum.update(theSegment.array(), offset, length);
+            if ((int) myChecksum.getValue() != checksum) {
+                System.err.println("Event journal ends with a damaged record");
+                return;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(theSegment.array(), offset, length));
+            long sequence = in.readLong();
+            myLastRecord = Math.max(myLastRecord, sequence);
+            if (sequence > theSaved) {
+                theEvents.add(EventCodec.read(in));
+            }
+        }
+    }
+
+    /**
+     * A byte array stream whose contents can be read without copying them.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        /**
+         * Stream that writes into this buffer.
+         */
+        private final DataOutputStream myOut;
+
+        /**
+         * Constructs a RecordBuffer.
+         */
+        private RecordBuffer() {
+            super(256);
+            myOut = new DataOutputStream(this);
+        }
+
+        /**
+         * Gets the array holding the contents, valid up to {@link #size()}.
+         *
+         * @return The backing array.
+         */
+        private byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package model;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Table model over the results of an event log search that loads rows a page at a time.
+ * Pages are read on a background thread with keyset pagination: each page starts after the
+ * last id of the one before it, so a page is read without an offset over the rows before it.
+ * The row count arrives from a separate count once the first page is shown. A cell whose page
+ * is not loaded yet is empty until the page arrives. Only a few pages are kept in memory.
+ * Apart from the loader, the model must be used on the event dispatch thread.
+ */
+final class EventPageModel extends AbstractTableModel {
+
+    /**
+     * Number of rows in a page, unless another size is given.
+     */
+    static final int DEFAULT_PAGE_SIZE = 500;
+
+    /**
+     * Number of pages kept in memory.
+     */
+    private static final int CACHED_PAGES = 16;
+
+    /**
+     * Names of the columns in the table.
+     */
+    private static final String[] COLUMN_NAMES = {"Filename", "Extension", "Path", "Event", "Timestamp"};
+
+    /**
+     * Criteria that select the rows of event_log to show.
+     */
+    private final SearchCriteria myCriteria;
+
+    /**
+     * SQL that reads a page.
+     */
+    private final String myPageSql;
+
+    /**
+     * SQL that finds where pages start.
+     */
+    private final String myPageStartSql;
+
+    /**
+     * Number of rows in a page.
+     */
+    private final int myPageSize;
+
+    /**
+     * Thread that reads pages and the row count.
+     */
+    private final ExecutorService myLoader;
+
+    /**
+     * Loaded pages by number, least recently used first. Used on the event dispatch thread only.
+     */
+    private final Map<Integer, String[][]> myPages;
+
+    /**
+     * Pages requested but not loaded yet. Used on the event dispatch thread only.
+     */
+    private final Set<Integer> myPending;
+
+    /**
+     * The id after which each page starts, by page number, as far as it is known.
+     * Used on the loader thread only.
+     */
+    private final List<Long> myPageStarts;
+
+    /**
+     * Number of rows shown. Used on the event dispatch thread only.
+     */
+    private int myRowCount;
+
+    /**
+     * Flag indicating whether the model has been closed.
+     */
+    private volatile boolean myIsClosed;
+
+    /**
+     * Constructs an EventPageModel and starts loading the first page and the row count.
+     *
+     * @param theCriteria The criteria that select the rows to show.
+     * @param thePageSize The number of rows in a page.
+     * @throws IllegalArgumentException if the page size is not positive
+     */
+    EventPageModel(final SearchCriteria theCriteria, final int thePageSize) {
+        if (thePageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        myCriteria = theCriteria;
+        myPageSql = "SELECT id, filename, extension, path, event, timestamp FROM event_log WHERE ("
+                + theCriteria.getCondition() + ") AND id > ? ORDER BY id LIMIT ?";
+        myPageStartSql = "SELECT id FROM (SELECT id, row_number() OVER (ORDER BY id) AS n FROM event_log WHERE ("
+                + theCriteria.getCondition() + ") AND id > ?) WHERE n % ? = 0 LIMIT ?";
+        myPageSize = thePageSize;
+        myLoader = Executors.newSingleThreadExecutor(theTask -> {
+            Thread thread = new Thread(theTask, "event-page-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        myPages = new LinkedHashMap<>(CACHED_PAGES * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String[][]> theEldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+        myPending = new HashSet<>();
+        myPageStarts = new ArrayList<>(List.of(0L));
+        myPending.add(0);
+        myLoader.execute(() -> loadPage(0));
+        myLoader.execute(this::loadCount);
+    }
+
+    @Override
+    public int getRowCount() {
+        return myRowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(final int theColumn) {
+        return COLUMN_NAMES[theColumn];
+    }
+
+    /**
+     * Gets a cell, requesting its page if it is not loaded.
+     *
+     * @param theRow    the row whose value is to be queried
+     * @param theColumn the column whose value is to be queried
+     * @return The value of the cell, or null if its page is not loaded yet.
+     */
+    @Override
+    public Object getValueAt(final int theRow, final int theColumn) {
+        int page = theRow / myPageSize;
+        String[][] rows = myPages.get(page);
+        if (rows == null) {
+            if (!myIsClosed && myPending.add(page)) {
+                myLoader.execute(() -> loadPage(page));
+            }
+            return null;
+        }
+        int offset = theRow % myPageSize;
+        return offset < rows.length ? rows[offset][theColumn] : null;
+    }
+
+    /**
+     * Stops loading. Cells of pages that are not loaded stay empty.
+     */
+    void close() {
+        myIsClosed = true;
+        myLoader.shutdownNow();
+    }
+
+    /**
+     * Reads a page on the loader thread and hands it to the event dispatch thread.
+     * A page that could not be read is no longer pending, so it is asked for again when it is next shown.
+     *
+     * @param thePage The number of the page.
+     */
+    private void loadPage(final int thePage) {
+        if (myIsClosed) {
+            return;
+        }
+        try {
+            String[][] rows = readPage(thePage, pageStart(thePage));
+            SwingUtilities.invokeLater(() -> pageLoaded(thePage, rows));
+        } catch (DatabaseException theE) {
+            System.err.println("Error loading search results: " + theE.getMessage());
+            SwingUtilities.invokeLater(() -> myPending.remove(thePage));
+        }
+    }
+
+    /**
+     * Counts the rows on the loader thread and hands the count to the event dispatch thread.
+     */
+    private void loadCount() {
+        if (myIsClosed) {
+            return;
+        }
+        String sql = myCriteria.isEmpty()
+                ? "SELECT count(*) FROM events"
+                : "SELECT count(*) FROM event_log WHERE " + myCriteria.getCondition();
+        try {
+            int count = DBManager.getDBManager().read(sql, theStatement -> {
+                myCriteria.bind(theStatement, 1);
+                try (ResultSet res = theStatement.executeQuery()) {
+                    return res.next() ? res.getInt(1) : 0;
+                }
+            });
+            SwingUtilities.invokeLater(() -> countLoaded(count));
+        } catch (DatabaseException theE) {
+            System.err.println("Error counting search results: " + theE.getMessage());
+        }
+    }
+
+    /**
+     * Reads the rows of a page.
+     *
+     * @param thePage  The number of the page.
+     * @param theAfter The id after which the page starts.
+     * @return The rows of the page, which are fewer than a page at the end of the results.
+     * @throws DatabaseException if the rows could not be read.
+     */
+    private String[][] readPage(final int thePage, final long theAfter) throws DatabaseException {
+        List<String[]> rows = new ArrayList<>(myPageSize);
+        long last = DBManager.getDBManager().read(myPageSql, theStatement -> {
+            int index = myCriteria.bind(theStatement, 1);
+            theStatement.setLong(index, theAfter);
+            theStatement.setInt(index + 1, myPageSize);
+            long id = theAfter;
+            try (ResultSet res = theStatement.executeQuery()) {
+                while (res.next()) {
+                    id = res.getLong(1);
+                    rows.add(new String[] {res.getString(2), res.getString(3), res.getString(4),
+                            res.getString(5), res.getString(6)});
+                }
+            }
+            return id;
+        });
+        if (rows.size() == myPageSize && myPageStarts.size() == thePage + 1) {
+            myPageStarts.add(last);
+        }
+        return rows.toArray(new String[0][]);
+    }
+
+    /**
+     * Finds the id after which a page starts. If it is not known yet, the starts of every page up
+     * to it are read in one pass that numbers the matching ids after the last known start.
+     *
+     * @param thePage The number of the page.
+     * @return The id after which the page starts, or Long.MAX_VALUE if the results end before it.
+     * @throws DatabaseException if the ids could not be read.
+     */
+    private long pageStart(final int thePage) throws DatabaseException {
+        if (myPageStarts.size() <= thePage) {
+            DBManager.getDBManager().read(myPageStartSql, theStatement -> {
+                int index = myCriteria.bind(theStatement, 1);
+                theStatement.setLong(index, myPageStarts.getLast());
+                theStatement.setInt(index + 1, myPageSize);
+                theStatement.setInt(index + 2, thePage + 1 - myPageStarts.size());
+                try (ResultSet res = theStatement.executeQuery()) {
+                    while (res.next()) {
+                        myPageStarts.add(res.getLong(1));
+                    }
+                }
+                return null;
+            });
+        }
+        return myPageStarts.size() > thePage ? myPageStarts.get(thePage) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Keeps a loaded page and repaints its rows. The first page also sets the row count until the
+     * count arrives, so results appear without waiting for it.
+     *
+     * @param thePage The number of the page.
+     * @param theRows The rows of the page.
+     */
+    private void pageLoaded(final int thePage, final String[][] theRows) {
+        myPending.remove(thePage);
+        if (myIsClosed) {
+            return;
+        }
+        myPages.put(thePage, theRows);
+        int first = thePage * myPageSize;
+        if (thePage == 0 && theRows.length > myRowCount) {
+            int old = myRowCount;
+            myRowCount = theRows.length;
+            fireTableRowsInserted(old, myRowCount - 1);
+        }
+        int last = Math.min(myRowCount, first + theRows.length) - 1;
+        if (last >= first) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    /**
+     * Sets the row count once it is known.
+     *
+     * @param theCount The number of rows in the results.
+     */
+    private void countLoaded(final int theCount) {
+        if (myIsClosed || theCount == myRowCount) {
+            return;
+        }
+        int old = myRowCount;
+        myRowCount = theCount;
+        if (theCount > old) {
+            fireTableRowsInserted(old, theCount - 1);
+        } else {
+            fireTableDataChanged();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects events on a queue and writes them on a dedicated thread in batches,
+ * so that many events share a single database transaction. This is the persist
+ * stage of the event pipeline; each batch that is written is passed on to the next stage.
+ * A batch the sink fails to write is held and written again, ahead of the next batch, so a
+ * transient failure such as a busy database delays events rather than losing them.
+ */
+final class EventWriter {
+
+    /**
+     * How long the writer thread waits for the first event of a batch before checking if it should stop.
+     */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * Number of batches the queue can hold before callers of submit are made to wait.
+     */
+    private static final int QUEUED_BATCHES = 8;
+
+    /**
+     * How long the writer waits after a failed write before it retries the held events on its own.
+     */
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Placeholder put on the queue by flush to wake a writer thread that is waiting for events.
+     * It is never written.
+     */
+    private static final Event WAKE = new Event("", "", "", "");
+
+    /**
+     * Destination that receives each batch of events.
+     */
+    private final Sink mySink;
+
+    /**
+     * Rules for when a batch is written.
+     */
+    private final FlushPolicy myPolicy;
+
+    /**
+     * Next stage, which receives each batch after it has been written.
+     */
+    private final Consumer<List<Event>> myDownstream;
+
+    /**
+     * Events waiting to be written.
+     */
+    private final BlockingQueue<Event> myQueue;
+
+    /**
+     * Lock guarding the submitted and written counters.
+     */
+    private final Object myLock;
+
+    /**
+     * Thread that drains the queue and writes batches.
+     */
+    private final Thread myThread;
+
+    /**
+     * Number of events handed to this writer.
+     */
+    private long mySubmitted;
+
+    /**
+     * Number of submitted events the sink has been asked to write, whether they were written or held.
+     */
+    private long myHandled;
+
+    /**
+     * Number of events held after a failed write.
+     */
+    private long myHeldCount;
+
+    /**
+     * Number of writes the sink has been asked to do.
+     */
+    private long myAttempts;
+
+    /**
+     * The most recent write failure, or null if no write has failed.
+     */
+    private Exception myFailure;
+
+    /**
+     * Events the sink failed to write, oldest first. Only the writer thread touches it.
+     */
+    private final List<Event> myHeld;
+
+    /**
+     * When the last write failed, from System.nanoTime.
+     */
+    private long myFailedNanos;
+
+    /**
+     * Number of callers waiting in flush.
+     */
+    private volatile int myFlushWaiters;
+
+    /**
+     * Flag indicating whether the writer accepts new events.
+     */
+    private volatile boolean myIsRunning;
+
+    /**
+     * Creates and starts an event writer with no next stage.
+     *
+     * @param theSink   The destination for each batch of events.
+     * @param thePolicy The rules for when a batch is written.
+     */
+    EventWriter(final Sink theSink, final FlushPolicy thePolicy) {
+        this(theSink, thePolicy, theEvents -> { });
+    }
+
+    /**
+     * Creates and starts an event writer.
+     *
+     * @param theSink       The destination for each batch of events.
+     * @param thePolicy     The rules for when a batch is written.
+     * @param theDownstream The next stage, which receives each batch that was written successfully.
+     */
+    EventWriter(final Sink theSink, final FlushPolicy thePolicy, final Consumer<List<Event>> theDownstream) {
+        mySink = theSink;
+        myPolicy = thePolicy;
+        myDownstream = theDownstream;
+        myQueue = new LinkedBlockingQueue<>(thePolicy.getMaxBatchSize() * QUEUED_BATCHES);
+        myLock = new Object();
+        myHeld = new ArrayList<>();
+        myIsRunning = true;
+        myThread = new Thread(this::runWriter, "event-writer");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * Queues an event to be written. Waits if the queue is full. An interrupt does not stop the
+     * wait, so the event is never dropped; the interrupt status is restored once it is queued.
+     *
+     * @param theEvent The event to write.
+     * @throws IllegalStateException if the writer has been closed.
+     */
+    void submit(final Event theEvent) {
+        if (!myIsRunning) {
+            throw new IllegalStateException("Event writer is closed");
+        }
+        synchronized (myLock) {
+            mySubmitted++;
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (myQueue.offer(theEvent, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    } else if (!myThread.isAlive()) {
+                        synchronized (myLock) {
+                            mySubmitted--;
+                        }
+                        throw new IllegalStateException("Event writer is closed");
+                    }
+                } catch (InterruptedException theE) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits until every event submitted before this call has been handed to the sink.
+     * The writer thread is woken so that the pending batch is written at once, and so that
+     * events held after a failed write are tried again.
+     *
+     * @throws DatabaseException if some events are still held because the sink failed to write them.
+     */
+    void flush() throws DatabaseException {
+        synchronized (myLock) {
+            long target = mySubmitted;
+            long attempts = myAttempts;
+            myFlushWaiters++;
+            try {
+                myQueue.offer(WAKE);
+                while ((myHandled < target || myHeldCount > 0 && myAttempts == attempts) && myThread.isAlive()) {
+                    myLock.wait(IDLE_POLL_MILLIS);
+                }
+            } catch (InterruptedException theE) {
+                Thread.currentThread().interrupt();
+            } finally {
+                myFlushWaiters--;
+            }
+            if (myHeldCount > 0) {
+                throw new DatabaseException("Could not write " + myHeldCount + " events", myFailure);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting events, writes everything still queued and stops the writer thread.
+     *
+     * @throws DatabaseException if some events could not be written, in which case they are lost.
+     */
+    void close() throws DatabaseException {
+        if (!myIsRunning) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            myIsRunning = false;
+            try {
+                myThread.join();
+            } catch (InterruptedException theE) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Drains the queue into batches until the writer is closed and the queue is empty.
+     */
+    private void runWriter() {
+        List<Event> batch = new ArrayList<>(myPolicy.getMaxBatchSize());
+        try {
+            while (myIsRunning || !myQueue.isEmpty()) {
+                Event first = myQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null || first == WAKE) {
+                    if (!myHeld.isEmpty() && (first == WAKE || System.nanoTime() - myFailedNanos >= RETRY_NANOS)) {
+                        writeBatch(batch);
+                    }
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException theE) {
+            Thread.currentThread().interrupt();
+        } finally {
+            myQueue.drainTo(batch);
+            batch.removeIf(theEvent -> theEvent == WAKE);
+            if (!batch.isEmpty() || !myHeld.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    /**
+     * Adds queued events to the batch until it is full, its delay has passed or a flush is requested.
+     * A flush wakes the wait for the next event, so it does not have to sit out the delay.
+     *
+     * @param theBatch The batch to fill.
+     * @throws InterruptedException if the writer thread is interrupted while waiting.
+     */
+    private void fillBatch(final List<Event> theBatch) throws InterruptedException {
+        int max = myPolicy.getMaxBatchSize();
+        long deadline = System.nanoTime() + myPolicy.getMaxDelay().toNanos();
+        while (theBatch.size() < max) {
+            myQueue.drainTo(theBatch, max - theBatch.size());
+            theBatch.removeIf(theEvent -> theEvent == WAKE);
+            long remaining = deadline - System.nanoTime();
+            if (theBatch.size() >= max || remaining <= 0 || myFlushWaiters > 0 || !myIsRunning) {
+                break;
+            }
+            Event next = myQueue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null || next == WAKE) {
+                break;
+            }
+            theBatch.add(next);
+        }
+    }
+
+    /**
+     * Hands the held events and a batch to the sink, passes them to the next stage and wakes any
+     * callers waiting in flush. If the sink fails, the events are held, not passed on, and written
+     * again ahead of the next batch.
+     *
+     * @param theBatch The new events to write; may be empty when only held events are retried.
+     */
+    private void writeBatch(final List<Event> theBatch) {
+        List<Event> events = theBatch;
+        if (!myHeld.isEmpty()) {
+            myHeld.addAll(theBatch);
+            events = myHeld;
+        }
+        Exception failure = null;
+        try {
+            mySink.write(events);
+        } catch (DatabaseException | RuntimeException theE) {
+            System.err.println("Error writing events: " + theE.getMessage());
+            failure = theE;
+        }
+        if (failure == null) {
+            try {
+                myDownstream.accept(List.copyOf(events));
+            } catch (RuntimeException theE) {
+                System.err.println("Error publishing events: " + theE.getMessage());
+            }
+            myHeld.clear();
+        } else {
+            if (events == theBatch) {
+                myHeld.addAll(theBatch);
+            }
+            myFailedNanos = System.nanoTime();
+        }
+        synchronized (myLock) {
+            myHandled += theBatch.size();
+            myHeldCount = myHeld.size();
+            myAttempts++;
+            if (failure != null) {
+                myFailure = failure;
+            }
+            myLock.notifyAll();
+        }
+    }
+
+    /**
+     * Destination for batches of events.
+     */
+    @FunctionalInterface
+    interface Sink {
+        /**
+         * Writes a batch of events.
+         *
+         * @param theEvents The events to write, in the order they were submitted.
+         * @throws DatabaseException if the events could not be written.
+         */
+        void write(List<Event> theEvents) throws DatabaseException;
+    }
+}
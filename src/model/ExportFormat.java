@@ -0,0 +1,72 @@
+package model;
+
+/**
+ * The file formats the rows of a search can be exported in.
+ */
+public enum ExportFormat {
+
+    /**
+     * Plain CSV, one quoted row per line.
+     */
+    CSV("CSV", ".csv"),
+
+    /**
+     * CSV compressed with gzip.
+     */
+    CSV_GZIP("CSV (.gz)", ".csv.gz"),
+
+    /**
+     * The columnar event archive read by {@link EventArchive}, for keeping months of events
+     * compactly and scanning them later without the database.
+     */
+    ARCHIVE("Archive (.fwa)", EventArchive.SUFFIX);
+
+    /**
+     * Name shown to the user.
+     */
+    private final String myLabel;
+
+    /**
+     * File name suffix of the format.
+     */
+    private final String mySuffix;
+
+    /**
+     * Constructs an ExportFormat.
+     *
+     * @param theLabel  Name shown to the user.
+     * @param theSuffix File name suffix of the format.
+     */
+    ExportFormat(final String theLabel, final String theSuffix) {
+        myLabel = theLabel;
+        mySuffix = theSuffix;
+    }
+
+    /**
+     * Gets the file name suffix of the format.
+     *
+     * @return The suffix, starting with a dot.
+     */
+    public String getSuffix() {
+        return mySuffix;
+    }
+
+    /**
+     * Creates an exporter that writes the format.
+     *
+     * @param theCriteria The criteria that select the rows to export.
+     * @return The exporter.
+     */
+    EventExporter exporter(final SearchCriteria theCriteria) {
+        return switch (this) {
+            case CSV -> new CsvExporter(theCriteria, false);
+            case CSV_GZIP -> new CsvExporter(theCriteria, true);
+            case ARCHIVE -> new ArchiveExporter(theCriteria, ArchiveExporter.DEFAULT_BLOCK_ROWS);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return myLabel;
+    }
+}
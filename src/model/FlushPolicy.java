@@ -0,0 +1,60 @@
+package model;
+
+import java.time.Duration;
+
+/**
+ * Describes when batched events should be written to the database.
+ * A batch is flushed once it holds the maximum number of events or once
+ * its oldest event has waited for the maximum delay, whichever comes first.
+ */
+public final class FlushPolicy {
+    /**
+     * The policy used when no other policy has been chosen.
+     */
+    public static final FlushPolicy DEFAULT = new FlushPolicy(512, Duration.ofMillis(250));
+
+    /**
+     * The largest number of events written in a single transaction.
+     */
+    private final int myMaxBatchSize;
+
+    /**
+     * The longest time an event may wait before its batch is written.
+     */
+    private final Duration myMaxDelay;
+
+    /**
+     * Creates a flush policy.
+     *
+     * @param theMaxBatchSize The largest number of events written in a single transaction.
+     * @param theMaxDelay     The longest time an event may wait before its batch is written.
+     * @throws IllegalArgumentException if the batch size is not positive or the delay is null or negative.
+     */
+    public FlushPolicy(final int theMaxBatchSize, final Duration theMaxDelay) {
+        if (theMaxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        } else if (theMaxDelay == null || theMaxDelay.isNegative()) {
+            throw new IllegalArgumentException("Delay must not be null or negative");
+        }
+        myMaxBatchSize = theMaxBatchSize;
+        myMaxDelay = theMaxDelay;
+    }
+
+    /**
+     * Gets the largest number of events written in a single transaction.
+     *
+     * @return The maximum batch size.
+     */
+    public int getMaxBatchSize() {
+        return myMaxBatchSize;
+    }
+
+    /**
+     * Gets the longest time an event may wait before its batch is written.
+     *
+     * @return The maximum delay.
+     */
+    public Duration getMaxDelay() {
+        return myMaxDelay;
+    }
+}
@@ -1,30 +1,207 @@
 package model;
 
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * Table model that holds events to display in the list of log events.
+ * Table model that holds the most recent events to display in the list of log events.
+ * The events are kept in a ring buffer with room for a fixed window of rows, so appending is
+ * constant time and memory stays bounded however long the watcher runs; once the window is full
+ * each new event pushes the oldest out of view. Rows are the events themselves, so appending
+ * allocates nothing, and a batch of events fires one insert for the whole range of its rows.
+ * Like any Swing model it should be used on the event dispatch thread.
  */
-public class LogListModel extends DefaultTableModel {
+public class LogListModel extends AbstractTableModel {
     /**
      * Constant array holding the names of the columns in the table.
      */
     public final static String[] COLUMN_HEADER_ARRAY = {"Extension", "File Name", "Path", "Event", "Timestamp"};
 
     /**
-     * Constructs a table model with columns in the order of this class' <code>COLUMN_HEADER_ARRAY</code>.
+     * Number of rows kept in view, unless another window is given.
+     */
+    public static final int DEFAULT_WINDOW = 10_000;
+
+    /**
+     * The events in view. The oldest is at {@link #myHead}, and the rest follow it around the ring.
+     */
+    private final Event[] myRing;
+
+    /**
+     * Index in the ring of the oldest event in view.
+     */
+    private int myHead;
+
+    /**
+     * Number of events in view.
+     */
+    private int mySize;
+
+    /**
+     * Number of events pushed out of view since the last clear.
+     */
+    private long myDropped;
+
+    /**
+     * Constructs a table model with columns in the order of this class' <code>COLUMN_HEADER_ARRAY</code>
+     * that keeps the default window of rows.
      */
     public LogListModel() {
-        for (String currentHeader : COLUMN_HEADER_ARRAY) {
-            addColumn(currentHeader);
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * Constructs a table model with columns in the order of this class' <code>COLUMN_HEADER_ARRAY</code>.
+     *
+     * @param theWindow The number of rows kept in view.
+     * @throws IllegalArgumentException if the window is not positive
+     */
+    public LogListModel(final int theWindow) {
+        if (theWindow < 1) {
+            throw new IllegalArgumentException("Window must be at least 1 row");
+        }
+        myRing = new Event[theWindow];
+    }
+
+    /**
+     * Gets the number of rows kept in view.
+     *
+     * @return The window size.
+     */
+    public int getWindow() {
+        return myRing.length;
+    }
+
+    /**
+     * Gets the number of events pushed out of view by newer ones since the table was last cleared.
+     *
+     * @return The number of events no longer in view.
+     */
+    public long getDroppedCount() {
+        return myDropped;
+    }
+
+    /**
+     * Adds an event as the last row.
+     *
+     * @param theEvent The event to add.
+     */
+    public void addEvent(final Event theEvent) {
+        addEvents(List.of(theEvent));
+    }
+
+    /**
+     * Adds events as the last rows, oldest first. Rows that no longer fit in the window are
+     * removed from the top. Listeners are told of the removed rows and the added rows with
+     * one event each. A batch that fills the window alone replaces the rows in view, which is
+     * reported as an update of those rows and an insert of any rows after them.
+     *
+     * @param theEvents The events to add.
+     */
+    public void addEvents(final List<Event> theEvents) {
+        int count = theEvents.size();
+        if (count == 0) {
+            return;
+        }
+        int capacity = myRing.length;
+        if (count >= capacity) {
+            // only the newest window of the batch stays in view
+            // the rows in view are replaced in place and the rest are new
+            myDropped += mySize + count - capacity;
+            int old = mySize;
+            for (int i = 0; i < capacity; i++) {
+                myRing[i] = theEvents.get(count - capacity + i);
+            }
+            myHead = 0;
+            mySize = capacity;
+            if (old > 0) {
+                fireTableRowsUpdated(0, old - 1);
+            }
+            if (old < capacity) {
+                fireTableRowsInserted(old, capacity - 1);
+            }
+            return;
+        }
+        int dropped = Math.max(0, mySize + count - capacity);
+        if (dropped > 0) {
+            for (int i = 0; i < dropped; i++) {
+                myRing[(myHead + i) % capacity] = null;
+            }
+            myHead = (myHead + dropped) % capacity;
+            mySize -= dropped;
+            myDropped += dropped;
+            fireTableRowsDeleted(0, dropped - 1);
+        }
+        int first = mySize;
+        for (Event event : theEvents) {
+            myRing[(myHead + mySize++) % capacity] = event;
+        }
+        fireTableRowsInserted(first, mySize - 1);
+    }
+
+    /**
+     * Gets the event shown in a row.
+     *
+     * @param theRow The row, counting from the oldest event in view.
+     * @return The event.
+     * @throws IndexOutOfBoundsException if the row is not in view
+     */
+    public Event getEvent(final int theRow) {
+        if (theRow < 0 || theRow >= mySize) {
+            throw new IndexOutOfBoundsException("Row " + theRow + " of " + mySize);
         }
+        return myRing[(myHead + theRow) % myRing.length];
     }
 
     /**
      * Clears the contents of the table.
      */
     public void clearTable() {
-        setRowCount(0);
+        myDropped = 0;
+        if (mySize == 0) {
+            return;
+        }
+        int old = mySize;
+        Arrays.fill(myRing, null);
+        myHead = 0;
+        mySize = 0;
+        fireTableRowsDeleted(0, old - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return mySize;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_HEADER_ARRAY.length;
+    }
+
+    @Override
+    public String getColumnName(final int theColumn) {
+        return COLUMN_HEADER_ARRAY[theColumn];
+    }
+
+    /**
+     * Gets a field of the event in a row, in the order of <code>COLUMN_HEADER_ARRAY</code>.
+     *
+     * @param theRow    the row whose value is to be queried
+     * @param theColumn the column whose value is to be queried
+     * @return The value of the cell.
+     */
+    @Override
+    public Object getValueAt(final int theRow, final int theColumn) {
+        Event event = getEvent(theRow);
+        return switch (theColumn) {
+            case 0 -> event.getExtension();
+            case 1 -> event.getFileName();
+            case 2 -> event.getPath();
+            case 3 -> event.geEventKind();
+            case 4 -> event.getTimeStamp();
+            default -> throw new IndexOutOfBoundsException("Column " + theColumn);
+        };
     }
 
     /**
@@ -14,11 +14,6 @@ public interface ModelProperties {
      */
     String STOP = "stop";
 
-    /**
-     * A constant to be used when an event is caught and needs to be passed.
-     */
-    String EVENT = "event";
-
     /**
      * A constant to be used when updating the FileListModel table.
      */
@@ -41,8 +36,26 @@ public interface ModelProperties {
      */
     String LOG_LIST_MODEL_UPDATED = "logListModelUpdated";
 
+    /**
+     * A constant to be used when reporting how fast events arrive in the log table.
+     * The new value holds the events per second and the number of events dropped from view.
+     */
+    String LOG_STATS = "logStats";
+
     /**
      * A constant to be used when updating the DBFriend table.
      */
     String TABLE_MODEL_QUERY = "dbQueryModel";
+
+    /**
+     * A constant to be used when reporting the progress of a CSV export.
+     * The new value holds the number of rows written so far and the total.
+     */
+    String EXPORT_PROGRESS = "exportProgress";
+
+    /**
+     * A constant to be used when a CSV export has ended.
+     * The new value is the exported file, or null if the export failed or was cancelled.
+     */
+    String EXPORT_DONE = "exportDone";
 }
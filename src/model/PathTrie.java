@@ -0,0 +1,252 @@
+package model;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A trie of paths keyed by name component. Finds the longest stored path that
+ * a given path starts with in time proportional to the depth of the given path
+ * and to how many stored paths branch off at each of its components, which for
+ * watched roots is a handful, however many paths are stored.
+ * Paths are walked over their string form, one component between separators at a time, and
+ * each component is compared in place with the names of a node's children, so a lookup creates
+ * no objects once the path has its string form, which paths keep after it is first asked for.
+ * Lookups may run concurrently with updates.
+ *
+ * @param <V> The type of value stored for each path.
+ */
+final class PathTrie<V> {
+
+    /**
+     * Node for the empty path, whose children are path roots or first name components.
+     */
+    private final Node<V> myRoot;
+
+    /**
+     * Constructs an empty trie.
+     */
+    PathTrie() {
+        myRoot = new Node<>("", 0);
+    }
+
+    /**
+     * Stores a value for a path, replacing any previous value.
+     *
+     * @param thePath  The path to store.
+     * @param theValue The value for the path.
+     * @throws IllegalArgumentException if the value is null
+     */
+    void put(final Path thePath, final V theValue) {
+        if (theValue == null) {
+            throw new IllegalArgumentException("Value is null");
+        }
+        String path = thePath.toString();
+        char separator = separatorOf(thePath);
+        Node<V> node = myRoot;
+        synchronized (myRoot) {
+            for (int start = 0; hasComponent(path, start); start = endOf(path, start, separator) + 1) {
+                node = node.addChild(path, start, endOf(path, start, separator));
+            }
+        }
+        node.myValue = theValue;
+    }
+
+    /**
+     * Removes the value stored for a path. Nodes are kept so concurrent lookups never see a broken chain.
+     *
+     * @param thePath The path to remove.
+     */
+    void remove(final Path thePath) {
+        Node<V> node = find(thePath);
+        if (node != null) {
+            node.myValue = null;
+        }
+    }
+
+    /**
+     * Gets the value stored for exactly the given path.
+     *
+     * @param thePath The path to look up.
+     * @return The value for the path, or null if there is none.
+     */
+    V get(final Path thePath) {
+        Node<V> node = find(thePath);
+        return node == null ? null : node.myValue;
+    }
+
+    /**
+     * Gets the value of the longest stored path that the given path starts with.
+     *
+     * @param thePath The path to look up.
+     * @return The value for the most specific stored ancestor of the path (or the path itself), or null if none.
+     */
+    V longestMatch(final Path thePath) {
+        String path = thePath.toString();
+        char separator = separatorOf(thePath);
+        Node<V> node = myRoot;
+        V match = node.myValue;
+        for (int start = 0; hasComponent(path, start); start = endOf(path, start, separator) + 1) {
+            node = node.child(path, start, endOf(path, start, separator));
+            if (node == null) {
+                break;
+            }
+            if (node.myValue != null) {
+                match = node.myValue;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Finds the node for exactly the given path.
+     *
+     * @param thePath The path to find.
+     * @return The node, or null if the path was never stored.
+     */
+    private Node<V> find(final Path thePath) {
+        String path = thePath.toString();
+        char separator = separatorOf(thePath);
+        Node<V> node = myRoot;
+        for (int start = 0; node != null && hasComponent(path, start); start = endOf(path, start, separator) + 1) {
+            node = node.child(path, start, endOf(path, start, separator));
+        }
+        return node;
+    }
+
+    /**
+     * Gets the name separator of a path's file system.
+     *
+     * @param thePath The path.
+     * @return The separator.
+     */
+    private static char separatorOf(final Path thePath) {
+        return thePath.getFileSystem().getSeparator().charAt(0);
+    }
+
+    /**
+     * Checks whether a component of a path starts at an index. The root of an absolute path is its
+     * first component, empty on Unix, and a separator at the very end, as in a root on its own,
+     * does not start another component.
+     *
+     * @param thePath  The string form of the path.
+     * @param theStart The index.
+     * @return true if a component starts at the index, false if the path has ended.
+     */
+    private static boolean hasComponent(final String thePath, final int theStart) {
+        return theStart == 0 || theStart < thePath.length();
+    }
+
+    /**
+     * Finds where the component of a path that starts at an index ends.
+     *
+     * @param thePath      The string form of the path.
+     * @param theStart     The index where the component starts.
+     * @param theSeparator The name separator.
+     * @return The index of the separator after the component, or the length of the path.
+     */
+    private static int endOf(final String thePath, final int theStart, final char theSeparator) {
+        int end = thePath.indexOf(theSeparator, theStart);
+        return end < 0 ? thePath.length() : end;
+    }
+
+    /**
+     * Computes the hash of part of a string, the same as {@link String#hashCode()} of that part.
+     *
+     * @param theString The string.
+     * @param theStart  The index of the first character.
+     * @param theEnd    The index after the last character.
+     * @return The hash.
+     */
+    private static int hashOf(final String theString, final int theStart, final int theEnd) {
+        int hash = 0;
+        for (int i = theStart; i < theEnd; i++) {
+            hash = 31 * hash + theString.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * A node of the trie.
+     *
+     * @param <V> The type of value stored for each path.
+     */
+    private static final class Node<V> {
+        /**
+         * Nodes without children share this array.
+         */
+        private static final Node<?>[] NONE = new Node<?>[0];
+
+        /**
+         * The name component that leads to this node.
+         */
+        private final String myName;
+
+        /**
+         * The hash of the name.
+         */
+        private final int myHash;
+
+        /**
+         * Child nodes. The array is replaced as a whole when a child is added, so lookups never lock.
+         */
+        private volatile Node<?>[] myChildren;
+
+        /**
+         * Value stored for the path ending at this node, or null if none.
+         */
+        private volatile V myValue;
+
+        /**
+         * Constructs a node without children or value.
+         *
+         * @param theName The name component that leads to the node.
+         * @param theHash The hash of the name.
+         */
+        private Node(final String theName, final int theHash) {
+            myName = theName;
+            myHash = theHash;
+            myChildren = NONE;
+        }
+
+        /**
+         * Finds the child for a name component.
+         *
+         * @param thePath  The string form of the path holding the component.
+         * @param theStart The index where the component starts.
+         * @param theEnd   The index after the component.
+         * @return The child, or null if there is none.
+         */
+        @SuppressWarnings("unchecked")
+        private Node<V> child(final String thePath, final int theStart, final int theEnd) {
+            int hash = hashOf(thePath, theStart, theEnd);
+            int length = theEnd - theStart;
+            for (Node<?> child : myChildren) {
+                if (child.myHash == hash && child.myName.length() == length
+                        && thePath.regionMatches(theStart, child.myName, 0, length)) {
+                    return (Node<V>) child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Finds the child for a name component, adding it if there is none.
+         * Callers must hold the trie's lock.
+         *
+         * @param thePath  The string form of the path holding the component.
+         * @param theStart The index where the component starts.
+         * @param theEnd   The index after the component.
+         * @return The child.
+         */
+        private Node<V> addChild(final String thePath, final int theStart, final int theEnd) {
+            Node<V> child = child(thePath, theStart, theEnd);
+            if (child == null) {
+                child = new Node<>(thePath.substring(theStart, theEnd), hashOf(thePath, theStart, theEnd));
+                Node<?>[] children = Arrays.copyOf(myChildren, myChildren.length + 1);
+                children[children.length - 1] = child;
+                myChildren = children;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package model;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One stage of the event pipeline. Items are placed on a bounded queue and handled
+ * in order by a dedicated thread. When the queue is full, callers of put wait,
+ * which pushes back on the stage before it.
+ *
+ * @param <T> The type of item handled by this stage.
+ */
+final class PipelineStage<T> {
+
+    /**
+     * How long the stage thread waits for an item before checking if it should stop.
+     */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * Items waiting to be handled.
+     */
+    private final BlockingQueue<T> myQueue;
+
+    /**
+     * Handler that is called for each item.
+     */
+    private final Consumer<T> myHandler;
+
+    /**
+     * Thread that drains the queue.
+     */
+    private final Thread myThread;
+
+    /**
+     * Flag indicating whether the stage accepts new items.
+     */
+    private volatile boolean myIsRunning;
+
+    /**
+     * Creates and starts a pipeline stage.
+     *
+     * @param theName     The name of the stage thread.
+     * @param theCapacity The number of items the queue can hold.
+     * @param theHandler  The handler called for each item.
+     */
+    PipelineStage(final String theName, final int theCapacity, final Consumer<T> theHandler) {
+        myQueue = new ArrayBlockingQueue<>(theCapacity);
+        myHandler = theHandler;
+        myIsRunning = true;
+        myThread = new Thread(this::runStage, theName);
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * Queues an item for this stage. Waits while the queue is full.
+     *
+     * @param theItem The item to queue.
+     * @throws IllegalStateException if the stage has been closed.
+     * @throws InterruptedException  if interrupted while waiting, in which case the item was not queued.
+     */
+    void put(final T theItem) throws InterruptedException {
+        if (!myIsRunning) {
+            throw new IllegalStateException("Pipeline stage is closed");
+        }
+        myQueue.put(theItem);
+    }
+
+    /**
+     * Gets the number of items waiting in this stage.
+     *
+     * @return The queue length.
+     */
+    int size() {
+        return myQueue.size();
+    }
+
+    /**
+     * Stops accepting items and waits for every queued item to be handled.
+     */
+    void close() {
+        myIsRunning = false;
+        try {
+            myThread.join();
+        } catch (InterruptedException theE) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handles queued items until the stage is closed and the queue is empty.
+     */
+    private void runStage() {
+        try {
+            while (myIsRunning || !myQueue.isEmpty()) {
+                T item = myQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    handle(item);
+                }
+            }
+        } catch (InterruptedException theE) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Calls the handler for one item so that a failing item does not stop the stage.
+     *
+     * @param theItem The item to handle.
+     */
+    private void handle(final T theItem) {
+        try {
+            myHandler.accept(theItem);
+        } catch (RuntimeException theE) {
+            System.err.println("Error in " + myThread.getName() + ": " + theE.getMessage());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed set of read-only connections to the event database. A connection is leased for the
+ * duration of one piece of work and then returned, so searches and exports run in parallel with
+ * each other and, because the database uses write-ahead logging, without blocking the writer.
+ * Each connection keeps the statements prepared through {@link #read(String, Prepared)}, so a
+ * query that runs again with other parameters reuses its compiled plan.
+ */
+final class ReaderPool {
+
+    /**
+     * How long a caller waits for a free connection before giving up, in seconds.
+     */
+    private static final long LEASE_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Number of prepared statements each connection keeps.
+     */
+    private static final int CACHED_STATEMENTS = 64;
+
+    /**
+     * Every connection of the pool, leased or not.
+     */
+    private final List<Connection> myConnections;
+
+    /**
+     * Connections that are not leased.
+     */
+    private final BlockingQueue<Connection> myIdle;
+
+    /**
+     * Prepared statements of each connection by SQL, least recently used first. A connection's
+     * statements are only used by the thread that leases it.
+     */
+    private final Map<Connection, Map<String, PreparedStatement>> myStatements;
+
+    /**
+     * Flag indicating whether the pool has been closed.
+     */
+    private volatile boolean myIsClosed;
+
+    /**
+     * Opens a pool of read-only connections.
+     *
+     * @param theUrl     The JDBC URL of the database.
+     * @param theSize    The number of connections to open.
+     * @param theProfile The storage profile whose settings each connection uses.
+     * @throws SQLException if a connection could not be opened, in which case none are left open.
+     */
+    ReaderPool(final String theUrl, final int theSize, final StorageProfile theProfile) throws SQLException {
+        myConnections = new ArrayList<>(theSize);
+        myIdle = new ArrayBlockingQueue<>(theSize);
+        myStatements = new IdentityHashMap<>();
+        try {
+            for (int i = 0; i < theSize; i++) {
+                Connection connection = DriverManager.getConnection(theUrl);
+                myConnections.add(connection);
+                try (Statement statement = connection.createStatement()) {
+                    for (String pragma : theProfile.getPragmas()) {
+                        statement.execute(pragma);
+                    }
+                    statement.execute("PRAGMA query_only = true");
+                }
+                myStatements.put(connection, new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> theEldest) {
+                        if (size() <= CACHED_STATEMENTS) {
+                            return false;
+                        }
+                        try {
+                            theEldest.getValue().close();
+                        } catch (SQLException theE) {
+                            System.err.println("Error closing statement: " + theE.getMessage());
+                        }
+                        return true;
+                    }
+                });
+                myIdle.add(connection);
+            }
+        } catch (SQLException theE) {
+            close();
+            throw theE;
+        }
+    }
+
+    /**
+     * Leases a connection, runs a query on it and returns the connection to the pool.
+     * The query must finish with its statements and result sets before it returns.
+     *
+     * @param theQuery The query to run.
+     * @param <T>      The type of the query result.
+     * @return The result of the query.
+     * @throws DatabaseException if no connection is free in time, the pool is closed or the query fails.
+     */
+    <T> T read(final Query<T> theQuery) throws DatabaseException {
+        Connection connection;
+        try {
+            connection = myIdle.poll(LEASE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException theE) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted waiting for a database reader", theE);
+        }
+        if (connection == null || myIsClosed) {
+            throw new DatabaseException("No database reader available");
+        }
+        try {
+            return theQuery.run(connection);
+        } catch (SQLException theE) {
+            throw new DatabaseException("Error reading database", theE);
+        } finally {
+            myIdle.add(connection);
+        }
+    }
+
+    /**
+     * Leases a connection, runs a query with the connection's prepared statement for some SQL and
+     * returns the connection to the pool. The statement is prepared the first time the connection
+     * runs the SQL and kept for later queries; the query must close its result sets but not the statement.
+     *
+     * @param theSql   The SQL of the statement.
+     * @param theQuery The query to run.
+     * @param <T>      The type of the query result.
+     * @return The result of the query.
+     * @throws DatabaseException if no connection is free in time, the pool is closed or the query fails.
+     */
+    <T> T read(final String theSql, final Prepared<T> theQuery) throws DatabaseException {
+        return read(theConnection -> {
+            Map<String, PreparedStatement> statements = myStatements.get(theConnection);
+            PreparedStatement statement = statements.get(theSql);
+            if (statement == null) {
+                statement = theConnection.prepareStatement(theSql);
+                statements.put(theSql, statement);
+            }
+            statement.clearParameters();
+            return theQuery.run(statement);
+        });
+    }
+
+    /**
+     * Closes every connection of the pool. Leases that are still running fail once they touch the database.
+     */
+    void close() {
+        myIsClosed = true;
+        for (Connection connection : myConnections) {
+            try {
+                connection.close();
+            } catch (SQLException theE) {
+                System.err.println("Error closing database reader: " + theE.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Work that reads the database through a leased connection.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    interface Query<T> {
+        /**
+         * Runs the work.
+         *
+         * @param theConnection The leased read-only connection.
+         * @return The result of the work.
+         * @throws SQLException if a statement fails.
+         */
+        T run(Connection theConnection) throws SQLException;
+    }
+
+    /**
+     * Work that runs a prepared statement of a leased connection.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    interface Prepared<T> {
+        /**
+         * Runs the work.
+         *
+         * @param theStatement The prepared statement, with no parameters bound.
+         * @return The result of the work.
+         * @throws SQLException if the statement fails.
+         */
+        T run(PreparedStatement theStatement) throws SQLException;
+    }
+}
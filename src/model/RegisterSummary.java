@@ -0,0 +1,74 @@
+package model;
+
+import java.time.Duration;
+
+/**
+ * Counts of what one registration pass registered, sent as the new value of REGISTER_DONE.
+ */
+public final class RegisterSummary {
+
+    /**
+     * Number of directories registered with the watch service.
+     */
+    private final long myDirectories;
+
+    /**
+     * Number of regular files found under the registered directories.
+     */
+    private final long myFiles;
+
+    /**
+     * How long the registration took.
+     */
+    private final Duration myElapsed;
+
+    /**
+     * Constructs a RegisterSummary.
+     *
+     * @param theDirectories Number of directories registered.
+     * @param theFiles       Number of regular files found.
+     * @param theElapsed     How long the registration took.
+     */
+    RegisterSummary(final long theDirectories, final long theFiles, final Duration theElapsed) {
+        myDirectories = theDirectories;
+        myFiles = theFiles;
+        myElapsed = theElapsed;
+    }
+
+    /**
+     * Gets the number of directories registered with the watch service.
+     *
+     * @return The number of directories.
+     */
+    public long getDirectories() {
+        return myDirectories;
+    }
+
+    /**
+     * Gets the number of regular files found under the registered directories.
+     *
+     * @return The number of files.
+     */
+    public long getFiles() {
+        return myFiles;
+    }
+
+    /**
+     * Gets how long the registration took.
+     *
+     * @return The elapsed time.
+     */
+    public Duration getElapsed() {
+        return myElapsed;
+    }
+
+    /**
+     * Returns a string representation of the summary.
+     *
+     * @return The counts and elapsed time.
+     */
+    @Override
+    public String toString() {
+        return "directories: " + myDirectories + ", files: " + myFiles + ", elapsed: " + myElapsed.toMillis() + " ms";
+    }
+}
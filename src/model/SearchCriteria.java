@@ -0,0 +1,500 @@
+package model;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What to search the event log for. The criteria compile to a SQL condition on event_log columns
+ * with a placeholder for every value the user typed, so no input ends up in the SQL text. Criteria
+ * that set the same fields with the same kinds of match compile to the same text, so a prepared
+ * statement cached by its text is reused by every search of that shape. A search for text anywhere
+ * in the file name or path looks it up in the trigram indexes filenames_fts and paths_fts when the text
+ * is long enough to hold a trigram, then checks the candidates with LIKE, since the indexes fold the
+ * case of every letter and LIKE folds only ASCII. Days start and end at midnight UTC, as event_log
+ * shows times in UTC; the same criteria filter a scan of an {@link EventArchive}, which uses the same
+ * day boundaries and the same case folding.
+ */
+final class SearchCriteria {
+
+    /**
+     * Criteria that match every event.
+     */
+    static final SearchCriteria ALL = new Builder().build();
+
+    /**
+     * Length of the shortest text the trigram indexes can look up.
+     */
+    private static final int TRIGRAM_LENGTH = 3;
+
+    /**
+     * Condition that looks a file name up in its trigram index.
+     */
+    private static final String FILENAME_FTS = """
+            filename IN (SELECT n.filename FROM filenames_fts f JOIN filenames n ON n.id = f.rowid
+            WHERE filenames_fts MATCH ?)""";
+
+    /**
+     * Condition that looks a path up in its trigram index.
+     */
+    private static final String PATH_FTS = """
+            path IN (SELECT p.path FROM paths_fts f JOIN paths p ON p.id = f.rowid WHERE paths_fts MATCH ?)""";
+
+    /**
+     * The file name to match, or null.
+     */
+    private final String myFileName;
+
+    /**
+     * How the file name is matched.
+     */
+    private final Match myFileNameMatch;
+
+    /**
+     * The extension to match, or null.
+     */
+    private final String myExtension;
+
+    /**
+     * How the extension is matched.
+     */
+    private final Match myExtensionMatch;
+
+    /**
+     * The path to match, or null.
+     */
+    private final String myPath;
+
+    /**
+     * How the path is matched.
+     */
+    private final Match myPathMatch;
+
+    /**
+     * The event kind to match, or null.
+     */
+    private final String myKind;
+
+    /**
+     * The earliest time to match in epoch milliseconds.
+     */
+    private final long myFromMillis;
+
+    /**
+     * The time after the latest to match in epoch milliseconds.
+     */
+    private final long myToMillis;
+
+    /**
+     * The SQL condition, with placeholders for the parameters.
+     */
+    private final String myCondition;
+
+    /**
+     * The values of the placeholders, in order.
+     */
+    private final List<String> myParameters;
+
+    /**
+     * Constructs SearchCriteria from a builder.
+     *
+     * @param theBuilder The builder holding the criteria.
+     */
+    private SearchCriteria(final Builder theBuilder) {
+        myFileName = theBuilder.myFileName;
+        myFileNameMatch = theBuilder.myFileNameMatch;
+        myExtension = theBuilder.myExtension;
+        myExtensionMatch = theBuilder.myExtensionMatch;
+        myPath = theBuilder.myPath;
+        myPathMatch = theBuilder.myPathMatch;
+        myKind = theBuilder.myKind;
+        myFromMillis = theBuilder.myFrom == null ? Long.MIN_VALUE : startOf(theBuilder.myFrom);
+        myToMillis = theBuilder.myTo == null ? Long.MAX_VALUE : startOf(theBuilder.myTo.plusDays(1));
+        StringBuilder condition = new StringBuilder("1=1");
+        List<String> parameters = new ArrayList<>();
+        addText(condition, parameters, "filename", theBuilder.myFileName, theBuilder.myFileNameMatch, FILENAME_FTS);
+        addText(condition, parameters, "extension", theBuilder.myExtension, theBuilder.myExtensionMatch, null);
+        addText(condition, parameters, "path", theBuilder.myPath, theBuilder.myPathMatch, PATH_FTS);
+        if (theBuilder.myKind != null) {
+            condition.append(" AND event = ?");
+            parameters.add(theBuilder.myKind);
+        }
+        // the timestamp column is UTC text, so a day compares as the text of its UTC start
+        if (theBuilder.myFrom != null) {
+            condition.append(" AND timestamp >= ?");
+            parameters.add(theBuilder.myFrom.toString());
+        }
+        if (theBuilder.myTo != null) {
+            condition.append(" AND timestamp < ?");
+            parameters.add(theBuilder.myTo.plusDays(1).toString());
+        }
+        myCondition = condition.toString();
+        myParameters = List.copyOf(parameters);
+    }
+
+    /**
+     * Gets the SQL condition on event_log columns, with a placeholder for each parameter.
+     *
+     * @return The condition.
+     */
+    String getCondition() {
+        return myCondition;
+    }
+
+    /**
+     * Gets the values of the placeholders of the condition, in order.
+     *
+     * @return The parameters.
+     */
+    List<String> getParameters() {
+        return myParameters;
+    }
+
+    /**
+     * Checks whether the criteria match every event.
+     *
+     * @return true if no criterion is set, false otherwise.
+     */
+    boolean isEmpty() {
+        return myParameters.isEmpty();
+    }
+
+    /**
+     * Gets the file name to match.
+     *
+     * @return The text to match, or null to match any file name.
+     */
+    String getFileName() {
+        return myFileName;
+    }
+
+    /**
+     * Gets how the file name is matched.
+     *
+     * @return The kind of match, or null if no file name is matched.
+     */
+    Match getFileNameMatch() {
+        return myFileNameMatch;
+    }
+
+    /**
+     * Gets the extension to match.
+     *
+     * @return The text to match, or null to match any extension.
+     */
+    String getExtension() {
+        return myExtension;
+    }
+
+    /**
+     * Gets how the extension is matched.
+     *
+     * @return The kind of match, or null if no extension is matched.
+     */
+    Match getExtensionMatch() {
+        return myExtensionMatch;
+    }
+
+    /**
+     * Gets the directory path to match.
+     *
+     * @return The text to match, or null to match any path.
+     */
+    String getPath() {
+        return myPath;
+    }
+
+    /**
+     * Gets how the path is matched.
+     *
+     * @return The kind of match, or null if no path is matched.
+     */
+    Match getPathMatch() {
+        return myPathMatch;
+    }
+
+    /**
+     * Gets the event kind to match.
+     *
+     * @return The kind, or null to match any kind.
+     */
+    String getKind() {
+        return myKind;
+    }
+
+    /**
+     * Gets the earliest time to match, the start of the first day in UTC.
+     *
+     * @return The time in epoch milliseconds, or Long.MIN_VALUE for no limit.
+     */
+    long getFromMillis() {
+        return myFromMillis;
+    }
+
+    /**
+     * Gets the time after the latest to match, the end of the last day in UTC.
+     *
+     * @return The time in epoch milliseconds, or Long.MAX_VALUE for no limit.
+     */
+    long getToMillis() {
+        return myToMillis;
+    }
+
+    /**
+     * Binds the parameters to a statement whose SQL contains the condition.
+     *
+     * @param theStatement The statement to bind.
+     * @param theFirst     The index of the first placeholder of the condition.
+     * @return The index of the placeholder after the condition's.
+     * @throws SQLException if a parameter could not be bound.
+     */
+    int bind(final PreparedStatement theStatement, final int theFirst) throws SQLException {
+        int index = theFirst;
+        for (String parameter : myParameters) {
+            theStatement.setString(index++, parameter);
+        }
+        return index;
+    }
+
+    /**
+     * Gets the start of a day in UTC, where the timestamp column of event_log starts it.
+     *
+     * @param theDay The day.
+     * @return The start of the day in epoch milliseconds.
+     */
+    private static long startOf(final LocalDate theDay) {
+        return theDay.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Adds the condition for a text column.
+     *
+     * @param theCondition  The condition to add to.
+     * @param theParameters The parameters to add to.
+     * @param theColumn     The column to match.
+     * @param theValue      The text to match, or null to match any.
+     * @param theMatch      How the text is matched.
+     * @param theIndexed    The condition that looks the text up in a trigram index, or null if the column has none.
+     */
+    private static void addText(final StringBuilder theCondition, final List<String> theParameters,
+                                final String theColumn, final String theValue, final Match theMatch,
+                                final String theIndexed) {
+        if (theValue == null) {
+            return;
+        }
+        switch (theMatch) {
+            case EXACT -> {
+                theCondition.append(" AND ").append(theColumn).append(" = ?");
+                theParameters.add(theValue);
+            }
+            case PREFIX -> {
+                // a range instead of LIKE 'x%', so the column's index is searched rather than scanned
+                theCondition.append(" AND ").append(theColumn).append(" >= ?");
+                theParameters.add(theValue);
+                String end = prefixEnd(theValue);
+                if (end != null) {
+                    theCondition.append(" AND ").append(theColumn).append(" < ?");
+                    theParameters.add(end);
+                }
+            }
+            case CONTAINS -> {
+                if (theIndexed != null && theValue.length() >= TRIGRAM_LENGTH) {
+                    // one quoted phrase, which the trigram tokenizer matches as a substring
+                    theCondition.append(" AND ").append(theIndexed);
+                    theParameters.add('"' + theValue.replace("\"", "\"\"") + '"');
+                }
+                theCondition.append(" AND ").append(theColumn).append(" LIKE ? ESCAPE '\\'");
+                theParameters.add("%" + theValue.replace("\\", "\\\\").replace("%", "\\%")
+                        .replace("_", "\\_") + "%");
+            }
+        }
+    }
+
+    /**
+     * Gets the smallest text greater than every text that starts with a prefix. SQLite compares text
+     * by its UTF-8 bytes, which is code point order, so the last code point that can be raised is
+     * raised to the next one, stepping over the surrogate range, and everything after it is dropped.
+     *
+     * @param thePrefix The prefix.
+     * @return The end of the prefix's range, or null if no text is greater than every match.
+     */
+    static String prefixEnd(final String thePrefix) {
+        int end = thePrefix.length();
+        while (end > 0) {
+            int last = thePrefix.codePointBefore(end);
+            end -= Character.charCount(last);
+            if (last < Character.MAX_CODE_POINT) {
+                int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+                return thePrefix.substring(0, end) + Character.toString(next);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * How a text criterion matches a column.
+     */
+    enum Match {
+        /**
+         * The column equals the text.
+         */
+        EXACT,
+
+        /**
+         * The column starts with the text. Matching is case-sensitive and uses the column's index.
+         */
+        PREFIX,
+
+        /**
+         * The column contains the text anywhere. Matching ignores ASCII case. File names and paths
+         * are looked up in their trigram indexes and only the rows found there are checked; other
+         * columns, and text shorter than a trigram, are matched by reading every row.
+         */
+        CONTAINS
+    }
+
+    /**
+     * Collects criteria. Criteria left unset match any event.
+     */
+    static final class Builder {
+        /**
+         * The file name to match, or null.
+         */
+        private String myFileName;
+
+        /**
+         * How the file name is matched.
+         */
+        private Match myFileNameMatch;
+
+        /**
+         * The extension to match, or null.
+         */
+        private String myExtension;
+
+        /**
+         * How the extension is matched.
+         */
+        private Match myExtensionMatch;
+
+        /**
+         * The path to match, or null.
+         */
+        private String myPath;
+
+        /**
+         * How the path is matched.
+         */
+        private Match myPathMatch;
+
+        /**
+         * The event kind to match, or null.
+         */
+        private String myKind;
+
+        /**
+         * The first day to match, or null.
+         */
+        private LocalDate myFrom;
+
+        /**
+         * The last day to match, or null.
+         */
+        private LocalDate myTo;
+
+        /**
+         * Matches the file name.
+         *
+         * @param theFileName The text to match; empty matches any file name.
+         * @param theMatch    How the text is matched.
+         * @return This builder.
+         */
+        Builder fileName(final String theFileName, final Match theMatch) {
+            myFileName = theFileName.isEmpty() ? null : theFileName;
+            myFileNameMatch = theMatch;
+            return this;
+        }
+
+        /**
+         * Matches the extension exactly. A leading dot is added if it is missing.
+         *
+         * @param theExtension The extension to match; empty matches any extension.
+         * @return This builder.
+         */
+        Builder extension(final String theExtension) {
+            return extension(theExtension.isEmpty() || theExtension.startsWith(".") ? theExtension : "." + theExtension,
+                    Match.EXACT);
+        }
+
+        /**
+         * Matches the extension, including its leading dot.
+         *
+         * @param theExtension The text to match; empty matches any extension.
+         * @param theMatch     How the text is matched.
+         * @return This builder.
+         */
+        Builder extension(final String theExtension, final Match theMatch) {
+            myExtension = theExtension.isEmpty() ? null : theExtension;
+            myExtensionMatch = theMatch;
+            return this;
+        }
+
+        /**
+         * Matches the directory path.
+         *
+         * @param thePath  The text to match; empty matches any path.
+         * @param theMatch How the text is matched.
+         * @return This builder.
+         */
+        Builder path(final String thePath, final Match theMatch) {
+            myPath = thePath.isEmpty() ? null : thePath;
+            myPathMatch = theMatch;
+            return this;
+        }
+
+        /**
+         * Matches the event kind.
+         *
+         * @param theKind The kind to match, such as ENTRY_CREATE, or null to match any kind.
+         * @return This builder.
+         */
+        Builder kind(final String theKind) {
+            myKind = theKind;
+            return this;
+        }
+
+        /**
+         * Matches events on or after the start of a day in UTC.
+         *
+         * @param theFrom The first day to match, or null for no limit.
+         * @return This builder.
+         */
+        Builder from(final LocalDate theFrom) {
+            myFrom = theFrom;
+            return this;
+        }
+
+        /**
+         * Matches events before the end of a day in UTC.
+         *
+         * @param theTo The last day to match, or null for no limit.
+         * @return This builder.
+         */
+        Builder to(final LocalDate theTo) {
+            myTo = theTo;
+            return this;
+        }
+
+        /**
+         * Builds the criteria.
+         *
+         * @return The criteria.
+         */
+        SearchCriteria build() {
+            return new SearchCriteria(this);
+        }
+    }
+}
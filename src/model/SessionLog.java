@@ -0,0 +1,451 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The events captured since the log was last saved or cleared. Recent events are held in memory;
+ * once too many are held they are spilled to a scratch file, so a long session does not exhaust
+ * the heap. Every batch is also written to an {@link EventJournal} before it is acknowledged,
+ * unless journaling is turned off, so the session survives a crash and is replayed the next time a
+ * log is opened on the same directory. A save rotates the journal, hands the saver the sequence
+ * number of the last journal record it covers, and deletes the rotated segments once it succeeds.
+ * The saver stores that number with the events, so a journal left behind by a crash or a failed
+ * delete is not replayed into the database twice.
+ */
+final class SessionLog {
+
+    /**
+     * Number of events held in memory before they are spilled to disk, unless another limit is given.
+     */
+    static final int DEFAULT_MEMORY_LIMIT = 100_000;
+
+    /**
+     * File that receives spilled events.
+     */
+    private final Path mySpillFile;
+
+    /**
+     * File holding events taken by a save that has not completed.
+     */
+    private final Path mySavingFile;
+
+    /**
+     * Number of events held in memory before they are spilled.
+     */
+    private final int myMemoryLimit;
+
+    /**
+     * Journal that makes the session survive a crash.
+     */
+    private final EventJournal myJournal;
+
+    /**
+     * Lock guarding the state of the log.
+     */
+    private final Object myLock;
+
+    /**
+     * Events not yet spilled, oldest first.
+     */
+    private List<Event> myEvents;
+
+    /**
+     * Open stream to the spill file, or null if it is not open.
+     */
+    private DataOutputStream mySpill;
+
+    /**
+     * Number of events in the spill file.
+     */
+    private long mySpilledCount;
+
+    /**
+     * Number of events in the saving file.
+     */
+    private long mySavingCount;
+
+    /**
+     * Whether every batch is written to the journal before it is acknowledged.
+     */
+    private volatile boolean myJournaled;
+
+    /**
+     * Opens the session log kept in a directory, with journaling on. Events left in its journal by
+     * a previous run are replayed into the log, apart from those a save already covered; scratch
+     * files left by a previous run are discarded.
+     *
+     * @param theDirectory   The directory that holds the scratch files and the journal.
+     * @param theMemoryLimit The number of events held in memory before they are spilled.
+     * @param theSegmentSize The size of a journal segment in bytes.
+     * @param theSaved       The journal sequence number stored by the last save, or 0 if none was stored.
+     * @throws IllegalArgumentException if the memory limit is not positive or the segment size is too small
+     */
+    SessionLog(final Path theDirectory, final int theMemoryLimit, final int theSegmentSize, final long theSaved) {
+        if (theMemoryLimit < 1) {
+            throw new IllegalArgumentException("Memory limit must be at least 1");
+        }
+        mySpillFile = theDirectory.resolve("session.spill");
+        mySavingFile = theDirectory.resolve("session.saving");
+        myMemoryLimit = theMemoryLimit;
+        myJournal = new EventJournal(theDirectory.resolve("journal"), theSegmentSize);
+        myLock = new Object();
+        myEvents = new ArrayList<>();
+        myJournaled = true;
+        deleteFile(mySpillFile);
+        deleteFile(mySavingFile);
+        try {
+            List<Event> recovered = myJournal.replay(theSaved);
+            if (!recovered.isEmpty()) {
+                System.out.println("Recovered " + recovered.size() + " unsaved events");
+                myEvents.addAll(recovered);
+                if (myEvents.size() >= myMemoryLimit) {
+                    spill();
+                }
+            }
+        } catch (IOException theE) {
+            System.err.println("Error replaying event journal: " + theE.getMessage());
+        }
+    }
+
+    /**
+     * Sets whether every batch is written to the journal before it is acknowledged.
+     *
+     * @param theJournaled true to journal every batch, false to keep the session in memory and scratch files only.
+     */
+    void setJournaled(final boolean theJournaled) {
+        myJournaled = theJournaled;
+    }
+
+    /**
+     * Adds a batch of events to the end of the log.
+     *
+     * @param theEvents The events to add, oldest first.
+     * @throws UncheckedIOException if the events could not be journaled or spilled.
+     */
+    void append(final List<Event> theEvents) {
+        synchronized (myLock) {
+            try {
+                if (myJournaled) {
+                    myJournal.append(theEvents);
+                }
+                myEvents.addAll(theEvents);
+                if (myEvents.size() >= myMemoryLimit) {
+                    spill();
+                }
+            } catch (IOException theE) {
+                throw new UncheckedIOException("Could not write session log", theE);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of unsaved events.
+     *
+     * @return The number of events in the log.
+     */
+    long size() {
+        synchronized (myLock) {
+            return myEvents.size() + mySpilledCount + mySavingCount;
+        }
+    }
+
+    /**
+     * Discards every unsaved event.
+     */
+    void clear() {
+        synchronized (myLock) {
+            closeSpill();
+            myEvents = new ArrayList<>();
+            mySpilledCount = 0;
+            mySavingCount = 0;
+            deleteFile(mySpillFile);
+            deleteFile(mySavingFile);
+            myJournal.clear();
+        }
+    }
+
+    /**
+     * Hands every event in the log to a saver and removes them once it succeeds. Events appended
+     * while the saver runs stay in the log. If the saver fails, the events stay in the log and are
+     * handed over again by the next save. The saver is also given the sequence number of the last
+     * journal record the events cover, to store in the same transaction.
+     *
+     * @param theSaver The destination of the events.
+     * @throws DatabaseException if the saver fails.
+     */
+    void save(final Saver theSaver) throws DatabaseException {
+        List<Event> taken;
+        long marker;
+        long lastRecord;
+        synchronized (myLock) {
+            closeSpill();
+            try {
+                moveSpillToSaving();
+            } catch (IOException theE) {
+                throw new DatabaseException("Could not prepare session log for saving", theE);
+            }
+            taken = myEvents;
+            myEvents = new ArrayList<>();
+            marker = myJournal.rotate();
+            lastRecord = myJournal.lastRecord();
+        }
+        try {
+            theSaver.save(() -> new ConcatIterator(readFile(mySavingFile), taken.iterator()), lastRecord);
+        } catch (DatabaseException | RuntimeException theE) {
+            synchronized (myLock) {
+                try {
+                    appendTo(mySavingFile, taken);
+                    mySavingCount += taken.size();
+                } catch (IOException theIOE) {
+                    theE.addSuppressed(theIOE);
+                    myEvents.addAll(0, taken);
+                }
+            }
+            throw theE;
+        }
+        synchronized (myLock) {
+            mySavingCount = 0;
+            deleteFile(mySavingFile);
+            myJournal.truncate(marker);
+        }
+    }
+
+    /**
+     * Writes the events held in memory to the end of the spill file.
+     *
+     * @throws IOException if the events could not be written.
+     */
+    private void spill() throws IOException {
+        if (mySpill == null) {
+            Files.createDirectories(mySpillFile.getParent());
+            mySpill = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(mySpillFile.toFile(), true), 1 << 16));
+        }
+        for (Event event : myEvents) {
+            EventCodec.write(mySpill, event);
+        }
+        mySpill.flush();
+        mySpilledCount += myEvents.size();
+        myEvents = new ArrayList<>();
+    }
+
+    /**
+     * Closes the spill stream if it is open.
+     */
+    private void closeSpill() {
+        if (mySpill != null) {
+            try {
+                mySpill.close();
+            } catch (IOException theE) {
+                System.err.println("Error closing session spill file: " + theE.getMessage());
+            }
+            mySpill = null;
+        }
+    }
+
+    /**
+     * Moves the spill file onto the end of the saving file, creating the saving file if needed.
+     *
+     * @throws IOException if the file could not be moved.
+     */
+    private void moveSpillToSaving() throws IOException {
+        if (!Files.exists(mySpillFile)) {
+            return;
+        }
+        if (!Files.exists(mySavingFile)) {
+            Files.move(mySpillFile, mySavingFile, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            try (FileChannel from = FileChannel.open(mySpillFile, StandardOpenOption.READ);
+                 FileChannel to = FileChannel.open(mySavingFile, StandardOpenOption.WRITE,
+                         StandardOpenOption.APPEND)) {
+                long position = 0;
+                while (position < from.size()) {
+                    position += from.transferTo(position, from.size() - position, to);
+                }
+            }
+            Files.delete(mySpillFile);
+        }
+        mySavingCount += mySpilledCount;
+        mySpilledCount = 0;
+    }
+
+    /**
+     * Writes events to the end of a file.
+     *
+     * @param theFile   The file to write to.
+     * @param theEvents The events to write.
+     * @throws IOException if the events could not be written.
+     */
+    private static void appendTo(final Path theFile, final List<Event> theEvents) throws IOException {
+        if (theEvents.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(theFile.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(theFile.toFile(), true), 1 << 16))) {
+            for (Event event : theEvents) {
+                EventCodec.write(out, event);
+            }
+        }
+    }
+
+    /**
+     * Reads every event in a file, or none if the file does not exist.
+     *
+     * @param theFile The file to read.
+     * @return An iterator over the events of the file.
+     */
+    private static Iterator<Event> readFile(final Path theFile) {
+        if (!Files.exists(theFile)) {
+            return List.<Event>of().iterator();
+        }
+        try {
+            return new FileIterator(new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(theFile), 1 << 16)));
+        } catch (IOException theE) {
+            throw new UncheckedIOException("Could not read session log", theE);
+        }
+    }
+
+    /**
+     * Deletes a file if it exists.
+     *
+     * @param theFile The file to delete.
+     */
+    private static void deleteFile(final Path theFile) {
+        try {
+            Files.deleteIfExists(theFile);
+        } catch (IOException theE) {
+            System.err.println("Could not delete " + theFile + ": " + theE.getMessage());
+        }
+    }
+
+    /**
+     * Destination of the events handed over by a save.
+     */
+    @FunctionalInterface
+    interface Saver {
+        /**
+         * Stores events. The events may be read once, oldest first.
+         *
+         * @param theEvents     The events to store.
+         * @param theLastRecord The sequence number of the last journal record the events cover, to be
+         *                      stored with them and passed back when the log is next opened.
+         * @throws DatabaseException if the events could not be stored, in which case none may be kept.
+         */
+        void save(Iterable<Event> theEvents, long theLastRecord) throws DatabaseException;
+    }
+
+    /**
+     * Iterates over the events of a file, closing it at the end.
+     */
+    private static final class FileIterator implements Iterator<Event> {
+        /**
+         * The file being read, or null once it has ended.
+         */
+        private DataInputStream myIn;
+
+        /**
+         * The next event, or null if it has not been read yet.
+         */
+        private Event myNext;
+
+        /**
+         * Constructs a FileIterator.
+         *
+         * @param theIn The file to read
+         */
+        private FileIterator(DataInputStream theIn) {
+            myIn = theIn;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (myNext == null && myIn != null) {
+                try {
+                    myNext = EventCodec.read(myIn);
+                } catch (EOFException theE) {
+                    close();
+                } catch (IOException theE) {
+                    close();
+                    throw new UncheckedIOException("Could not read session log", theE);
+                }
+            }
+            return myNext != null;
+        }
+
+        @Override
+        public Event next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Event next = myNext;
+            myNext = null;
+            return next;
+        }
+
+        /**
+         * Closes the file.
+         */
+        private void close() {
+            try {
+                myIn.close();
+            } catch (IOException theE) {
+                System.err.println("Error closing session log: " + theE.getMessage());
+            }
+            myIn = null;
+        }
+    }
+
+    /**
+     * Iterates over the events of one iterator and then another.
+     */
+    private static final class ConcatIterator implements Iterator<Event> {
+        /**
+         * The iterator read first.
+         */
+        private final Iterator<Event> myFirst;
+
+        /**
+         * The iterator read once the first has ended.
+         */
+        private final Iterator<Event> mySecond;
+
+        /**
+         * Constructs a ConcatIterator.
+         *
+         * @param theFirst  The iterator read first
+         * @param theSecond The iterator read once the first has ended
+         */
+        private ConcatIterator(Iterator<Event> theFirst, Iterator<Event> theSecond) {
+            myFirst = theFirst;
+            mySecond = theSecond;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return myFirst.hasNext() || mySecond.hasNext();
+        }
+
+        @Override
+        public Event next() {
+            return myFirst.hasNext() ? myFirst.next() : mySecond.next();
+        }
+    }
+}
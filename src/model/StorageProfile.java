@@ -0,0 +1,85 @@
+package model;
+
+import java.util.List;
+
+/**
+ * SQLite settings applied to the event database when it is connected.
+ * Every profile uses write-ahead logging, so queries from the database window
+ * read a snapshot instead of blocking the watcher's writes. The profiles differ
+ * in how often SQLite syncs to disk and how much memory it may use.
+ */
+public enum StorageProfile {
+
+    /**
+     * Syncs every commit, so no committed event is lost even if the machine loses power.
+     */
+    DURABLE("FULL", 2_000, 0, "DEFAULT"),
+
+    /**
+     * Syncs at checkpoints only. Committed events survive a crash of the program but
+     * the last few may be lost if the machine loses power.
+     */
+    BALANCED("NORMAL", 16_000, 64L << 20, "MEMORY"),
+
+    /**
+     * Never syncs and uses the most memory. For scratch databases where speed matters more
+     * than keeping the log after a crash.
+     */
+    FAST("OFF", 64_000, 256L << 20, "MEMORY");
+
+    /**
+     * How long a connection waits for a lock held by another connection, in milliseconds.
+     */
+    private static final int BUSY_TIMEOUT_MILLIS = 5_000;
+
+    /**
+     * Value of the synchronous pragma.
+     */
+    private final String mySynchronous;
+
+    /**
+     * Page cache size in KiB.
+     */
+    private final int myCacheKiB;
+
+    /**
+     * Largest part of the database file that is memory-mapped, in bytes.
+     */
+    private final long myMmapSize;
+
+    /**
+     * Value of the temp_store pragma.
+     */
+    private final String myTempStore;
+
+    /**
+     * Constructs a StorageProfile.
+     *
+     * @param theSynchronous Value of the synchronous pragma.
+     * @param theCacheKiB    Page cache size in KiB.
+     * @param theMmapSize    Largest part of the database file that is memory-mapped, in bytes.
+     * @param theTempStore   Value of the temp_store pragma.
+     */
+    StorageProfile(final String theSynchronous, final int theCacheKiB, final long theMmapSize,
+                   final String theTempStore) {
+        mySynchronous = theSynchronous;
+        myCacheKiB = theCacheKiB;
+        myMmapSize = theMmapSize;
+        myTempStore = theTempStore;
+    }
+
+    /**
+     * Gets the pragma statements that apply this profile to a connection.
+     *
+     * @return The pragma statements, in the order they should run.
+     */
+    List<String> getPragmas() {
+        return List.of(
+                "PRAGMA journal_mode = WAL",
+                "PRAGMA synchronous = " + mySynchronous,
+                "PRAGMA cache_size = -" + myCacheKiB,
+                "PRAGMA mmap_size = " + myMmapSize,
+                "PRAGMA temp_store = " + myTempStore,
+                "PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+    }
+}
@@ -8,7 +8,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.ClosedWatchServiceException;
-import java.nio.file.FileSystemLoopException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -20,17 +20,25 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.time.Duration;
-import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  * A file system monitoring service that watches directories for changes.
@@ -43,21 +51,57 @@ public class SystemWatch {
      */
     private static Path LOG_DIR = Path.of(new File("database").getAbsolutePath());
 
+    /**
+     * Number of batches of raw watch events the classify stage can hold before the polling thread waits.
+     */
+    private static final int CLASSIFY_QUEUE_CAPACITY = 64;
+
+    /**
+     * Largest number of raw watch events the polling thread collects into one batch.
+     */
+    private static final int POLL_BATCH_SIZE = 4096;
+
+    /**
+     * Number of persisted batches the publish stage can hold before the persist stage waits.
+     */
+    private static final int PUBLISH_QUEUE_CAPACITY = 64;
+
+    /**
+     * How long stopping waits for the polling, registering and rescanning threads to finish, in seconds.
+     */
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+
     /**
      * PropertyChangeSupport for notifying listeners of events.
      */
     private final PropertyChangeSupport myPCS;
 
+    /**
+     * Bus that captured events are published on.
+     */
+    private final EventBus myBus;
+
     /**
      * Map of directory paths to their associated PathObjects.
      */
     private final ConcurrentHashMap<Path, PathObject> myPathMap;
 
+    /**
+     * Trie of the directories in the path map, used to find the watched root of a path.
+     */
+    private final PathTrie<Path> myRoots;
+
     /**
      * Map of directory paths to their associated WatchObjects.
      */
     private Map<Path, WatchObject> myWatched;
 
+    /**
+     * Map of watch keys to their WatchObjects. WatchKey does not override equals or hashCode,
+     * so lookups are by identity.
+     */
+    private final Map<WatchKey, WatchObject> myKeys;
+
     /**
      * WatchService for monitoring file system events.
      */
@@ -71,15 +115,91 @@ public class SystemWatch {
     /**
      * Flag indicating whether the watch service is running.
      */
-    private boolean myIsRunning;
+    private volatile boolean myIsRunning;
 
     /**
-     * Constructs a SystemWatch with the specified property change support.
-     * Attempts to connect to the database.
+     * Writer that batches captured events into database transactions while the watch service is running.
+     */
+    private EventWriter myWriter;
+
+    /**
+     * Pipeline stage that resolves, filters and classifies raw watch events.
+     */
+    private PipelineStage<List<RawEvent>> myClassifyStage;
+
+    /**
+     * Pipeline stage that notifies listeners of events once they have been persisted.
+     */
+    private PipelineStage<List<Event>> myPublishStage;
+
+    /**
+     * Last known entries of every registered directory, used to rescan after an overflow.
+     */
+    private final DirectorySnapshot mySnapshot;
+
+    /**
+     * Number of OVERFLOW events received from the watch service.
+     */
+    private final AtomicLong myOverflowCount;
+
+    /**
+     * Directories with a rescan waiting to run.
+     */
+    private final Set<Path> myPendingRescans;
+
+    /**
+     * Pool that registers directory trees, one task per directory.
+     */
+    private ForkJoinPool myRegisterPool;
+
+    /**
+     * Executor that rescans overflowed directories in parallel.
+     */
+    private ExecutorService myRescanExecutor;
+
+    /**
+     * Rules for when batched events are written to the database.
+     */
+    private volatile FlushPolicy myFlushPolicy;
+
+    /**
+     * Quiet window used to coalesce bursts of events on the same file, or zero to log every event.
+     */
+    private volatile Duration myCoalesceWindow;
+
+    /**
+     * Whether the file names found during registration are also written to the watch table.
+     */
+    private volatile boolean myPersistWatchIndex;
+
+    /**
+     * Coalescer that collapses bursts of events on the same file, or null if coalescing is off.
+     */
+    private EventCoalescer myCoalescer;
+
+    /**
+     * Events captured since the log was last saved or cleared.
+     */
+    private final SessionLog mySessionLog;
+
+    /**
+     * Constructs a SystemWatch with the specified property change support that publishes
+     * captured events on a bus of its own. Attempts to connect to the database.
      *
      * @param propertyChangeSupport The property change support used for event notifications
      */
     public SystemWatch(PropertyChangeSupport propertyChangeSupport) {
+        this(propertyChangeSupport, new EventBus());
+    }
+
+    /**
+     * Constructs a SystemWatch with the specified property change support and event bus.
+     * Attempts to connect to the database.
+     *
+     * @param propertyChangeSupport The property change support used for notifications other than captured events
+     * @param theBus                The bus that captured events are published on, a batch at a time
+     */
+    public SystemWatch(PropertyChangeSupport propertyChangeSupport, EventBus theBus) {
         myWatchService = null;
         try {
             DBManager.getDBManager().connect();
@@ -89,7 +209,23 @@ public class SystemWatch {
         }
         myIsRunning = false;
         myPCS = propertyChangeSupport;
+        myBus = theBus;
         myPathMap = new ConcurrentHashMap<>();
+        myRoots = new PathTrie<>();
+        myKeys = new ConcurrentHashMap<>();
+        myFlushPolicy = FlushPolicy.DEFAULT;
+        myCoalesceWindow = Duration.ZERO;
+        mySnapshot = new DirectorySnapshot();
+        myOverflowCount = new AtomicLong();
+        myPendingRescans = ConcurrentHashMap.newKeySet();
+        long savedRecord = 0;
+        try {
+            savedRecord = DBManager.getDBManager().getJournalMark();
+        } catch (DatabaseException theE) {
+            System.err.println("Cannot read saved journal position: " + theE.getMessage());
+        }
+        mySessionLog = new SessionLog(LOG_DIR, SessionLog.DEFAULT_MEMORY_LIMIT, EventJournal.DEFAULT_SEGMENT_SIZE,
+                savedRecord);
     }
 
     /**
@@ -103,17 +239,27 @@ public class SystemWatch {
         }
         try {
             myWatchService = FileSystems.getDefault().newWatchService();
-            DBManager.getDBManager().clearTempTable();
-            DBManager.getDBManager().clearWatchTable();
         } catch (IOException theE) {
             System.err.println("IO error when starting watch service: " + theE.getMessage());
             theE.printStackTrace();
-        } catch (DatabaseException theE) {
-            System.err.println("Database error when starting watch service: " + theE.getMessage());
-            theE.printStackTrace();
-            throw new IllegalStateException(theE.getCause());
         }
         myWatched = new ConcurrentHashMap<>();
+        mySnapshot.clear();
+        myPendingRescans.clear();
+        myRescanExecutor = Executors.newWorkStealingPool();
+        myRegisterPool = new ForkJoinPool();
+        myPublishStage = new PipelineStage<>("event-publish", PUBLISH_QUEUE_CAPACITY, this::publishEvents);
+        myWriter = new EventWriter(mySessionLog::append, myFlushPolicy, theEvents -> {
+            try {
+                myPublishStage.put(theEvents);
+            } catch (InterruptedException theE) {
+                System.err.println("Publishing interrupted, " + theEvents.size() + " events not shown");
+                Thread.currentThread().interrupt();
+            }
+        });
+        Duration window = myCoalesceWindow;
+        myCoalescer = window.isZero() ? null : new EventCoalescer(window, myWriter::submit);
+        myClassifyStage = new PipelineStage<>("event-classify", CLASSIFY_QUEUE_CAPACITY, this::classifyEvents);
         myIsRunning = true;
         myExecutor = Executors.newSingleThreadExecutor();
         runLogger();
@@ -121,7 +267,9 @@ public class SystemWatch {
 
     /**
      * Stops the file system monitoring service.
-     * Cancels all active watch keys and shuts down the executor.
+     * Closes the watch service, shuts down the executors and cancels all active watch keys. The
+     * watch state is released and the pipeline stages are closed only once the polling, registering
+     * and rescanning threads have finished, so no task reaches a closed stage or a released map.
      *
      * @throws IllegalStateException if the watch service is not running
      */
@@ -130,6 +278,23 @@ public class SystemWatch {
             throw new IllegalStateException("System watch is not running");
         }
         myIsRunning = false;
+        try {
+            if (myWatchService != null) {
+                myWatchService.close();
+            }
+        } catch (IOException theE) {
+            System.err.println("Error closing watch service: " + theE.getMessage());
+        }
+        if (myExecutor != null) {
+            myExecutor.shutdownNow();
+        }
+        myRegisterPool.shutdownNow();
+        myRescanExecutor.shutdownNow();
+        if (myExecutor != null) {
+            awaitStopped(myExecutor, "watch service poller");
+        }
+        awaitStopped(myRegisterPool, "directory registration");
+        awaitStopped(myRescanExecutor, "overflow rescan");
         if (myWatched != null) {
             for (WatchObject wo : myWatched.values()) {
                 try {
@@ -142,37 +307,118 @@ public class SystemWatch {
             }
             myWatched.clear();
         }
-        try {
-            if (myWatchService != null) {
-                myWatchService.close();
-            }
-        } catch (IOException theE) {
-            System.err.println("Error closing watch service: " + theE.getMessage());
-        }
+        myKeys.clear();
         myWatchService = null;
         myWatched = null;
-        if (myExecutor != null) {
-            myExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
+        myRescanExecutor = null;
+        myClassifyStage.close();
+        myClassifyStage = null;
+        if (myCoalescer != null) {
+            myCoalescer.close();
+            myCoalescer = null;
+        }
+        try {
+            myWriter.close();
+        } catch (DatabaseException theE) {
+            System.err.println("Error writing events: " + theE.getMessage());
         }
+        myWriter = null;
+        myPublishStage.close();
+        myPublishStage = null;
         myExecutor = null;
         System.out.println("shut down executor");
     }
 
     /**
-     * Clears the event log in the database.
+     * Waits for an executor that has been shut down to finish its running tasks.
      *
-     * @throws IllegalStateException if not connected to a database
+     * @param theExecutor The executor.
+     * @param theName     What the executor does, for messages.
      */
-    public void clearLog() {
-        if (!DBManager.getDBManager().isConnected()) {
-            throw new IllegalStateException("Not connected a database");
+    private static void awaitStopped(final ExecutorService theExecutor, final String theName) {
+        try {
+            if (!theExecutor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Timed out waiting for " + theName + " to stop");
+            }
+        } catch (InterruptedException theE) {
+            System.err.println("Interrupted waiting for " + theName + " to stop");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sets the rules for when captured events are written to the database.
+     * The policy takes effect the next time the watch service is started.
+     *
+     * @param thePolicy The flush policy to use.
+     * @throws IllegalArgumentException if the policy is null
+     */
+    public void setFlushPolicy(final FlushPolicy thePolicy) {
+        if (thePolicy == null) {
+            throw new IllegalArgumentException("Flush policy is null");
         }
+        myFlushPolicy = thePolicy;
+    }
+
+    /**
+     * Sets the SQLite storage profile of the event database. It applies to the open connection
+     * and to every later connection.
+     *
+     * @param theProfile The storage profile to use.
+     * @throws IllegalArgumentException if the profile is null
+     */
+    public void setStorageProfile(final StorageProfile theProfile) {
         try {
-            DBManager.getDBManager().clearTempTable();
+            DBManager.getDBManager().setStorageProfile(theProfile);
         } catch (DatabaseException theE) {
-            System.err.println("Error clearing log: " + theE.getMessage());
+            System.err.println("Error applying storage profile: " + theE.getMessage());
+        }
+    }
+
+    /**
+     * Sets how long a file must be quiet before a burst of events on it is logged as one event.
+     * A zero window logs every event as it happens. The window takes effect the next time the
+     * watch service is started.
+     *
+     * @param theWindow The quiet window to use.
+     * @throws IllegalArgumentException if the window is null or negative
+     */
+    public void setCoalesceWindow(final Duration theWindow) {
+        if (theWindow == null || theWindow.isNegative()) {
+            throw new IllegalArgumentException("Coalesce window is null or negative");
         }
+        myCoalesceWindow = theWindow;
+    }
+
+    /**
+     * Sets whether the file names found while registering directories are also written to the
+     * watch table. The names are always kept in memory to log the files of a deleted directory;
+     * the table is a copy for tools that read the database and costs one transaction per directory.
+     * It is kept across restarts, and each directory's rows are replaced when it is registered again,
+     * so the files of a directory deleted before the snapshot knew it are still logged.
+     *
+     * @param thePersist true to write the names to the watch table, false to keep them in memory only.
+     */
+    public void setPersistWatchIndex(final boolean thePersist) {
+        myPersistWatchIndex = thePersist;
+    }
+
+    /**
+     * Sets whether every batch of captured events is written to a journal under the database
+     * directory before it is acknowledged, so an unsaved session survives a crash and is
+     * recovered the next time the watcher starts. Journaling is on unless turned off here.
+     *
+     * @param theJournal true to journal the session, false to keep it in memory.
+     */
+    public void setJournalSession(final boolean theJournal) {
+        mySessionLog.setJournaled(theJournal);
+    }
+
+    /**
+     * Discards the events captured since the log was last saved.
+     */
+    public void clearLog() {
+        mySessionLog.clear();
     }
 
     public void clearDatabase() {
@@ -195,6 +441,16 @@ public class SystemWatch {
         return myIsRunning;
     }
 
+    /**
+     * Gets the number of times the watch service reported an OVERFLOW.
+     * Each overflow causes the affected directory to be rescanned.
+     *
+     * @return The number of OVERFLOW events received.
+     */
+    public long getOverflowCount() {
+        return myOverflowCount.get();
+    }
+
     /**
      * Adds a directory to the watch list with the specified file extension filter.
      *
@@ -216,23 +472,18 @@ public class SystemWatch {
 
         PathObject pO = myPathMap.get(theDirectory);
         if (pO == null) {
-            myPathMap.put(theDirectory, new PathObject(new HashSet<>(), new AtomicInteger(1), theRecursivelyAdd));
+            pO = new PathObject(theDirectory, new HashSet<>(), new AtomicInteger(1), theRecursivelyAdd);
+            myPathMap.put(theDirectory, pO);
+            myRoots.put(theDirectory, theDirectory);
         } else {
             pO.incrementAtomicInt();
         }
         if (!theExtension.equals(".*")) {
-            myPathMap.get(theDirectory).addExt(theExtension);
+            pO.addExt(theExtension);
         }
         if (isRunning()) {
-            if (theRecursivelyAdd) {
-                registerDirTree(theDirectory, false, null);
-            } else {
-                try {
-                    registerDirectory(theDirectory);
-                } catch (IllegalAccessException theE) {
-                    System.err.println("Could not add directory: " + theDirectory);
-                }
-            }
+            refreshFilters();
+            registerTrees(List.of(theDirectory), theRoot -> theRecursivelyAdd, false);
         }
     }
 
@@ -245,19 +496,25 @@ public class SystemWatch {
      * @throws IllegalArgumentException if directory or extension is not being watched
      */
     public void removeDir(final String theExtension, final Path theDirectory, final boolean theRecursivelyRemove) {
-        HashSet<String> extSet = myPathMap.get(theDirectory).getExts();
-        if (!myPathMap.containsKey(theDirectory)) {
+        if (theDirectory == null || !myPathMap.containsKey(theDirectory)) {
             throw new IllegalArgumentException("Directory is not in path table");
-        } else if (!extSet.isEmpty() && !extSet.contains(theExtension)) {
+        }
+        HashSet<String> extSet = myPathMap.get(theDirectory).getExts();
+        if (!extSet.isEmpty() && !extSet.contains(theExtension)) {
             throw new IllegalArgumentException("Extension is not in watch list");
         }
         if (myPathMap.get(theDirectory).decrementAtomicInt() == 0) {
             myPathMap.remove(theDirectory);
+            myRoots.remove(theDirectory);
         } else {
-            myPathMap.get(theDirectory).getExts().remove(theExtension);
+            myPathMap.get(theDirectory).removeExt(theExtension);
         }
         if (isRunning()) {
+            refreshFilters();
             if (theRecursivelyRemove) {
+                if (myPersistWatchIndex) {
+                    forgetWatchTree(theDirectory, null);
+                }
                 unregisterDirectoryRecursive(theDirectory);
             } else {
                 unregisterDirectory(theDirectory);
@@ -266,7 +523,7 @@ public class SystemWatch {
     }
 
     /**
-     * Saves temporary events to the persistent database.
+     * Appends the events captured since the log was last saved to the persistent database.
      *
      * @throws IllegalStateException if not connected to database
      */
@@ -274,9 +531,20 @@ public class SystemWatch {
         if (!DBManager.getDBManager().isConnected()) {
             throw new IllegalStateException("Not connected to database");
         }
+        EventCoalescer coalescer = myCoalescer;
+        if (coalescer != null) {
+            coalescer.flush();
+        }
+        EventWriter writer = myWriter;
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (DatabaseException theE) {
+                System.err.println("Error writing events: " + theE.getMessage());
+            }
+        }
         try {
-            DBManager.getDBManager().mergeTempEvents();
-            DBManager.getDBManager().clearTempTable();
+            mySessionLog.save(DBManager.getDBManager()::appendEvents);
         } catch (DatabaseException theE) {
             System.err.println("Error saving to database: " + theE.getMessage());
         }
@@ -284,65 +552,27 @@ public class SystemWatch {
 
     /**
      * Starts the logging threads that monitor file system events.
-     * One thread registers paths and another processes events.
+     * One thread registers paths and another polls the watch service. The polling thread only
+     * drains and resets watch keys; classifying, persisting and publishing events happen in
+     * later pipeline stages so that a slow stage does not stall the watch service.
+     * After each blocking take, every other key that is already signalled is drained too,
+     * and the events of all of them are handed to the classify stage as one batch.
      */
     private void runLogger() {
-        myExecutor.submit(() -> {
-            new Thread(this::registerPathMap).start();
-        });
+        myRegisterPool.execute(this::registerPathMap);
         myExecutor.submit(() -> {
             WatchKey key;
             try {
                 while ((key = myWatchService.take()) != null) {
-                    for (WatchEvent<?> event : key.pollEvents()) {
-                        String fileName = event.context().toString();
-                        Path path = ((Path) key.watchable()).resolve(fileName);
-                        WatchEvent.Kind<?> eType = event.kind();
-                        Path matchKey = myPathMap.keySet().stream().filter(path::startsWith).findFirst().orElse(null);
-                        if (path.toFile().isDirectory() || myWatched.containsKey(path)) {
-                            if (eType == StandardWatchEventKinds.ENTRY_CREATE) {
-                                new Thread(() -> {
-                                    if (myPathMap.get(matchKey).isRecursive()) {
-                                        registerDirTree(path, true, matchKey);
-                                    } else {
-                                        try {
-                                            registerDirectory(path);
-                                        } catch (IllegalAccessException theE) {
-                                            System.err.println("Could not add path: " + path);
-                                        }
-                                    }
-                                }).start();
-                            } else if (eType == StandardWatchEventKinds.ENTRY_DELETE) {
-                                System.err.println("removing directory from watch");
-                                new Thread(() -> {
-                                    if (myPathMap.get(matchKey).isRecursive()) {
-                                        unregisterDirectoryRecursive(path);
-                                    } else {
-                                        unregisterDirectory(path);
-                                    }
-                                }).start();
-                                ResultSet rS = DBManager.getDBManager().getWatchFiles(path);
-                                if (rS != null) {
-                                    try {
-                                        while (rS.next()) {
-                                            regEvent(event.kind().toString(), rS.getString("filename"), path);
-                                        }
-                                    } catch (SQLException theE) {
-                                        System.err.println("Could not create delete event: " + theE.getMessage());
-                                    }
-                                }
-                            }
-                            continue;
-                        }
-                        if (myPathMap.get(matchKey).isRecursive()) {
-                            regEventRecursive(event.kind().toString(), fileName, path, matchKey);
-                        } else {
-                            regEvent(event.kind().toString(), fileName, path);
-                        }
+                    List<RawEvent> batch = new ArrayList<>();
+                    do {
+                        drainKey(key, batch);
+                    } while (batch.size() < POLL_BATCH_SIZE && (key = myWatchService.poll()) != null);
+                    if (!batch.isEmpty()) {
+                        myClassifyStage.put(batch);
                     }
-                    key.reset();
                 }
-            } catch (InterruptedException | ClosedWatchServiceException | NullPointerException theEvent) {
+            } catch (InterruptedException | IllegalStateException | NullPointerException theEvent) {
                 System.err.println("Watch service interrupted or closed: " + theEvent.getMessage());
                 Thread.currentThread().interrupt();
             }
@@ -350,116 +580,240 @@ public class SystemWatch {
     }
 
     /**
-     * Registers all directories in the path map for watching.
-     * Creates a thread pool to register directories in parallel.
+     * Takes the pending events of a watch key, resets the key and adds the events to a batch.
+     * An OVERFLOW starts a rescan of the key's directory instead.
+     *
+     * @param theKey   The signalled watch key.
+     * @param theBatch The batch that receives the events.
      */
-    private void registerPathMap() {
-        Instant now = Instant.now();
-        try (ExecutorService regExecutor = Executors.newCachedThreadPool()) {
-            myPathMap.forEach((theDirectory, myOptions) -> {
+    private void drainKey(final WatchKey theKey, final List<RawEvent> theBatch) {
+        Path directory = (Path) theKey.watchable();
+        WatchObject wO = myKeys.get(theKey);
+        WatchFilter filter = wO == null ? null : wO.getFilter();
+        List<WatchEvent<?>> events = theKey.pollEvents();
+        theKey.reset();
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                handleOverflow(directory, filter);
+            } else {
+                theBatch.add(new RawEvent(directory, filter, event.kind(), (Path) event.context()));
+            }
+        }
+    }
+
+    /**
+     * Handles an OVERFLOW signalled on a watch key. Events for the key's directory may have been lost,
+     * so the directory is rescanned in the background and compared with its last known snapshot.
+     * The differences are sent to the classify stage as if the watch service had reported them.
+     * Overflows for a directory that already has a rescan pending are only counted.
+     *
+     * @param theDirectory The directory of the watch key that overflowed.
+     * @param theFilter    The filter attached to the watch key, or null if it is not known.
+     */
+    private void handleOverflow(final Path theDirectory, final WatchFilter theFilter) {
+        myOverflowCount.incrementAndGet();
+        if (!myPendingRescans.add(theDirectory)) {
+            return;
+        }
+        myRescanExecutor.submit(() -> {
+            myPendingRescans.remove(theDirectory);
+            List<RawEvent> batch = new ArrayList<>();
+            for (DirectorySnapshot.Change change : mySnapshot.rescan(theDirectory)) {
+                batch.add(new RawEvent(theDirectory, theFilter, change.getKind(), Path.of(change.getName())));
+            }
+            if (!batch.isEmpty()) {
                 try {
-                    registerDirectory(theDirectory);
-                } catch (Exception theE) {
-                    System.err.println("Could not add directory: " + theDirectory);
-                    throw new IllegalArgumentException("Could not add directory", theE);
+                    myClassifyStage.put(batch);
+                } catch (InterruptedException theE) {
+                    System.err.println("Rescan of " + theDirectory + " interrupted, " + batch.size() + " changes dropped");
+                    Thread.currentThread().interrupt();
                 }
-                if (myOptions.isRecursive()) {
-                    try (Stream<Path> stream = Files.list(theDirectory)) {
-                        stream.filter(Files::isDirectory)
-                                .filter(this::checkIfSystem)
-                                .forEach(path -> regExecutor.submit(() -> {
-                                    registerDirTree(path, false, null);
-                                }));
-                    } catch (IOException e) {
-                        System.err.println("Error listing directories: " + e.getMessage());
-                    }
-                    regExecutor.shutdown();
-                }
-            });
+            }
+        });
+    }
+
+    /**
+     * Classifies a batch of raw watch events in the order they were taken.
+     *
+     * @param theBatch The events taken from one or more watch keys.
+     */
+    private void classifyEvents(final List<RawEvent> theBatch) {
+        for (RawEvent rawEvent : theBatch) {
+            try {
+                classifyEvent(rawEvent);
+            } catch (RuntimeException theE) {
+                System.err.println("Could not classify event: " + theE.getMessage());
+            }
         }
-        //System.out.println("Time (s): " + Duration.between(now, Instant.now()).getSeconds());
     }
 
     /**
-     * Recursively registers a directory tree for watching.
-     * Adds all files to the watch database and registers all subdirectories.
+     * Classifies a raw watch event. Directory events update the registered watches,
+     * file events that pass the extension filter are sent to the persist stage.
      *
-     * @param theRoot        The root directory to start from
-     * @param theIsNewEvent  Whether this is for a newly created directory
-     * @param theWatchedPath The parent watched path
+     * @param theRawEvent The event taken from a watch key.
      */
-    private void registerDirTree(Path theRoot, boolean theIsNewEvent, Path theWatchedPath) {
-        myPCS.firePropertyChange(ModelProperties.REGISTER_START, null, null); // if gui needs to be held until done
-        try {
-            Files.walkFileTree(theRoot, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path theCurrentPath, BasicFileAttributes theAttrs) throws IOException {
-                    if (Files.isRegularFile(theCurrentPath)) {
-                        try {
-                            DBManager.getDBManager().addToWatch(theCurrentPath.toFile());
-                        } catch (DatabaseException e) {
-                            System.err.println("Error adding file to watch database: " + e.getMessage());
-                        }
+    private void classifyEvent(final RawEvent theRawEvent) {
+        String fileName = theRawEvent.getContext().toString();
+        Path path = theRawEvent.getDirectory().resolve(fileName);
+        WatchEvent.Kind<?> eType = theRawEvent.getKind();
+        WatchFilter filter = theRawEvent.getFilter();
+        if (filter == null) {
+            filter = filterFor(theRawEvent.getDirectory());
+        }
+        BasicFileAttributes attrs = null;
+        if (eType != StandardWatchEventKinds.ENTRY_DELETE) {
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException theE) {
+                // the entry was removed before it could be read; its delete event will follow
+            }
+        }
+        if (attrs != null && attrs.isDirectory() || myWatched.containsKey(path)) {
+            if (eType == StandardWatchEventKinds.ENTRY_CREATE && attrs != null) {
+                mySnapshot.record(path, attrs.lastModifiedTime().toMillis(), true);
+                if (filter != null && filter.isRecursive()) {
+                    registerNewTree(path);
+                }
+            } else if (eType == StandardWatchEventKinds.ENTRY_DELETE) {
+                mySnapshot.remove(path);
+                String[] deletedNames = mySnapshot.fileNames(path);
+                if (myPersistWatchIndex) {
+                    deletedNames = forgetWatchTree(path, deletedNames);
+                }
+                try {
+                    myRegisterPool.execute(() -> forgetDeletedTree(path));
+                } catch (RejectedExecutionException theE) {
+                    System.err.println("Could not unregister deleted directory: " + path);
+                }
+                if (deletedNames != null) {
+                    for (String deletedName : deletedNames) {
+                        regEvent(eType.toString(), deletedName, path.resolve(deletedName), filter);
                     }
-                    return FileVisitResult.CONTINUE;
                 }
+            }
+            return;
+        }
+        if (eType == StandardWatchEventKinds.ENTRY_DELETE) {
+            mySnapshot.remove(path);
+        } else if (attrs != null) {
+            mySnapshot.record(path, attrs.lastModifiedTime().toMillis(), false);
+        }
+        regEvent(eType.toString(), fileName, path, filter);
+    }
 
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                    if (theIsNewEvent) {
-                        Path root = myPathMap.keySet().stream().filter(dir::startsWith).findFirst().orElse(null);
-                        try (Stream<Path> stream = Files.list(dir)) {
-                            stream.filter(Files::isRegularFile)
-                                    .forEach(file -> regEventRecursive(
-                                            StandardWatchEventKinds.ENTRY_CREATE.toString(),
-                                            file.getFileName().toString(), file.toAbsolutePath(), root));
-
-                        } catch (IOException e) {
-                            System.err.println("Error listing directories: " + e.getMessage());
-                        }
-                    }
+    /**
+     * Removes a deleted directory and everything below it from the watch table.
+     *
+     * @param theDirectory  The directory that was deleted.
+     * @param theKnownNames The file names the snapshot knows for the directory, or null if it knows none.
+     * @return The known names, or the names recorded in the watch table if the snapshot knew none.
+     */
+    private String[] forgetWatchTree(final Path theDirectory, final String[] theKnownNames) {
+        try {
+            List<String> stored = DBManager.getDBManager().getWatchFiles(theDirectory);
+            DBManager.getDBManager().removeWatchTree(theDirectory);
+            return theKnownNames != null ? theKnownNames : stored.toArray(new String[0]);
+        } catch (DatabaseException theE) {
+            System.err.println("Error removing directory from watch database: " + theE.getMessage());
+            return theKnownNames;
+        }
+    }
 
-                    if (Files.isSymbolicLink(dir)) {
-                        return FileVisitResult.SKIP_SUBTREE;
-                    } else {
-                        handleRegisterDirectory(dir);
-                    }
-                    return FileVisitResult.CONTINUE;
-                }
+    /**
+     * Finds the filter for a directory from its most specific watched root. A non-recursive root
+     * only covers its own directory, so below it the nearest recursive root above it is used instead.
+     *
+     * @param theDirectory The directory to find a filter for.
+     * @return The filter of the directory's root, or null if the directory is not under a watched root.
+     */
+    WatchFilter filterFor(final Path theDirectory) {
+        Path root = myRoots.longestMatch(theDirectory);
+        while (root != null) {
+            PathObject pO = myPathMap.get(root);
+            if (pO != null && (pO.isRecursive() || root.equals(theDirectory))) {
+                return pO.getFilter();
+            }
+            Path parent = root.getParent();
+            root = parent == null ? null : myRoots.longestMatch(parent);
+        }
+        return null;
+    }
 
-                @Override
-                public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                    if (exc instanceof FileSystemLoopException || exc instanceof AccessDeniedException) {
-                        System.err.println("Access denied: " + file);
-                        return FileVisitResult.SKIP_SUBTREE;
-                    }
-                    System.err.println("Failed to visit file: " + file + " - " + exc.getMessage());
-                    exc.printStackTrace();
-                    return FileVisitResult.SKIP_SUBTREE;
-                }
-            });
-        } catch (IOException e) {
-            System.err.println("Error walking directory: " + e.getMessage());
+    /**
+     * Attaches the current filter to every registered watch after the watched roots
+     * or their extensions change.
+     */
+    private void refreshFilters() {
+        Map<Path, WatchObject> watched = myWatched;
+        if (watched != null) {
+            for (WatchObject wO : watched.values()) {
+                wO.setFilter(filterFor(wO.getDirectory()));
+            }
         }
+    }
+
+    /**
+     * Publishes a batch of persisted events on the bus, with one call for the whole batch.
+     *
+     * @param theEvents The events that were written to the database.
+     */
+    private void publishEvents(final List<Event> theEvents) {
+        myBus.publish(EventBus.EVENTS, theEvents);
+    }
+
+    /**
+     * Registers every directory in the path map for watching.
+     */
+    private void registerPathMap() {
+        registerTrees(List.copyOf(myPathMap.keySet()), theRoot -> {
+            PathObject pO = myPathMap.get(theRoot);
+            return pO != null && pO.isRecursive();
+        }, false);
+    }
 
-        if (myWatched.containsKey(LOG_DIR)) {
-            myWatched.get(LOG_DIR).decrementAtomicInt();
-            myWatched.remove(LOG_DIR);
+    /**
+     * Registers directories for watching on the register pool and waits until they are done.
+     * Recursive roots are split into one task per directory, so large trees are walked on every core.
+     * Listeners are sent REGISTER_START with the roots, and REGISTER_DONE with a {@link RegisterSummary}
+     * from the pool once every task has completed. A registration that is stopped sends no REGISTER_DONE.
+     *
+     * @param theRoots      The directories to register.
+     * @param theRecursive  Tells whether the tree under a root should be registered as well.
+     * @param theIsNewEvent Whether the directories were just created, so their files are logged as created.
+     */
+    private void registerTrees(final List<Path> theRoots, final Predicate<Path> theRecursive,
+                               final boolean theIsNewEvent) {
+        myPCS.firePropertyChange(ModelProperties.REGISTER_START, null, theRoots);
+        long start = System.nanoTime();
+        LongAdder directories = new LongAdder();
+        LongAdder files = new LongAdder();
+        List<RegisterTask> tasks = new ArrayList<>();
+        for (Path root : theRoots) {
+            tasks.add(new RegisterTask(root, theRecursive.test(root), theIsNewEvent, directories, files));
         }
-        myPCS.firePropertyChange(ModelProperties.REGISTER_DONE, null, null);
+        try {
+            myRegisterPool.invoke(ForkJoinTask.adapt(() -> {
+                ForkJoinTask.invokeAll(tasks);
+                myPCS.firePropertyChange(ModelProperties.REGISTER_DONE, null, new RegisterSummary(
+                        directories.sum(), files.sum(), Duration.ofNanos(System.nanoTime() - start)));
+            }));
+        } catch (RejectedExecutionException | CancellationException | ClosedWatchServiceException theE) {
+            System.err.println("Registration stopped: " + theE.getMessage());
+        }
+        ignoreLogDirectory();
     }
 
     /**
-     * Registers a single directory for watching.
+     * Registers the tree under a newly created directory in the background.
      *
-     * @param thePath The directory path to register
-     * @throws IllegalAccessException If access to the directory is denied
+     * @param theDirectory The directory that was created.
      */
-    private void registerDirectory(final Path thePath) throws IllegalAccessException {
-        handleRegisterDirectory(thePath);
-        if (myWatched.containsKey(LOG_DIR)) {
-            myWatched.get(LOG_DIR).decrementAtomicInt();
-            myWatched.remove(LOG_DIR);
+    private void registerNewTree(final Path theDirectory) {
+        try {
+            myRegisterPool.execute(() -> registerTrees(List.of(theDirectory), theRoot -> true, true));
+        } catch (RejectedExecutionException theE) {
+            System.err.println("Could not register new directory: " + theDirectory);
         }
     }
 
@@ -470,10 +824,11 @@ public class SystemWatch {
      * @param thePath The directory path to register
      */
     private void handleRegisterDirectory(final Path thePath) {
-        if (myWatched.get(thePath) != null) {
-            WatchObject wO = myWatched.get(thePath);
-            wO.incrementAtomicInt();
-        } else {
+        myWatched.compute(thePath, (theKey, theWatch) -> {
+            if (theWatch != null) {
+                theWatch.incrementAtomicInt();
+                return theWatch;
+            }
             WatchKey wK = null;
             try {
                 wK = thePath.register(myWatchService,
@@ -484,49 +839,56 @@ public class SystemWatch {
                 System.err.println("IO Exception: " + theE.getMessage());
                 System.err.println("IO Exception path: " + thePath);
             }
-            myWatched.put(thePath, new WatchObject(wK, new AtomicInteger(1)));
+            WatchObject wO = new WatchObject(thePath, wK, new AtomicInteger(1), filterFor(thePath));
+            if (wK != null) {
+                myKeys.put(wK, wO);
+            }
+            return wO;
+        });
+    }
+
+    /**
+     * Stops watching the directory that holds the database, so writing the log does not create more events.
+     */
+    private void ignoreLogDirectory() {
+        WatchObject wO = myWatched.remove(LOG_DIR);
+        if (wO != null) {
+            releaseWatch(wO);
         }
     }
 
     /**
-     * Records a file system event for non-recursive watches.
+     * Cancels the watch key of a WatchObject that is no longer in the watched map.
      *
-     * @param theEvent    The event type
-     * @param theFileName The file name
-     * @param thePath     The file path
+     * @param theWatchObject The WatchObject to release
      */
-    private void regEvent(String theEvent, String theFileName, Path thePath) {
-        Path directoryPath = thePath.getParent();
-        if (myPathMap.get(directoryPath).getExts().contains(getExtension(theFileName))
-                || myPathMap.get(directoryPath).getExts().isEmpty()) {
-            Event logEvent = getEvent(theEvent, theFileName, thePath);
-            try {
-                DBManager.getDBManager().addEvent(logEvent);
-                myPCS.firePropertyChange(ModelProperties.EVENT, null, logEvent);
-            } catch (DatabaseException theE) {
-                System.err.println("Error adding event to database: " + theE.getMessage());
-            }
+    private void releaseWatch(final WatchObject theWatchObject) {
+        WatchKey wK = theWatchObject.getWatchKey();
+        if (wK != null) {
+            myKeys.remove(wK);
+        }
+        if (theWatchObject.getWatchKeyActive()) {
+            theWatchObject.cancelWatchKey();
         }
+        mySnapshot.forget(theWatchObject.getDirectory());
     }
 
     /**
-     * Records a file system event for recursively watched directories.
+     * Records a file system event if the file passes the filter of its watched root.
      *
      * @param theEvent    The event type
      * @param theFileName The file name
      * @param thePath     The file path
-     * @param theRoot     The root watched directory
+     * @param theFilter   The filter of the file's watched root, or null if it has none
      */
-    private void regEventRecursive(String theEvent, String theFileName, Path thePath, Path theRoot) {
-        PathObject pO = myPathMap.get(theRoot);
-        if (pO != null && (pO.getExts().contains(getExtension(theFileName))
-                || pO.getExts().isEmpty())) {
+    private void regEvent(String theEvent, String theFileName, Path thePath, WatchFilter theFilter) {
+        if (theFilter != null && theFilter.accepts(theFileName)) {
             Event logEvent = getEvent(theEvent, theFileName, thePath);
-            try {
-                DBManager.getDBManager().addEvent(logEvent);
-                myPCS.firePropertyChange(ModelProperties.EVENT, null, logEvent);
-            } catch (DatabaseException theE) {
-                System.err.println("Error adding recursive event to database: " + theE.getMessage());
+            EventCoalescer coalescer = myCoalescer;
+            if (coalescer != null) {
+                coalescer.submit(logEvent);
+            } else {
+                myWriter.submit(logEvent);
             }
         }
     }
@@ -540,31 +902,24 @@ public class SystemWatch {
      * @return A new Event object
      */
     private Event getEvent(String theEvent, String theFileName, Path thePath) {
-        String extension = getExtension(theFileName);
+        String extension = WatchFilter.extensionOf(theFileName);
         return new Event(extension, theFileName, thePath.getParent().toString(), theEvent);
     }
 
     /**
-     * Extracts the file extension from a filename.
+     * Drops the watches and listings of a deleted directory and every directory below it.
+     * The tree is gone from disk, so the watched directories are matched by path prefix instead of walked.
      *
-     * @param theFileName The file name
-     * @return The file extension including the dot, or empty string if none
-     */
-    private String getExtension(final String theFileName) {
-        String extension = "";
-        int i = theFileName.length() - 1;
-        while (i >= 0) {
-            char currentChar = theFileName.charAt(i);
-            if (currentChar == '.') {
-                if (i == 0) {
-                    break;
-                }
-                extension = theFileName.substring(i);
-                break;
+     * @param theRoot The directory that was deleted.
+     */
+    private void forgetDeletedTree(final Path theRoot) {
+        Map<Path, WatchObject> watched = myWatched;
+        for (Map.Entry<Path, WatchObject> entry : watched.entrySet()) {
+            if (entry.getKey().startsWith(theRoot) && watched.remove(entry.getKey(), entry.getValue())) {
+                releaseWatch(entry.getValue());
             }
-            i--;
         }
-        return extension;
+        mySnapshot.forgetTree(theRoot);
     }
 
     /**
@@ -620,8 +975,13 @@ public class SystemWatch {
     private void handleUnregister(Path theDirectory) {
         if (myWatched.containsKey(theDirectory)) {
             WatchObject wO = myWatched.get(theDirectory);
+            WatchKey wK = wO.getWatchKey();
             if (wO.decrementAtomicInt() == 0) {
                 myWatched.remove(theDirectory);
+                if (wK != null) {
+                    myKeys.remove(wK);
+                }
+                mySnapshot.forget(theDirectory);
             }
         }
     }
@@ -676,6 +1036,190 @@ public class SystemWatch {
         myPCS.removePropertyChangeListener(theListener);
     }
 
+    /**
+     * Registers one directory and forks a task for each of its subdirectories.
+     * The directory is listed once and the listing is stored in the snapshot. If the watch
+     * index is persisted, its file names are also written to the watch table in one batch.
+     */
+    private final class RegisterTask extends RecursiveAction {
+        /**
+         * Directory to register.
+         */
+        private final Path myDirectory;
+
+        /**
+         * Whether subdirectories are registered as well.
+         */
+        private final boolean myRecursive;
+
+        /**
+         * Whether the directory was just created, so its files are logged as created.
+         */
+        private final boolean myIsNewEvent;
+
+        /**
+         * Number of directories registered, shared by every task of a registration.
+         */
+        private final LongAdder myDirectories;
+
+        /**
+         * Number of regular files found, shared by every task of a registration.
+         */
+        private final LongAdder myFiles;
+
+        /**
+         * Constructs a RegisterTask.
+         *
+         * @param theDirectory   Directory to register
+         * @param theRecursive   Whether subdirectories are registered as well
+         * @param theIsNewEvent  Whether the directory was just created
+         * @param theDirectories Counter of directories registered
+         * @param theFiles       Counter of regular files found
+         */
+        private RegisterTask(Path theDirectory, boolean theRecursive, boolean theIsNewEvent,
+                             LongAdder theDirectories, LongAdder theFiles) {
+            myDirectory = theDirectory;
+            myRecursive = theRecursive;
+            myIsNewEvent = theIsNewEvent;
+            myDirectories = theDirectories;
+            myFiles = theFiles;
+        }
+
+        /**
+         * Registers the directory, then runs the tasks of its subdirectories in parallel.
+         * Does nothing once the watch service is stopping, so stopping does not wait for a whole tree.
+         */
+        @Override
+        protected void compute() {
+            if (!myIsRunning || Files.isSymbolicLink(myDirectory)) {
+                return;
+            }
+            handleRegisterDirectory(myDirectory);
+            myDirectories.increment();
+            WatchFilter filter = myIsNewEvent ? filterFor(myDirectory) : null;
+            DirectorySnapshot.Listing.Builder listing = new DirectorySnapshot.Listing.Builder();
+            List<String> fileNames = myPersistWatchIndex ? new ArrayList<>() : null;
+            List<RegisterTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(myDirectory)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException theE) {
+                        continue;
+                    }
+                    String name = entry.getFileName().toString();
+                    listing.add(name, attrs.lastModifiedTime().toMillis(), attrs.isDirectory());
+                    if (attrs.isDirectory()) {
+                        if (myRecursive && checkIfSystem(entry)) {
+                            subtasks.add(new RegisterTask(entry, true, myIsNewEvent, myDirectories, myFiles));
+                        }
+                    } else if (attrs.isRegularFile()) {
+                        myFiles.increment();
+                        if (fileNames != null) {
+                            fileNames.add(name);
+                        }
+                        if (myIsNewEvent) {
+                            regEvent(StandardWatchEventKinds.ENTRY_CREATE.toString(), name,
+                                    entry.toAbsolutePath(), filter);
+                        }
+                    }
+                }
+            } catch (AccessDeniedException theE) {
+                System.err.println("Access denied: " + myDirectory);
+                return;
+            } catch (IOException theE) {
+                System.err.println("Error listing directory: " + myDirectory + " - " + theE.getMessage());
+                return;
+            }
+            mySnapshot.store(myDirectory, listing);
+            if (fileNames != null) {
+                try {
+                    DBManager.getDBManager().setWatchFiles(myDirectory, fileNames);
+                } catch (DatabaseException theE) {
+                    System.err.println("Error adding files to watch database: " + theE.getMessage());
+                }
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * Helper class that carries an event from the polling thread to the classify stage.
+     */
+    private static final class RawEvent {
+        /**
+         * Directory of the watch key the event came from.
+         */
+        private final Path myDirectory;
+
+        /**
+         * Filter attached to the watch key, or null if it was not known when the event was taken.
+         */
+        private final WatchFilter myFilter;
+
+        /**
+         * Kind of the event.
+         */
+        private final WatchEvent.Kind<?> myKind;
+
+        /**
+         * Name of the entry relative to the directory.
+         */
+        private final Path myContext;
+
+        /**
+         * Constructs a RawEvent.
+         *
+         * @param theDirectory Directory of the watch key the event came from
+         * @param theFilter    Filter attached to the watch key, or null if not known
+         * @param theKind      Kind of the event
+         * @param theContext   Name of the entry relative to the directory
+         */
+        private RawEvent(Path theDirectory, WatchFilter theFilter, WatchEvent.Kind<?> theKind, Path theContext) {
+            myDirectory = theDirectory;
+            myFilter = theFilter;
+            myKind = theKind;
+            myContext = theContext;
+        }
+
+        /**
+         * Gets the directory of the watch key the event came from.
+         *
+         * @return The watched directory
+         */
+        private Path getDirectory() {
+            return myDirectory;
+        }
+
+        /**
+         * Gets the filter attached to the watch key.
+         *
+         * @return The filter, or null if it was not known when the event was taken
+         */
+        private WatchFilter getFilter() {
+            return myFilter;
+        }
+
+        /**
+         * Gets the kind of the event.
+         *
+         * @return The event kind
+         */
+        private WatchEvent.Kind<?> getKind() {
+            return myKind;
+        }
+
+        /**
+         * Gets the name of the entry relative to the directory.
+         *
+         * @return The entry name
+         */
+        private Path getContext() {
+            return myContext;
+        }
+    }
+
     /**
      * Helper class that stores path-related data including extensions and reference counting.
      */
@@ -685,6 +1229,16 @@ public class SystemWatch {
          */
         private final AtomicInteger myAtomicInteger;
 
+        /**
+         * The watched root directory.
+         */
+        private final Path myRoot;
+
+        /**
+         * Filter built from the current extensions, shared by every watch under this root.
+         */
+        private volatile WatchFilter myFilter;
+
         /**
          * Set of file extensions to watch.
          */
@@ -698,14 +1252,27 @@ public class SystemWatch {
         /**
          * Constructs a PathObject.
          *
+         * @param theRoot          The watched root directory
          * @param theSet           Set of file extensions to watch
          * @param theAtomicInteger Reference counter
          * @param theIsRecursive   Whether to watch subdirectories
          */
-        private PathObject(HashSet<String> theSet, AtomicInteger theAtomicInteger, boolean theIsRecursive) {
+        private PathObject(Path theRoot, HashSet<String> theSet, AtomicInteger theAtomicInteger,
+                           boolean theIsRecursive) {
+            myRoot = theRoot;
             myExts = theSet;
             myAtomicInteger = theAtomicInteger;
-            myRecursive = true;
+            myRecursive = theIsRecursive;
+            myFilter = new WatchFilter(theRoot, theIsRecursive, theSet);
+        }
+
+        /**
+         * Gets the filter built from the current extensions.
+         *
+         * @return The filter for this root
+         */
+        private WatchFilter getFilter() {
+            return myFilter;
         }
 
         /**
@@ -733,6 +1300,7 @@ public class SystemWatch {
          */
         private void addExt(String theExt) {
             myExts.add(theExt);
+            myFilter = new WatchFilter(myRoot, myRecursive, myExts);
         }
 
         /**
@@ -742,6 +1310,7 @@ public class SystemWatch {
          */
         private void removeExt(String theExt) {
             myExts.remove(theExt);
+            myFilter = new WatchFilter(myRoot, myRecursive, myExts);
         }
 
         /**
@@ -781,11 +1350,21 @@ public class SystemWatch {
          */
         private final AtomicInteger myAtomicInteger;
 
+        /**
+         * The watched directory.
+         */
+        private final Path myDirectory;
+
         /**
          * WatchKey for the directory.
          */
         private WatchKey myWatchKey;
 
+        /**
+         * Filter of the directory's watched root, or null if it has none.
+         */
+        private volatile WatchFilter myFilter;
+
         /**
          * Flag indicating whether the WatchKey is active.
          */
@@ -794,13 +1373,45 @@ public class SystemWatch {
         /**
          * Constructs a WatchObject.
          *
+         * @param theDirectory     The watched directory
          * @param theWK            WatchKey for the directory
          * @param theAtomicInteger Reference counter
+         * @param theFilter        Filter of the directory's watched root
          */
-        private WatchObject(WatchKey theWK, AtomicInteger theAtomicInteger) {
+        private WatchObject(Path theDirectory, WatchKey theWK, AtomicInteger theAtomicInteger,
+                            WatchFilter theFilter) {
+            myDirectory = theDirectory;
             myWatchKey = theWK;
             myAtomicInteger = theAtomicInteger;
-            myWatchKeyActive = true;
+            myFilter = theFilter;
+            myWatchKeyActive = theWK != null;
+        }
+
+        /**
+         * Gets the watched directory.
+         *
+         * @return The directory
+         */
+        private Path getDirectory() {
+            return myDirectory;
+        }
+
+        /**
+         * Gets the filter of the directory's watched root.
+         *
+         * @return The filter, or null if the directory has no watched root
+         */
+        private WatchFilter getFilter() {
+            return myFilter;
+        }
+
+        /**
+         * Replaces the filter after the watched roots or their extensions change.
+         *
+         * @param theFilter The new filter
+         */
+        private void setFilter(WatchFilter theFilter) {
+            myFilter = theFilter;
         }
 
         /**
@@ -860,7 +1471,7 @@ public class SystemWatch {
          */
         private int decrementAtomicInt() {
             int val = myAtomicInteger.decrementAndGet();
-            if (val == 0) {
+            if (val == 0 && myWatchKeyActive) {
                 cancelWatchKey();
             }
             return val;
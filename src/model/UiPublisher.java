@@ -0,0 +1,228 @@
+package model;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands captured events to the user interface in batches at a limited frame rate. Any thread may
+ * offer events; they are only added to a pending list, so capture never waits for the event
+ * dispatch thread. On every tick the pending events are handed over with a single
+ * {@link SwingUtilities#invokeLater(Runnable)}, and no new batch is queued while the last one has
+ * not run, so a busy event dispatch thread sees fewer, larger batches instead of a growing queue.
+ * Only the newest events that fit in the view are kept pending; older ones are skipped and counted
+ * as dropped from view. Once a second the rate of offered events is handed over with the batch.
+ */
+public final class UiPublisher {
+
+    /**
+     * Number of batches handed over per second, unless another rate is given.
+     */
+    public static final int DEFAULT_RATE = 20;
+
+    /**
+     * Hands over each batch of events on the event dispatch thread.
+     */
+    private final Consumer<List<Event>> mySink;
+
+    /**
+     * Receives the statistics on the event dispatch thread.
+     */
+    private final Stats myStats;
+
+    /**
+     * Largest number of pending events worth showing.
+     */
+    private final int myLimit;
+
+    /**
+     * Thread that runs the ticks.
+     */
+    private final ScheduledExecutorService myTicker;
+
+    /**
+     * Lock guarding the pending events and the counters.
+     */
+    private final Object myLock;
+
+    /**
+     * Events offered since the last batch was taken, oldest first.
+     */
+    private List<Event> myPending;
+
+    /**
+     * Number of events skipped because newer ones filled the view, since the last clear.
+     */
+    private long mySkipped;
+
+    /**
+     * Number of events offered since the rate was last reported.
+     */
+    private long myOffered;
+
+    /**
+     * When the rate was last reported, in nanoseconds.
+     */
+    private long myRateStart;
+
+    /**
+     * Whether a batch has been queued on the event dispatch thread and not run yet.
+     */
+    private boolean myIsInFlight;
+
+    /**
+     * Number of clears so far, so a batch queued before a clear is not shown after it.
+     */
+    private long myGeneration;
+
+    /**
+     * Constructs a UiPublisher and starts its ticks.
+     *
+     * @param theRate  The largest number of batches handed over per second.
+     * @param theLimit The largest number of events worth showing at once, usually the rows in view.
+     * @param theSink  Receives each batch of events, oldest first, on the event dispatch thread.
+     * @param theStats Receives the statistics once a second on the event dispatch thread.
+     * @throws IllegalArgumentException if the rate or the limit is not positive
+     */
+    public UiPublisher(final int theRate, final int theLimit, final Consumer<List<Event>> theSink,
+                       final Stats theStats) {
+        if (theRate < 1 || theLimit < 1) {
+            throw new IllegalArgumentException("Rate and limit must be at least 1");
+        }
+        mySink = theSink;
+        myStats = theStats;
+        myLimit = theLimit;
+        myLock = new Object();
+        myPending = new ArrayList<>();
+        myRateStart = System.nanoTime();
+        myTicker = Executors.newSingleThreadScheduledExecutor(theTask -> {
+            Thread thread = new Thread(theTask, "ui-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = TimeUnit.SECONDS.toNanos(1) / theRate;
+        myTicker.scheduleAtFixedRate(this::tick, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds an event to the next batch.
+     *
+     * @param theEvent The event.
+     */
+    public void offer(final Event theEvent) {
+        synchronized (myLock) {
+            myPending.add(theEvent);
+            myOffered++;
+            trim();
+        }
+    }
+
+    /**
+     * Adds events to the next batch.
+     *
+     * @param theEvents The events, oldest first.
+     */
+    public void offer(final List<Event> theEvents) {
+        synchronized (myLock) {
+            myPending.addAll(theEvents);
+            myOffered += theEvents.size();
+            trim();
+        }
+    }
+
+    /**
+     * Discards the pending events and any batch not yet shown, and resets the count of skipped events.
+     */
+    public void clear() {
+        synchronized (myLock) {
+            myPending = new ArrayList<>();
+            mySkipped = 0;
+            myGeneration++;
+        }
+    }
+
+    /**
+     * Stops the ticks. Pending events are not handed over.
+     */
+    public void close() {
+        myTicker.shutdownNow();
+    }
+
+    /**
+     * Drops the oldest pending events once there are many more than fit in the view. Trimming
+     * waits for twice the limit so the list is cut rarely and offering stays constant time on average.
+     */
+    private void trim() {
+        int excess = myPending.size() - myLimit;
+        if (excess >= myLimit) {
+            myPending.subList(0, excess).clear();
+            mySkipped += excess;
+        }
+    }
+
+    /**
+     * Takes the pending events and, if there are any or the rate is due, queues one task on the
+     * event dispatch thread to hand them over. Nothing is queued while the last task has not run.
+     */
+    private void tick() {
+        List<Event> batch;
+        long generation;
+        long rate = -1;
+        long skipped;
+        synchronized (myLock) {
+            long now = System.nanoTime();
+            boolean rateDue = now - myRateStart >= TimeUnit.SECONDS.toNanos(1);
+            if (myIsInFlight || (myPending.isEmpty() && !rateDue)) {
+                return;
+            }
+            if (rateDue) {
+                rate = myOffered * TimeUnit.SECONDS.toNanos(1) / (now - myRateStart);
+                myOffered = 0;
+                myRateStart = now;
+            }
+            int excess = myPending.size() - myLimit;
+            if (excess > 0) {
+                myPending.subList(0, excess).clear();
+                mySkipped += excess;
+            }
+            batch = myPending;
+            myPending = new ArrayList<>();
+            generation = myGeneration;
+            skipped = mySkipped;
+            myIsInFlight = true;
+        }
+        long reportedRate = rate;
+        SwingUtilities.invokeLater(() -> {
+            synchronized (myLock) {
+                myIsInFlight = false;
+                if (generation != myGeneration) {
+                    return;
+                }
+            }
+            if (!batch.isEmpty()) {
+                mySink.accept(batch);
+            }
+            if (reportedRate >= 0) {
+                myStats.update(reportedRate, skipped);
+            }
+        });
+    }
+
+    /**
+     * Receives the statistics of a publisher.
+     */
+    @FunctionalInterface
+    public interface Stats {
+        /**
+         * Reports the statistics of the last second.
+         *
+         * @param theRate    The number of events offered per second.
+         * @param theSkipped The number of events skipped since the last clear because newer ones filled the view.
+         */
+        void update(long theRate, long theSkipped);
+    }
+}
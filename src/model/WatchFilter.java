@@ -0,0 +1,81 @@
+package model;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * An immutable description of how events under a watched root are filtered.
+ * A filter is built whenever the extensions of a root change and is shared by
+ * every watched directory under that root, so classifying an event only needs
+ * the filter already attached to its watch.
+ */
+final class WatchFilter {
+
+    /**
+     * The watched root this filter belongs to.
+     */
+    private final Path myRoot;
+
+    /**
+     * Whether subdirectories of the root are watched.
+     */
+    private final boolean myRecursive;
+
+    /**
+     * Extensions to accept, or an empty set to accept every file.
+     */
+    private final Set<String> myExtensions;
+
+    /**
+     * Constructs a WatchFilter.
+     *
+     * @param theRoot       The watched root this filter belongs to.
+     * @param theRecursive  Whether subdirectories of the root are watched.
+     * @param theExtensions Extensions to accept, or an empty collection to accept every file.
+     */
+    WatchFilter(final Path theRoot, final boolean theRecursive, final Collection<String> theExtensions) {
+        myRoot = theRoot;
+        myRecursive = theRecursive;
+        myExtensions = Set.copyOf(theExtensions);
+    }
+
+    /**
+     * Gets the watched root this filter belongs to.
+     *
+     * @return The root directory.
+     */
+    Path getRoot() {
+        return myRoot;
+    }
+
+    /**
+     * Checks if subdirectories of the root are watched.
+     *
+     * @return true if watched recursively, false otherwise.
+     */
+    boolean isRecursive() {
+        return myRecursive;
+    }
+
+    /**
+     * Checks if events for a file should be logged.
+     *
+     * @param theFileName The file name.
+     * @return true if the file's extension is watched, false otherwise.
+     */
+    boolean accepts(final String theFileName) {
+        return myExtensions.isEmpty() || myExtensions.contains(extensionOf(theFileName));
+    }
+
+    /**
+     * Extracts the file extension from a filename.
+     *
+     * @param theFileName The file name
+     * @return The file extension including the dot, or empty string if none
+     */
+    static String extensionOf(final String theFileName) {
+        int i = theFileName.lastIndexOf('.');
+        return i > 0 ? theFileName.substring(i) : "";
+    }
+}
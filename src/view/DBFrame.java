@@ -6,12 +6,16 @@ import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import model.ExportFormat;
 import model.ModelProperties;
 
 import java.awt.BorderLayout;
@@ -95,6 +99,21 @@ public class DBFrame extends JFrame {
      */
     private JTextField myEmailField;
 
+    /**
+     * JComboBox to let users pick the format of the exported file.
+     */
+    private JComboBox<ExportFormat> myFormatField;
+
+    /**
+     * JProgressBar showing how much of the exported file has been written while it is exported.
+     */
+    private JProgressBar myExportProgress;
+
+    /**
+     * Flag indicating whether an export is running, in which case the export button cancels it.
+     */
+    private boolean myIsExporting;
+
     /**
      * Constructs a window that allows the user to query the database
      * and send the query results as a .csv file through email.
@@ -112,9 +131,16 @@ public class DBFrame extends JFrame {
         setUIComponents();
 
         myPCS.addPropertyChangeListener(ModelProperties.TABLE_MODEL_QUERY, evt -> {
-            DefaultTableModel tableModel = (DefaultTableModel) evt.getNewValue();
+            TableModel tableModel = (TableModel) evt.getNewValue();
             updateTable(tableModel);
         });
+        // exports report from a background thread
+        myPCS.addPropertyChangeListener(ModelProperties.EXPORT_PROGRESS, evt -> {
+            long[] progress = (long[]) evt.getNewValue();
+            SwingUtilities.invokeLater(() -> showExportProgress(progress[0], progress[1]));
+        });
+        myPCS.addPropertyChangeListener(ModelProperties.EXPORT_DONE,
+                evt -> SwingUtilities.invokeLater(this::exportDone));
     }
 
     /**
@@ -220,6 +246,14 @@ public class DBFrame extends JFrame {
         });
         myEmailField.addKeyListener(addListeners(myExportButton));
         exportPanel.add(myExportButton, gbcExport);
+        gbcExport.gridy++;
+        myFormatField = new JComboBox<>(ExportFormat.values());
+        exportPanel.add(myFormatField, gbcExport);
+        gbcExport.gridy++;
+        myExportProgress = new JProgressBar();
+        myExportProgress.setStringPainted(true);
+        myExportProgress.setVisible(false);
+        exportPanel.add(myExportProgress, gbcExport);
 
 
         JPanel containerPanel = new JPanel(new BorderLayout());
@@ -264,11 +298,13 @@ public class DBFrame extends JFrame {
     /**
      * Helper method to display the query results to the table
      * and enable the email export button when appropriate.
+     * The results may arrive after the model is shown, so the button is checked again when they do.
      *
-     * @param tableModel The <code>DefaultTableModel</code> to display in the table.
+     * @param tableModel The <code>TableModel</code> to display in the table.
      */
-    private void updateTable(DefaultTableModel tableModel) {
+    private void updateTable(TableModel tableModel) {
         mySearchTable.setModel(tableModel);
+        tableModel.addTableModelListener(theEvent -> checkForInput());
         checkForInput();
     }
 
@@ -322,10 +358,44 @@ public class DBFrame extends JFrame {
     }
 
     /**
-     * Helper method to add functionality to the export button.
+     * Helper method to add functionality to the export button, which cancels the export while one is running.
      */
     private void export() {
-        myPCS.firePropertyChange(ViewProperties.EMAIL, null, myEmailField.getText().strip());
+        if (myIsExporting) {
+            myExportButton.setEnabled(false);
+            myPCS.firePropertyChange(ViewProperties.CANCEL_EXPORT, null, true);
+        } else {
+            myPCS.firePropertyChange(ViewProperties.EMAIL, null,
+                    new String[] {myEmailField.getText().strip(),
+                            ((ExportFormat) Objects.requireNonNull(myFormatField.getSelectedItem())).name()});
+        }
+    }
+
+    /**
+     * Helper method to show how far a running export has got and let the user cancel it.
+     *
+     * @param theWritten The number of rows written so far.
+     * @param theTotal   The number of rows the export will write.
+     */
+    private void showExportProgress(final long theWritten, final long theTotal) {
+        if (!myIsExporting) {
+            myIsExporting = true;
+            myExportButton.setText("Cancel");
+            myExportButton.setEnabled(true);
+            myExportProgress.setVisible(true);
+        }
+        myExportProgress.setValue(theTotal == 0 ? 100 : (int) (theWritten * 100 / theTotal));
+        myExportProgress.setString(theWritten + " / " + theTotal + " rows");
+    }
+
+    /**
+     * Helper method to restore the export button once an export has ended.
+     */
+    private void exportDone() {
+        myIsExporting = false;
+        myExportButton.setText("Export");
+        myExportProgress.setVisible(false);
+        checkForInput();
     }
 
     /**
@@ -349,6 +419,9 @@ public class DBFrame extends JFrame {
      * Helper method to check that there is input in the email field and enabling the export button as appropriate.
      */
     private void checkForInput() {
+        if (myIsExporting) {
+            return;
+        }
         String email = myEmailField.getText().strip();
         myExportButton.setEnabled(!email.isEmpty() && mySearchTable.getRowCount() != 0);
     }
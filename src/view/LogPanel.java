@@ -5,6 +5,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
@@ -22,6 +23,11 @@ class LogPanel extends JPanel implements PropertyChangeListener {
      */
     private final JTable myJTable;
 
+    /**
+     * Label showing how fast events arrive and how many are no longer in view.
+     */
+    private final JLabel myStatsLabel;
+
     /**
      * Constructs a panel that displays a log of changes caught by the watcher system in a table.
      * When notified of the table model being changed, the displayed table will update.
@@ -35,8 +41,11 @@ class LogPanel extends JPanel implements PropertyChangeListener {
         myJTable.setEnabled(false);
         JScrollPane tableContainer = new JScrollPane(myJTable);
 
+        myStatsLabel = new JLabel(" ");
+
         setLayout(new BorderLayout());
         add(tableContainer, BorderLayout.CENTER);
+        add(myStatsLabel, BorderLayout.SOUTH);
     }
 
     /**
@@ -48,8 +57,12 @@ class LogPanel extends JPanel implements PropertyChangeListener {
      */
     @Override
     public void propertyChange(final PropertyChangeEvent theEvent) {
-        if (theEvent.getPropertyName().equals(ModelProperties.LOG_LIST_MODEL_UPDATED)) {
+        if (theEvent.getPropertyName().equals(ModelProperties.LOG_LIST_MODEL_UPDATED)
+                && myJTable.getModel() != theEvent.getNewValue()) {
             myJTable.setModel((TableModel) theEvent.getNewValue());
+        } else if (theEvent.getPropertyName().equals(ModelProperties.LOG_STATS)) {
+            long[] stats = (long[]) theEvent.getNewValue();
+            myStatsLabel.setText(String.format("%,d events/sec   %,d dropped from view", stats[0], stats[1]));
         }
     }
 }
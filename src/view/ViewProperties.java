@@ -48,4 +48,9 @@ public interface ViewProperties {
      * A constant to be used for sending emails.
      */
     String EMAIL = "emailView";
+
+    /**
+     * A constant to be used when the user cancels a CSV export.
+     */
+    String CANCEL_EXPORT = "cancelExportView";
 }
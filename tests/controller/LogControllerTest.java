@@ -0,0 +1,62 @@
+package controller;
+
+import model.Event;
+import model.EventBus;
+import model.LogListModel;
+import model.ModelProperties;
+import org.junit.jupiter.api.Test;
+import view.ViewProperties;
+
+import javax.swing.SwingUtilities;
+import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogControllerTest {
+
+    private static List<Event> events(int theCount) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < theCount; i++) {
+            events.add(new Event(".txt", "file" + i + ".txt", "/test/controller", "ENTRY_MODIFY"));
+        }
+        return events;
+    }
+
+    private static void await(List<?> theList, int theSize) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (theList.size() < theSize && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void announcesModelAfterBatchThatFillsWindow() throws Exception {
+        PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+        EventBus bus = new EventBus();
+        List<Object> announced = new CopyOnWriteArrayList<>();
+        pcs.addPropertyChangeListener(ModelProperties.LOG_LIST_MODEL_UPDATED,
+                theEvent -> announced.add(theEvent.getNewValue()));
+        new LogController(pcs, bus);
+
+        bus.publish(EventBus.EVENTS, events(LogListModel.DEFAULT_WINDOW));
+        await(announced, 1);
+        assertEquals(1, announced.size(), "A batch that fills the window should announce the model.");
+        LogListModel model = assertInstanceOf(LogListModel.class, announced.getFirst(),
+                "The log table's model should be announced.");
+        SwingUtilities.invokeAndWait(() -> assertEquals(LogListModel.DEFAULT_WINDOW, model.getRowCount(),
+                "The whole window should be in view."));
+
+        SwingUtilities.invokeAndWait(() -> pcs.firePropertyChange(ViewProperties.CLEAR_LOG, null, null));
+        bus.publish(EventBus.EVENTS, events(LogListModel.DEFAULT_WINDOW));
+        await(announced, 2);
+        assertEquals(2, announced.size(), "The model should be announced again once rows return after a clear.");
+
+        bus.publish(EventBus.EVENTS, events(LogListModel.DEFAULT_WINDOW));
+        Thread.sleep(300);
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(2, announced.size(), "More rows in a model already shown should not announce it again.");
+    }
+}
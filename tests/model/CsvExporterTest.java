@@ -0,0 +1,78 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvExporterTest {
+
+    @TempDir
+    Path myDirectory;
+
+    private String myPath;
+
+    private SearchCriteria myCriteria;
+
+    @BeforeEach
+    void setUp() throws DatabaseException {
+        DBManager.getDBManager().connect();
+        myPath = "/test/export" + System.nanoTime();
+        myCriteria = new SearchCriteria.Builder().path(myPath, SearchCriteria.Match.EXACT).build();
+        DBManager.getDBManager().appendEvents(List.of(
+                new Event(".txt", "plain.txt", myPath, "ENTRY_CREATE"),
+                new Event(".txt", "say \"hi\".txt", myPath, "ENTRY_MODIFY"),
+                new Event(".txt", "café, menu.txt", myPath, "ENTRY_DELETE")));
+    }
+
+    @Test
+    void quotesEveryField() throws DatabaseException, IOException {
+        Path file = myDirectory.resolve("log.csv");
+        List<long[]> progress = new ArrayList<>();
+        long written = new CsvExporter(myCriteria, false).export(file,
+                (theWritten, theTotal) -> progress.add(new long[] {theWritten, theTotal}));
+        assertEquals(3, written, "Every matching row should be written.");
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals("\"filename\",\"extension\",\"path\",\"event\",\"timestamp\"", lines.get(0),
+                "The header should name the columns.");
+        assertTrue(lines.get(2).startsWith("\"say \"\"hi\"\".txt\",\".txt\",\"" + myPath + "\",\"ENTRY_MODIFY\",\""),
+                "Quotes inside a field should be doubled.");
+        assertTrue(lines.get(3).startsWith("\"café, menu.txt\","), "Text that is not ASCII should be written as UTF-8.");
+        assertArrayEquals(new long[] {3, 3}, progress.getLast(), "The last report should cover every row.");
+        assertFalse(Files.exists(myDirectory.resolve("log.csv.part")), "The partial file should be moved into place.");
+    }
+
+    @Test
+    void compresses() throws DatabaseException, IOException {
+        Path plain = myDirectory.resolve("log.csv");
+        Path compressed = myDirectory.resolve("log.csv.gz");
+        new CsvExporter(myCriteria, false).export(plain, (theWritten, theTotal) -> { });
+        new CsvExporter(myCriteria, true).export(compressed, (theWritten, theTotal) -> { });
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+            assertArrayEquals(Files.readAllBytes(plain), in.readAllBytes(),
+                    "A compressed export should hold the same CSV.");
+        }
+    }
+
+    @Test
+    void cancelLeavesNoFile() {
+        Path file = myDirectory.resolve("log.csv");
+        CsvExporter exporter = new CsvExporter(myCriteria, false);
+        exporter.cancel();
+        assertThrows(CancellationException.class, () -> exporter.export(file, (theWritten, theTotal) -> { }),
+                "A cancelled export should be reported.");
+        assertFalse(Files.exists(file), "A cancelled export should leave no file.");
+        assertFalse(Files.exists(myDirectory.resolve("log.csv.part")), "A cancelled export should delete its partial file.");
+    }
+}
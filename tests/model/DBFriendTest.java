@@ -3,7 +3,7 @@ package model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import java.beans.PropertyChangeSupport;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,7 +26,7 @@ class DBFriendTest {
 
         myPCS.addPropertyChangeListener(ModelProperties.TABLE_MODEL_QUERY, evt -> {
             assertNotNull(evt.getNewValue());
-            assertTrue(evt.getNewValue() instanceof DefaultTableModel);
+            assertTrue(evt.getNewValue() instanceof TableModel);
         });
 
         myDBFriend.getTableModel(queryFilters);
@@ -36,6 +36,6 @@ class DBFriendTest {
     void sendEmail() {
         String testEmail = "test@example.com";
 
-        assertDoesNotThrow(() -> myDBFriend.sendEmail(testEmail));
+        assertDoesNotThrow(() -> myDBFriend.sendEmail(testEmail, ExportFormat.CSV));
     }
 }
\ No newline at end of file
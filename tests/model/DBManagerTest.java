@@ -3,8 +3,13 @@ package model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.io.File;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -45,14 +50,47 @@ class DBManagerTest {
         }, "Executing a query should not fail.");
     }
 
+    @Test
+    void read() throws DatabaseException {
+        int result = myDBManager.read(theConnection -> {
+            try (Statement statement = theConnection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT 1")) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        });
+        assertEquals(1, result, "A query should run on a reader.");
+    }
+
+    @Test
+    void readIsReadOnly() {
+        assertThrows(DatabaseException.class, () -> myDBManager.read(theConnection -> {
+            try (Statement statement = theConnection.createStatement()) {
+                return statement.executeUpdate("DELETE FROM watch_table");
+            }
+        }), "A reader should not be able to write.");
+    }
+
     @Test
     void clearTable() {
         assertDoesNotThrow(() -> myDBManager.clearTable(), "Event log should clear without errors..");
     }
 
     @Test
-    void clearTempTable() {
-        assertDoesNotThrow(() -> myDBManager.clearTempTable(), "Temporary event log should clear without errors.");
+    void clearTableDropsPaths() throws DatabaseException {
+        String testPath = "/test/cleared" + System.nanoTime();
+        myDBManager.appendEvents(List.of(new Event(".txt", "before.txt", testPath, "ENTRY_CREATE")));
+        myDBManager.clearTable();
+        myDBManager.appendEvents(List.of(new Event(".txt", "after.txt", testPath, "ENTRY_CREATE")));
+
+        String rows = myDBManager.read(theConnection -> {
+            try (Statement statement = theConnection.createStatement();
+                 ResultSet res = statement.executeQuery(
+                         "SELECT (SELECT count(*) FROM paths) || '|' || (SELECT count(*) FROM event_log)")) {
+                return res.next() ? res.getString(1) : "";
+            }
+        });
+        assertEquals("1|1", rows, "Clearing should drop unused paths, and a path added again should be found.");
     }
 
     @Test
@@ -61,20 +99,172 @@ class DBManagerTest {
     }
 
     @Test
-    void addToWatch() {
-        File testFile = new File("/test/path/testFile.txt");
-        assertDoesNotThrow(() -> myDBManager.addToWatch(testFile), "Adding a file to the watch table should not throw an error.");
+    void setWatchFiles() throws DatabaseException {
+        Path testPath = Path.of("/test/watch/replaced");
+        myDBManager.setWatchFiles(testPath, List.of("first.txt", "second.txt"));
+        myDBManager.setWatchFiles(testPath, List.of("third.txt"));
+
+        assertEquals(List.of("third.txt"), myDBManager.getWatchFiles(testPath),
+                "Setting the files of a directory again should replace its rows.");
+    }
+
+    @Test
+    void getWatchFiles() throws DatabaseException {
+        Path testPath = Path.of("/test/watch/files");
+        myDBManager.getWatchFiles(testPath);
+        myDBManager.setWatchFiles(testPath, List.of("first.txt", "second.txt"));
+
+        assertEquals(List.of("first.txt", "second.txt"), myDBManager.getWatchFiles(testPath).stream().sorted().toList(),
+                "Every file of the directory should be returned.");
+        assertTrue(myDBManager.getWatchFiles(testPath).isEmpty(), "Returned files should be removed from the table.");
+    }
+
+    @Test
+    void removeWatchTree() throws DatabaseException {
+        Path testPath = Path.of("/test/watch/tree");
+        Path siblingPath = Path.of("/test/watch/tree2");
+        myDBManager.removeWatchTree(testPath);
+        myDBManager.getWatchFiles(siblingPath);
+        myDBManager.setWatchFiles(testPath, List.of("root.txt"));
+        myDBManager.setWatchFiles(testPath.resolve("sub"), List.of("sub.txt"));
+        myDBManager.setWatchFiles(siblingPath, List.of("sibling.txt"));
+
+        assertEquals(2, myDBManager.removeWatchTree(testPath), "The directory and its subdirectory should be removed.");
+        assertEquals(List.of("sibling.txt"), myDBManager.getWatchFiles(siblingPath),
+                "A sibling that shares the name prefix should be kept.");
+    }
+
+    @Test
+    void setStorageProfile() throws Exception {
+        for (StorageProfile profile : StorageProfile.values()) {
+            assertDoesNotThrow(() -> myDBManager.setStorageProfile(profile), "Applying a profile should not throw an error.");
+            assertEquals(profile, myDBManager.getStorageProfile(), "The profile should be kept.");
+        }
+        try (ResultSet res = myDBManager.executeQuery("PRAGMA journal_mode")) {
+            assertTrue(res.next(), "Journal mode should be reported.");
+            assertEquals("wal", res.getString(1), "Every profile should use write-ahead logging.");
+        }
+        myDBManager.setStorageProfile(StorageProfile.BALANCED);
+    }
+
+    @Test
+    void appendEvents() {
+        List<Event> testEvents = List.of(
+                new Event("txt", "testFile.txt", "/test/path", "CREATE"),
+                new Event("txt", "testFile.txt", "/test/path", "MODIFY"));
+        assertDoesNotThrow(() -> myDBManager.appendEvents(testEvents), "Appending events should not throw an error.");
+    }
+
+    @Test
+    void journalMark() throws DatabaseException {
+        List<Event> testEvents = List.of(new Event("txt", "testFile.txt", "/test/journal", "CREATE"));
+        long mark = myDBManager.getJournalMark() + 5;
+        myDBManager.appendEvents(testEvents, mark);
+        assertEquals(mark, myDBManager.getJournalMark(), "Appending events should record the journal position.");
+        myDBManager.appendEvents(testEvents, mark - 1);
+        assertEquals(mark, myDBManager.getJournalMark(), "The recorded journal position should not go down.");
+    }
+
+    @Test
+    void appendEventsAfterReconnect() throws DatabaseException {
+        List<Event> testEvents = List.of(new Event("txt", "testFile.txt", "/test/path", "CREATE"));
+        myDBManager.appendEvents(testEvents);
+        myDBManager.disconnect();
+        myDBManager.connect();
+        assertDoesNotThrow(() -> myDBManager.appendEvents(testEvents),
+                "Cached statements should be prepared again after a reconnect.");
+    }
+
+    @Test
+    void failedAppendKeepsNothing() throws DatabaseException {
+        String testName = "failed" + System.nanoTime() + ".txt";
+        String testPath = "/test/" + testName;
+        List<Event> failing = Arrays.asList(new Event(".txt", testName, testPath, "ENTRY_CREATE"), null);
+        assertThrows(DatabaseException.class, () -> myDBManager.appendEvents(failing),
+                "A failure part way through should be reported.");
+        myDBManager.appendEvents(List.of(new Event(".txt", testName, testPath, "ENTRY_DELETE")));
+
+        int rows = myDBManager.read(theConnection -> {
+            try (PreparedStatement statement = theConnection.prepareStatement(
+                    "SELECT count(*) FROM event_log WHERE filename = ?")) {
+                statement.setString(1, testName);
+                try (ResultSet res = statement.executeQuery()) {
+                    return res.next() ? res.getInt(1) : -1;
+                }
+            }
+        });
+        assertEquals(1, rows, "Only the event of the successful append should be kept.");
+    }
+
+    @Test
+    void schemaVersion() throws Exception {
+        try (ResultSet res = myDBManager.executeQuery("PRAGMA user_version")) {
+            assertTrue(res.next(), "Schema version should be reported.");
+            assertEquals(DBManager.SCHEMA_VERSION, res.getInt(1), "The database should be migrated to the current version.");
+        }
     }
 
     @Test
-    void addEvent() {
-        Event testEvent = new Event("txt", "testFile.txt", "/test/path", "CREATE");
-        assertDoesNotThrow(() -> myDBManager.addEvent(testEvent), "Adding an event should not throw an error.");
+    void searchesUseIndexes() throws DatabaseException {
+        String select = "SELECT filename, extension, path, event, timestamp FROM event_log WHERE 1=1 ";
+        List<String> searches = List.of(
+                select + "AND event='ENTRY_CREATE'",
+                select + "AND timestamp BETWEEN '2024-01-01' AND '2024-01-02'",
+                select + "AND timestamp >= '2024-01-01'",
+                select + "AND event='ENTRY_DELETE' AND timestamp BETWEEN '2024-01-01' AND '2024-01-02'",
+                select + "AND extension = '.txt'",
+                select + "AND path = '/test/path'");
+        for (String search : searches) {
+            String plan = myDBManager.read(theConnection -> {
+                StringBuilder details = new StringBuilder();
+                try (Statement statement = theConnection.createStatement();
+                     ResultSet res = statement.executeQuery("EXPLAIN QUERY PLAN " + search)) {
+                    while (res.next()) {
+                        details.append('\n').append(res.getString("detail"));
+                    }
+                }
+                return details.toString();
+            });
+            assertFalse(plan.contains("\nSCAN "),
+                    "Search should use an index instead of a full scan: " + search + plan);
+        }
     }
 
     @Test
-    void mergeTempEvents() {
-        assertDoesNotThrow(() -> myDBManager.mergeTempEvents(), "Merging temp events should not throw an error.");
+    void appendedEventsKeepColumns() throws DatabaseException {
+        String testName = "merged" + System.nanoTime() + ".txt";
+        myDBManager.appendEvents(List.of(new Event(".txt", testName, "/test/merged", "ENTRY_MODIFY")));
+
+        String row = myDBManager.read(theConnection -> {
+            try (PreparedStatement statement = theConnection.prepareStatement(
+                    "SELECT extension, path, event, timestamp FROM event_log WHERE filename = ?")) {
+                statement.setString(1, testName);
+                try (ResultSet res = statement.executeQuery()) {
+                    return res.next() ? res.getString(1) + "|" + res.getString(2) + "|" + res.getString(3)
+                            + "|" + res.getString(4).length() : null;
+                }
+            }
+        });
+        assertEquals(".txt|/test/merged|ENTRY_MODIFY|19", row, "The event log view should keep the original columns.");
+    }
+
+    @Test
+    void appendedBurstKeepsCount() throws DatabaseException {
+        String testName = "burst" + System.nanoTime() + ".txt";
+        LocalDateTime last = LocalDateTime.of(2024, 5, 1, 12, 0, 30);
+        myDBManager.appendEvents(List.of(new Event(".txt", testName, "/test/burst", "ENTRY_MODIFY",
+                last.minusSeconds(30), last, 7)));
+
+        String row = myDBManager.read(theConnection -> {
+            try (PreparedStatement statement = theConnection.prepareStatement(
+                    "SELECT event_count, first_ts, ts FROM events WHERE filename = ?")) {
+                statement.setString(1, testName);
+                try (ResultSet res = statement.executeQuery()) {
+                    return res.next() ? res.getInt(1) + "|" + (res.getLong(3) - res.getLong(2)) : null;
+                }
+            }
+        });
+        assertEquals("7|30000", row, "A coalesced event should keep its count and first time.");
     }
 
     @Test
@@ -0,0 +1,126 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectorySnapshotTest {
+
+    @TempDir
+    Path myDirectory;
+
+    private DirectorySnapshot mySnapshot;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(myDirectory.resolve("kept.txt"), "kept");
+        Files.writeString(myDirectory.resolve("changed.txt"), "changed");
+        Files.writeString(myDirectory.resolve("deleted.txt"), "deleted");
+        mySnapshot = new DirectorySnapshot();
+        capture();
+    }
+
+    @Test
+    void rescanUnchanged() {
+        assertTrue(mySnapshot.rescan(myDirectory).isEmpty(), "An unchanged directory should have no changes.");
+    }
+
+    @Test
+    void rescan() throws IOException {
+        Files.writeString(myDirectory.resolve("created.txt"), "created");
+        Files.setLastModifiedTime(myDirectory.resolve("changed.txt"),
+                FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        Files.delete(myDirectory.resolve("deleted.txt"));
+        Files.createDirectory(myDirectory.resolve("folder"));
+
+        List<DirectorySnapshot.Change> changes = mySnapshot.rescan(myDirectory);
+
+        assertEquals(4, changes.size(), "Every missed change should be found.");
+        assertTrue(hasChange(changes, StandardWatchEventKinds.ENTRY_CREATE.name(), "created.txt", false));
+        assertTrue(hasChange(changes, StandardWatchEventKinds.ENTRY_MODIFY.name(), "changed.txt", false));
+        assertTrue(hasChange(changes, StandardWatchEventKinds.ENTRY_DELETE.name(), "deleted.txt", false));
+        assertTrue(hasChange(changes, StandardWatchEventKinds.ENTRY_CREATE.name(), "folder", true));
+        assertTrue(mySnapshot.rescan(myDirectory).isEmpty(), "A rescan should replace the stored listing.");
+    }
+
+    @Test
+    void recordedEventsAreNotRepeated() throws IOException {
+        Path created = myDirectory.resolve("created.txt");
+        Files.writeString(created, "created");
+        Files.delete(myDirectory.resolve("deleted.txt"));
+        mySnapshot.record(created, Files.getLastModifiedTime(created).toMillis(), false);
+        mySnapshot.remove(myDirectory.resolve("deleted.txt"));
+
+        assertTrue(mySnapshot.rescan(myDirectory).isEmpty(), "Changes that were already seen should not be reported.");
+    }
+
+    @Test
+    void modifiedBeforeRecordTime() throws IOException {
+        Path changed = myDirectory.resolve("changed.txt");
+        mySnapshot.record(changed, Files.getLastModifiedTime(changed).toMillis(), false);
+        Files.writeString(changed, "changed again");
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        List<DirectorySnapshot.Change> changes = mySnapshot.rescan(myDirectory);
+
+        assertTrue(hasChange(changes, StandardWatchEventKinds.ENTRY_MODIFY.name(), "changed.txt", false),
+                "A write whose time is older than the last event should still be found.");
+    }
+
+    @Test
+    void fileNames() throws IOException {
+        Files.createDirectory(myDirectory.resolve("folder"));
+        capture();
+
+        assertArrayEquals(new String[] {"changed.txt", "deleted.txt", "kept.txt"}, mySnapshot.fileNames(myDirectory),
+                "File names should be sorted and exclude directories.");
+        assertNull(mySnapshot.fileNames(myDirectory.resolve("folder").resolve("missing")),
+                "A directory that was never captured should have no names.");
+    }
+
+    @Test
+    void forget() {
+        mySnapshot.forget(myDirectory);
+
+        assertTrue(mySnapshot.rescan(myDirectory).isEmpty(), "A forgotten directory should not be rescanned.");
+    }
+
+    @Test
+    void forgetTree() {
+        Path sibling = myDirectory.resolveSibling(myDirectory.getFileName() + "2");
+        mySnapshot.store(myDirectory.resolve("sub"), new DirectorySnapshot.Listing.Builder());
+        mySnapshot.store(sibling, new DirectorySnapshot.Listing.Builder());
+        mySnapshot.forgetTree(myDirectory);
+
+        assertNull(mySnapshot.fileNames(myDirectory), "The root of the tree should be forgotten.");
+        assertNull(mySnapshot.fileNames(myDirectory.resolve("sub")), "Directories below the root should be forgotten.");
+        assertNotNull(mySnapshot.fileNames(sibling), "A sibling that shares the name prefix should be kept.");
+    }
+
+    private void capture() throws IOException {
+        DirectorySnapshot.Listing.Builder builder = new DirectorySnapshot.Listing.Builder();
+        try (Stream<Path> entries = Files.list(myDirectory)) {
+            for (Path entry : entries.toList()) {
+                builder.add(entry.getFileName().toString(), Files.getLastModifiedTime(entry).toMillis(),
+                        Files.isDirectory(entry));
+            }
+        }
+        mySnapshot.store(myDirectory, builder);
+    }
+
+    private boolean hasChange(List<DirectorySnapshot.Change> theChanges, String theKind, String theName,
+                              boolean theIsDirectory) {
+        return theChanges.stream().anyMatch(change -> change.getKind().name().equals(theKind)
+                && change.getName().equals(theName) && change.isDirectory() == theIsDirectory);
+    }
+}
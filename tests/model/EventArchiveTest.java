@@ -0,0 +1,169 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventArchiveTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 250_000_000);
+
+    @TempDir
+    Path myDirectory;
+
+    private String myPath;
+
+    private SearchCriteria myCriteria;
+
+    @BeforeEach
+    void setUp() throws DatabaseException {
+        DBManager.getDBManager().connect();
+        myPath = "/test/archive" + System.nanoTime();
+        myCriteria = new SearchCriteria.Builder().path(myPath, SearchCriteria.Match.PREFIX).build();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            LocalDateTime time = START.plusDays(i);
+            events.add(new Event(i % 2 == 0 ? ".txt" : ".log", "file" + i + ".txt", myPath + "/dir" + (i / 5),
+                    i == 9 ? "ENTRY_DELETE" : "ENTRY_MODIFY", time, time, 1));
+        }
+        DBManager.getDBManager().appendEvents(events);
+    }
+
+    private Path export(int theBlockRows) throws DatabaseException {
+        Path file = myDirectory.resolve("log" + EventArchive.SUFFIX);
+        new ArchiveExporter(myCriteria, theBlockRows).export(file, (theWritten, theTotal) -> { });
+        return file;
+    }
+
+    private static LocalDate utcDay(LocalDateTime theTime) {
+        return theTime.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static List<Event> scan(EventArchive theArchive, SearchCriteria theCriteria) throws IOException {
+        List<Event> events = new ArrayList<>();
+        theArchive.scan(theCriteria, events::add);
+        return events;
+    }
+
+    @Test
+    void roundTrip() throws DatabaseException, IOException {
+        try (EventArchive archive = new EventArchive(export(3))) {
+            assertEquals(4, archive.getBlockCount(), "Rows should be split into blocks of the given size.");
+            List<Event> events = scan(archive, SearchCriteria.ALL);
+            assertEquals(10, events.size(), "Every exported row should be read back.");
+            Event last = events.getLast();
+            assertEquals("file9.txt", last.getFileName(), "Rows should be read in the order they were exported.");
+            assertEquals(".log", last.getExtension(), "The extension should be kept.");
+            assertEquals(myPath + "/dir1", last.getPath(), "The path should be kept.");
+            assertEquals("ENTRY_DELETE", last.geEventKind(), "The event kind should be kept.");
+            assertEquals(START.plusDays(9), last.getTimeStamp(), "The time should be kept to the millisecond.");
+        }
+    }
+
+    @Test
+    void skipsBlocksThatCannotMatch() throws DatabaseException, IOException {
+        try (EventArchive archive = new EventArchive(export(5))) {
+            List<Event> events = scan(archive, new SearchCriteria.Builder().path(myPath + "/dir1", SearchCriteria.Match.EXACT).build());
+            assertEquals(5, events.size(), "Rows under the path should match.");
+            assertEquals(1, archive.getBlocksRead(), "A block without the path should not be read.");
+
+            events = scan(archive, new SearchCriteria.Builder().from(utcDay(START.plusDays(7))).build());
+            assertEquals(List.of("file7.txt", "file8.txt", "file9.txt"),
+                    events.stream().map(Event::getFileName).toList(), "Rows from the day on should match.");
+            assertEquals(1, archive.getBlocksRead(), "A block that ends before the first day should not be read.");
+
+            assertTrue(scan(archive, new SearchCriteria.Builder().kind("ENTRY_CREATE").build()).isEmpty(),
+                    "A kind that was never archived should match nothing.");
+            assertEquals(0, archive.getBlocksRead(), "No block should be read for a kind missing from the dictionary.");
+        }
+    }
+
+    @Test
+    void filtersRows() throws DatabaseException, IOException {
+        try (EventArchive archive = new EventArchive(export(64))) {
+            SearchCriteria criteria = new SearchCriteria.Builder()
+                    .extension("log")
+                    .fileName("FILE", SearchCriteria.Match.CONTAINS)
+                    .to(utcDay(START.plusDays(3)))
+                    .build();
+            assertEquals(List.of("file1.txt", "file3.txt"),
+                    scan(archive, criteria).stream().map(Event::getFileName).toList(),
+                    "Only rows matching every criterion should be read.");
+        }
+    }
+
+    @Test
+    void daysMatchDatabaseSearch() throws DatabaseException, IOException {
+        try (EventArchive archive = new EventArchive(export(64))) {
+            for (int day = 0; day < 10; day++) {
+                LocalDate date = utcDay(START.plusDays(day));
+                SearchCriteria criteria = new SearchCriteria.Builder()
+                        .path(myPath, SearchCriteria.Match.PREFIX).from(date).to(date).build();
+                assertEquals(search(criteria), scan(archive, criteria).stream().map(Event::getFileName).toList(),
+                        "A day should match the same events in the archive as in the database: " + date);
+            }
+        }
+    }
+
+    @Test
+    void caseMatchesDatabaseSearch() throws DatabaseException, IOException {
+        DBManager.getDBManager().appendEvents(List.of(
+                new Event(".txt", "CAFÉ.txt", myPath, "ENTRY_CREATE"),
+                new Event(".txt", "café.txt", myPath, "ENTRY_CREATE")));
+        try (EventArchive archive = new EventArchive(export(64))) {
+            for (String text : List.of("café", "CAFÉ", "É", "Caf")) {
+                SearchCriteria criteria = new SearchCriteria.Builder().path(myPath, SearchCriteria.Match.PREFIX)
+                        .fileName(text, SearchCriteria.Match.CONTAINS).build();
+                assertEquals(search(criteria), scan(archive, criteria).stream().map(Event::getFileName).toList(),
+                        "Text should match the same events in the archive as in the database: " + text);
+            }
+            SearchCriteria criteria = new SearchCriteria.Builder().path(myPath, SearchCriteria.Match.PREFIX)
+                    .fileName("café", SearchCriteria.Match.CONTAINS).build();
+            assertEquals(List.of("café.txt"), search(criteria), "Only ASCII letters should be matched ignoring case.");
+        }
+    }
+
+    private static List<String> search(SearchCriteria theCriteria) throws DatabaseException {
+        String sql = "SELECT filename FROM event_log WHERE " + theCriteria.getCondition() + " ORDER BY id";
+        return DBManager.getDBManager().read(sql, theStatement -> {
+            theCriteria.bind(theStatement, 1);
+            List<String> names = new ArrayList<>();
+            try (ResultSet res = theStatement.executeQuery()) {
+                while (res.next()) {
+                    names.add(res.getString(1));
+                }
+            }
+            return names;
+        });
+    }
+
+    @Test
+    void cancelLeavesNoFile() {
+        Path file = myDirectory.resolve("log" + EventArchive.SUFFIX);
+        ArchiveExporter exporter = new ArchiveExporter(myCriteria, 3);
+        exporter.cancel();
+        assertThrows(CancellationException.class, () -> exporter.export(file, (theWritten, theTotal) -> { }),
+                "A cancelled export should be reported.");
+        assertFalse(Files.exists(file), "A cancelled export should leave no file.");
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = Files.writeString(myDirectory.resolve("log.csv"), "\"filename\",\"extension\"\n");
+        assertThrows(IOException.class, () -> new EventArchive(file), "A file that is not an archive should be rejected.");
+    }
+}
@@ -0,0 +1,70 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBusTest {
+
+    private static final EventBus.Topic<String> OTHER = new EventBus.Topic<>("other");
+
+    private static List<Event> events(String... theNames) {
+        List<Event> events = new ArrayList<>();
+        for (String name : theNames) {
+            events.add(new Event(".txt", name, "/test/bus", "ENTRY_CREATE"));
+        }
+        return events;
+    }
+
+    @Test
+    void deliversBatchToSubscribers() {
+        EventBus bus = new EventBus();
+        List<List<Event>> first = new ArrayList<>();
+        List<List<Event>> second = new ArrayList<>();
+        bus.subscribe(EventBus.EVENTS, first::add);
+        bus.subscribe(EventBus.EVENTS, second::add);
+        List<Event> batch = events("a", "b");
+        bus.publish(EventBus.EVENTS, batch);
+        assertEquals(List.of(batch), first, "A batch should be delivered once, as it is.");
+        assertEquals(List.of(batch), second, "Every subscriber should get the batch.");
+    }
+
+    @Test
+    void topicsAreSeparate() {
+        EventBus bus = new EventBus();
+        List<String> other = new ArrayList<>();
+        bus.subscribe(OTHER, other::add);
+        bus.publish(EventBus.EVENTS, events("a"));
+        assertTrue(other.isEmpty(), "A subscriber should only get values of its topic.");
+        bus.publish(OTHER, "x");
+        assertEquals(List.of("x"), other, "A subscriber should get values of its topic.");
+    }
+
+    @Test
+    void unsubscribe() {
+        EventBus bus = new EventBus();
+        List<String> received = new ArrayList<>();
+        Consumer<String> subscriber = received::add;
+        bus.subscribe(OTHER, subscriber);
+        bus.unsubscribe(OTHER, subscriber);
+        bus.publish(OTHER, "x");
+        assertTrue(received.isEmpty(), "A removed subscriber should not be called.");
+        assertDoesNotThrow(() -> bus.unsubscribe(OTHER, subscriber), "Removing a missing subscriber should do nothing.");
+    }
+
+    @Test
+    void failingSubscriberDoesNotStopOthers() {
+        EventBus bus = new EventBus();
+        List<String> received = new ArrayList<>();
+        bus.subscribe(OTHER, theValue -> {
+            throw new IllegalStateException("Test failure");
+        });
+        bus.subscribe(OTHER, received::add);
+        bus.publish(OTHER, "x");
+        assertEquals(List.of("x"), received, "Later subscribers should still be called.");
+    }
+}
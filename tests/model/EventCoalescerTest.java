@@ -0,0 +1,138 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCoalescerTest {
+
+    private List<Event> myEvents;
+
+    @BeforeEach
+    void setUp() {
+        myEvents = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    void burstIsCollapsed() {
+        EventCoalescer coalescer = new EventCoalescer(Duration.ofSeconds(30), myEvents::add);
+        for (int i = 0; i < 5; i++) {
+            coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_MODIFY"));
+        }
+        coalescer.submit(new Event(".txt", "other.txt", "/test/path", "ENTRY_MODIFY"));
+        coalescer.flush();
+
+        assertEquals(2, myEvents.size(), "A burst on one file should become one event.");
+        assertEquals(5, myEvents.get(0).getCount(), "The event should count the burst.");
+        assertFalse(myEvents.get(0).getFirstTimeStamp().isAfter(myEvents.get(0).getTimeStamp()),
+                "The first time stamp should not be after the last.");
+        assertEquals(1, myEvents.get(1).getCount(), "A single event should be passed on unchanged.");
+        coalescer.close();
+    }
+
+    @Test
+    void terminalDeleteIsKept() {
+        EventCoalescer coalescer = new EventCoalescer(Duration.ofSeconds(30), myEvents::add);
+        coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_CREATE"));
+        coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_MODIFY"));
+        coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_DELETE"));
+        coalescer.close();
+
+        assertEquals(1, myEvents.size(), "The burst should become one event.");
+        assertEquals("ENTRY_DELETE", myEvents.get(0).geEventKind(), "A burst ending in a delete should be a delete.");
+    }
+
+    @Test
+    void closeWhilePassingOn() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EventCoalescer coalescer = new EventCoalescer(Duration.ofMillis(20), theEvent -> {
+            try {
+                entered.countDown();
+                release.await();
+                myEvents.add(theEvent);
+            } catch (InterruptedException theE) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            coalescer.submit(new Event(".txt", "file" + i + ".txt", "/test/path", "ENTRY_DELETE"));
+        }
+        assertTrue(entered.await(5, TimeUnit.SECONDS), "The quiet bursts should be passed on.");
+        Thread closer = new Thread(coalescer::close);
+        closer.start();
+        closer.join(100);
+        release.countDown();
+        closer.join();
+
+        assertEquals(5, myEvents.size(), "Closing should not lose bursts that are being passed on.");
+    }
+
+    @Test
+    void createThenModifyIsCreate() {
+        EventCoalescer coalescer = new EventCoalescer(Duration.ofSeconds(30), myEvents::add);
+        coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_CREATE"));
+        coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_MODIFY"));
+        coalescer.close();
+
+        assertEquals("ENTRY_CREATE", myEvents.get(0).geEventKind(), "A burst starting with a create should be a create.");
+    }
+
+    @Test
+    void quietWindow() throws InterruptedException {
+        EventCoalescer coalescer = new EventCoalescer(Duration.ofMillis(20), myEvents::add);
+        coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_MODIFY"));
+        coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_MODIFY"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (myEvents.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, myEvents.size(), "A quiet burst should be passed on without a flush.");
+        assertEquals(0, coalescer.pending(), "No burst should be left waiting.");
+        coalescer.close();
+    }
+
+    @Test
+    void busyFileIsNotHeldForever() throws InterruptedException {
+        EventCoalescer coalescer = new EventCoalescer(Duration.ofMillis(50), Duration.ofMillis(200), myEvents::add);
+        long deadline = System.currentTimeMillis() + 600;
+        int submitted = 0;
+        while (System.currentTimeMillis() < deadline) {
+            coalescer.submit(new Event(".log", "app.log", "/test/path", "ENTRY_MODIFY"));
+            submitted++;
+            Thread.sleep(10);
+        }
+
+        assertFalse(myEvents.isEmpty(), "A file that never goes quiet should still be passed on.");
+        assertEquals(1, coalescer.pending(), "Only the newest burst should be waiting.");
+        coalescer.close();
+        assertEquals(submitted, myEvents.stream().mapToInt(Event::getCount).sum(),
+                "Every event should be counted in some burst.");
+    }
+
+    @Test
+    void holdShorterThanWindow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new EventCoalescer(Duration.ofSeconds(1), Duration.ofMillis(10), myEvents::add),
+                "A hold time shorter than the window should be rejected.");
+    }
+
+    @Test
+    void submitAfterClose() {
+        EventCoalescer coalescer = new EventCoalescer(Duration.ofSeconds(1), myEvents::add);
+        coalescer.close();
+
+        assertThrows(IllegalStateException.class,
+                () -> coalescer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_CREATE")),
+                "Submitting to a closed coalescer should throw.");
+    }
+}
@@ -0,0 +1,101 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventJournalTest {
+
+    @TempDir
+    Path myDirectory;
+
+    private static List<Event> events(int theCount) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < theCount; i++) {
+            events.add(new Event(".txt", "file" + i + ".txt", "/test/journal", "ENTRY_MODIFY"));
+        }
+        return events;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(myDirectory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void replay() throws IOException {
+        EventJournal journal = new EventJournal(myDirectory, 1024);
+        List<Event> written = events(50);
+        journal.append(written.subList(0, 20));
+        journal.append(written.subList(20, 50));
+        assertTrue(segmentCount() > 1, "Full segments should rotate to new ones.");
+
+        List<Event> replayed = new EventJournal(myDirectory, 1024).replay(0);
+        assertEquals(written.stream().map(Event::getFileName).toList(),
+                replayed.stream().map(Event::getFileName).toList(), "Every event should be replayed in order.");
+        assertEquals(written.get(0).getTimeStamp().withNano(0),
+                replayed.get(0).getTimeStamp().withNano(0), "Replayed events should keep their time.");
+    }
+
+    @Test
+    void damagedRecordEndsReplay() throws IOException {
+        EventJournal journal = new EventJournal(myDirectory, 4096);
+        journal.append(events(3));
+        Path segment;
+        try (Stream<Path> files = Files.list(myDirectory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int last = 0;
+        for (int i = 0; i < 2; i++) {
+            last += 8 + ((bytes[last] & 0xff) << 24 | (bytes[last + 1] & 0xff) << 16
+                    | (bytes[last + 2] & 0xff) << 8 | bytes[last + 3] & 0xff);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), last + 10);
+        }
+
+        assertEquals(2, new EventJournal(myDirectory, 4096).replay(0).size(),
+                "Replay should stop at a record whose checksum fails.");
+    }
+
+    @Test
+    void replaySkipsSavedRecords() throws IOException {
+        EventJournal journal = new EventJournal(myDirectory, 1024);
+        journal.append(events(20));
+        long saved = journal.lastRecord();
+        journal.rotate();
+        journal.append(events(3));
+
+        EventJournal reopened = new EventJournal(myDirectory, 1024);
+        assertEquals(3, reopened.replay(saved).size(), "Records a save covered should not be replayed.");
+        assertEquals(1, segmentCount(), "Segments holding only saved records should be deleted on replay.");
+        assertEquals(saved + 3, reopened.lastRecord(), "Later records should be numbered after the replayed ones.");
+    }
+
+    @Test
+    void truncate() throws IOException {
+        EventJournal journal = new EventJournal(myDirectory, 1024);
+        journal.append(events(20));
+        long marker = journal.rotate();
+        journal.append(events(1));
+        journal.truncate(marker);
+        assertEquals(1, new EventJournal(myDirectory, 1024).replay(0).size(),
+                "Only events written after the rotation should remain.");
+
+        journal.clear();
+        assertEquals(0, segmentCount(), "Clear should delete every segment.");
+    }
+}
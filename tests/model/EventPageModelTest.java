@@ -0,0 +1,75 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventPageModelTest {
+
+    private static final int EVENT_COUNT = 23;
+
+    private String myPath;
+
+    @BeforeEach
+    void setUp() throws DatabaseException {
+        DBManager.getDBManager().connect();
+        myPath = "/test/paged" + System.nanoTime();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events.add(new Event(".txt", String.format("file%02d.txt", i), myPath, "ENTRY_CREATE"));
+        }
+        DBManager.getDBManager().appendEvents(events);
+    }
+
+    private static <T> T onEDT(Supplier<T> theCall) throws Exception {
+        AtomicReference<T> result = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> result.set(theCall.get()));
+        return result.get();
+    }
+
+    private static <T> T await(Supplier<T> theCall) throws Exception {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        T result = onEDT(theCall);
+        while (result == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            result = onEDT(theCall);
+        }
+        return result;
+    }
+
+    @Test
+    void pagesThroughResults() throws Exception {
+        EventPageModel model = new EventPageModel(
+                new SearchCriteria.Builder().path(myPath, SearchCriteria.Match.EXACT).build(), 5);
+        try {
+            assertEquals(EVENT_COUNT, await(() -> model.getRowCount() == EVENT_COUNT ? model.getRowCount() : null),
+                    "The row count should arrive in the background.");
+            assertEquals("file00.txt", await(() -> model.getValueAt(0, 0)), "The first page should load.");
+            assertEquals("file22.txt", await(() -> model.getValueAt(22, 0)),
+                    "A page far from the first should load by its keyset.");
+            assertEquals("file13.txt", await(() -> model.getValueAt(13, 0)), "A page in between should load.");
+            assertEquals(myPath, onEDT(() -> model.getValueAt(13, 2)), "Every column of a loaded row should be set.");
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    void emptyResults() throws Exception {
+        EventPageModel model = new EventPageModel(
+                new SearchCriteria.Builder().path("/test/none", SearchCriteria.Match.EXACT).build(), 5);
+        try {
+            Thread.sleep(100);
+            assertEquals(0, (int) onEDT(model::getRowCount), "No rows should be shown for an empty search.");
+        } finally {
+            model.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventWriterTest {
+
+    private List<List<Event>> myBatches;
+    private EventWriter.Sink mySink;
+
+    @BeforeEach
+    void setUp() {
+        myBatches = Collections.synchronizedList(new ArrayList<>());
+        mySink = theEvents -> myBatches.add(new ArrayList<>(theEvents));
+    }
+
+    @Test
+    void flush() throws DatabaseException {
+        EventWriter writer = new EventWriter(mySink, new FlushPolicy(100, Duration.ofSeconds(30)));
+        for (int i = 0; i < 10; i++) {
+            writer.submit(new Event(".txt", "file" + i + ".txt", "/test/path", "ENTRY_CREATE"));
+        }
+        assertTimeout(Duration.ofSeconds(5), writer::flush, "Flush should not wait out the batch delay.");
+
+        assertEquals(10, countWritten(), "Flush should write every submitted event.");
+        writer.close();
+    }
+
+    @Test
+    void batchSizeLimit() throws DatabaseException {
+        EventWriter writer = new EventWriter(mySink, new FlushPolicy(4, Duration.ofSeconds(30)));
+        for (int i = 0; i < 10; i++) {
+            writer.submit(new Event(".txt", "file" + i + ".txt", "/test/path", "ENTRY_MODIFY"));
+        }
+        writer.close();
+
+        assertEquals(10, countWritten(), "Close should write every submitted event.");
+        for (List<Event> batch : myBatches) {
+            assertTrue(batch.size() <= 4, "Batches should not be larger than the policy allows.");
+        }
+    }
+
+    @Test
+    void maxDelay() throws InterruptedException, DatabaseException {
+        EventWriter writer = new EventWriter(mySink, new FlushPolicy(100, Duration.ofMillis(10)));
+        writer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_DELETE"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countWritten() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, countWritten(), "A partial batch should be written once its delay has passed.");
+        writer.close();
+    }
+
+    @Test
+    void submitAfterClose() throws DatabaseException {
+        EventWriter writer = new EventWriter(mySink, FlushPolicy.DEFAULT);
+        writer.close();
+
+        assertThrows(IllegalStateException.class,
+                () -> writer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_CREATE")));
+    }
+
+    @Test
+    void failedWrite() throws DatabaseException {
+        List<Event> published = Collections.synchronizedList(new ArrayList<>());
+        EventWriter writer = new EventWriter(theEvents -> {
+            throw new DatabaseException("disk full");
+        }, new FlushPolicy(100, Duration.ofSeconds(30)), published::addAll);
+        writer.submit(new Event(".txt", "file.txt", "/test/path", "ENTRY_DELETE"));
+
+        assertThrows(DatabaseException.class, writer::flush, "Flush should report events that were not written.");
+        assertTrue(published.isEmpty(), "Events that were not written should not be passed on.");
+        assertThrows(DatabaseException.class, writer::close, "Close should report events that were never written.");
+    }
+
+    @Test
+    void failedWriteIsRetried() throws DatabaseException {
+        List<Event> published = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean isFull = new AtomicBoolean(true);
+        EventWriter writer = new EventWriter(theEvents -> {
+            if (isFull.get()) {
+                throw new DatabaseException("disk full");
+            }
+            mySink.write(theEvents);
+        }, new FlushPolicy(100, Duration.ofSeconds(30)), published::addAll);
+        writer.submit(new Event(".txt", "first.txt", "/test/path", "ENTRY_CREATE"));
+        assertThrows(DatabaseException.class, writer::flush, "Flush should report events that were not written.");
+
+        isFull.set(false);
+        writer.submit(new Event(".txt", "second.txt", "/test/path", "ENTRY_CREATE"));
+        writer.flush();
+
+        assertEquals(2, countWritten(), "Held events should be written with the next batch.");
+        assertEquals("first.txt", myBatches.get(0).get(0).getFileName(), "Held events should keep their order.");
+        assertEquals(2, published.size(), "Held events should be passed on once written.");
+        writer.close();
+    }
+
+    @Test
+    void submitWhileInterrupted() throws DatabaseException {
+        EventWriter writer = new EventWriter(mySink, new FlushPolicy(1, Duration.ofSeconds(30)));
+        Thread.currentThread().interrupt();
+        for (int i = 0; i < 100; i++) {
+            writer.submit(new Event(".txt", "file" + i + ".txt", "/test/path", "ENTRY_DELETE"));
+        }
+        assertTrue(Thread.interrupted(), "Submit should keep the interrupt status.");
+        writer.close();
+
+        assertEquals(100, countWritten(), "An interrupt should not drop submitted events.");
+    }
+
+    @Test
+    void invalidPolicy() {
+        assertThrows(IllegalArgumentException.class, () -> new FlushPolicy(0, Duration.ofMillis(10)));
+        assertThrows(IllegalArgumentException.class, () -> new FlushPolicy(10, Duration.ofMillis(-1)));
+        assertThrows(IllegalArgumentException.class, () -> new FlushPolicy(10, null));
+    }
+
+    private int countWritten() {
+        synchronized (myBatches) {
+            return myBatches.stream().mapToInt(List::size).sum();
+        }
+    }
+}
@@ -3,31 +3,37 @@ package model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Vector;
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class LogListModelTest {
 
     private LogListModel logListModel;
-    private Object[] validRow;
-    private Vector<String> validRowVector;
+    private Event validEvent;
+    private List<TableModelEvent> myChanges;
 
     @BeforeEach
     void setUp() {
-        logListModel = new LogListModel();
-        validRow = new Object[]{".txt", "example.txt", "/user/home", "Created", "2025-03-20 12:00:00"};
-        validRowVector = new Vector<>();
-        validRowVector.add(".txt");
-        validRowVector.add("example.txt");
-        validRowVector.add("/user/home");
-        validRowVector.add("Created");
-        validRowVector.add("2025-03-20 12:00:00");
+        logListModel = new LogListModel(4);
+        validEvent = new Event(".txt", "example.txt", "/user/home", "ENTRY_CREATE");
+        myChanges = new ArrayList<>();
+        logListModel.addTableModelListener(myChanges::add);
+    }
+
+    private static List<Event> events(int theFirst, int theCount) {
+        List<Event> events = new ArrayList<>();
+        for (int i = theFirst; i < theFirst + theCount; i++) {
+            events.add(new Event(".txt", "file" + i + ".txt", "/user/home", "ENTRY_MODIFY"));
+        }
+        return events;
     }
 
     @Test
     void clearTable() {
-        logListModel.addRow(validRow);
+        logListModel.addEvent(validEvent);
         assertEquals(1, logListModel.getRowCount());
 
         logListModel.clearTable();
@@ -35,19 +41,64 @@ class LogListModelTest {
     }
 
     @Test
-    void addRow() {
+    void addEvent() {
         assertEquals(0, logListModel.getRowCount());
 
-        logListModel.addRow(validRow);
+        logListModel.addEvent(validEvent);
         assertEquals(1, logListModel.getRowCount());
+        assertEquals(".txt", logListModel.getValueAt(0, 0), "The first column should be the extension.");
+        assertEquals("example.txt", logListModel.getValueAt(0, 1), "The second column should be the file name.");
+        assertEquals("/user/home", logListModel.getValueAt(0, 2), "The third column should be the path.");
+        assertEquals("ENTRY_CREATE", logListModel.getValueAt(0, 3), "The fourth column should be the event kind.");
+        assertEquals(validEvent.getTimeStamp(), logListModel.getValueAt(0, 4), "The last column should be the time.");
     }
 
     @Test
-    void testAddRow() {
-        assertEquals(0, logListModel.getRowCount());
+    void addEventsFiresOneInsert() {
+        logListModel.addEvents(events(0, 3));
+        assertEquals(1, myChanges.size(), "A batch should fire one change.");
+        assertEquals(TableModelEvent.INSERT, myChanges.getFirst().getType(), "The change should be an insert.");
+        assertEquals(0, myChanges.getFirst().getFirstRow(), "The insert should start at the first new row.");
+        assertEquals(2, myChanges.getFirst().getLastRow(), "The insert should end at the last new row.");
+    }
 
-        logListModel.addRow(validRowVector);
-        assertEquals(1, logListModel.getRowCount());
+    @Test
+    void windowDropsOldest() {
+        logListModel.addEvents(events(0, 3));
+        myChanges.clear();
+        logListModel.addEvents(events(3, 3));
+        assertEquals(4, logListModel.getRowCount(), "The model should keep no more rows than its window.");
+        assertEquals("file2.txt", logListModel.getValueAt(0, 1), "The oldest rows should leave the view.");
+        assertEquals("file5.txt", logListModel.getValueAt(3, 1), "The newest row should be last.");
+        assertEquals(2, logListModel.getDroppedCount(), "Rows pushed out of view should be counted.");
+        assertEquals(TableModelEvent.DELETE, myChanges.get(0).getType(), "Dropped rows should be reported as deleted.");
+        assertEquals(1, myChanges.get(0).getLastRow(), "Both dropped rows should be reported.");
+        assertEquals(1, myChanges.get(1).getFirstRow(), "The insert should follow the row that stayed.");
+    }
+
+    @Test
+    void batchLargerThanWindow() {
+        logListModel.addEvents(events(0, 10));
+        assertEquals(4, logListModel.getRowCount(), "The model should keep no more rows than its window.");
+        assertEquals("file6.txt", logListModel.getValueAt(0, 1), "Only the newest rows of the batch should stay.");
+        assertEquals(1, myChanges.size(), "A batch into an empty model should fire one change.");
+        assertEquals(TableModelEvent.INSERT, myChanges.getFirst().getType(), "The change should be an insert.");
+        assertEquals(0, myChanges.getFirst().getFirstRow(), "The insert should start at the first row.");
+        assertEquals(3, myChanges.getFirst().getLastRow(), "The insert should cover the whole window.");
+    }
+
+    @Test
+    void batchLargerThanWindowReplacesRows() {
+        logListModel.addEvents(events(0, 2));
+        myChanges.clear();
+        logListModel.addEvents(events(2, 6));
+        assertEquals("file4.txt", logListModel.getValueAt(0, 1), "Only the newest rows of the batch should stay.");
+        assertEquals(4, logListModel.getDroppedCount(), "The old rows and the start of the batch should be counted.");
+        assertEquals(TableModelEvent.UPDATE, myChanges.get(0).getType(), "The rows in view should be reported as replaced.");
+        assertEquals(1, myChanges.get(0).getLastRow(), "Both replaced rows should be reported.");
+        assertEquals(TableModelEvent.INSERT, myChanges.get(1).getType(), "The new rows should be reported as inserted.");
+        assertEquals(2, myChanges.get(1).getFirstRow(), "The insert should follow the replaced rows.");
+        assertEquals(3, myChanges.get(1).getLastRow(), "The insert should end at the last row of the window.");
     }
 
     @Test
@@ -55,4 +106,4 @@ class LogListModelTest {
         assertFalse(logListModel.isCellEditable(0, 0));
         assertFalse(logListModel.isCellEditable(1, 1));
     }
-}
\ No newline at end of file
+}
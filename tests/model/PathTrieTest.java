@@ -0,0 +1,72 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathTrieTest {
+
+    private PathTrie<String> myTrie;
+    private Path myHome;
+
+    @BeforeEach
+    void setUp() {
+        myTrie = new PathTrie<>();
+        myHome = Path.of(System.getProperty("user.home")).toAbsolutePath();
+    }
+
+    @Test
+    void longestMatch() {
+        myTrie.put(myHome, "home");
+        myTrie.put(myHome.resolve("projects"), "projects");
+
+        assertEquals("projects", myTrie.longestMatch(myHome.resolve("projects/app/Main.java")),
+                "The most specific root should be found.");
+        assertEquals("home", myTrie.longestMatch(myHome.resolve("notes.txt")));
+        assertEquals("home", myTrie.longestMatch(myHome.resolve("projectsOld/file.txt")),
+                "Matching should be by whole name components.");
+        assertEquals("projects", myTrie.longestMatch(myHome.resolve("projects")));
+        assertNull(myTrie.longestMatch(myHome.getParent()), "An ancestor of every root should not match.");
+    }
+
+    @Test
+    void remove() {
+        myTrie.put(myHome, "home");
+        myTrie.put(myHome.resolve("projects"), "projects");
+        myTrie.remove(myHome.resolve("projects"));
+
+        assertEquals("home", myTrie.longestMatch(myHome.resolve("projects/app/Main.java")));
+        assertNull(myTrie.get(myHome.resolve("projects")));
+
+        myTrie.remove(myHome);
+        assertNull(myTrie.longestMatch(myHome.resolve("notes.txt")));
+    }
+
+    @Test
+    void get() {
+        myTrie.put(myHome, "home");
+
+        assertEquals("home", myTrie.get(myHome));
+        assertNull(myTrie.get(myHome.resolve("child")), "Only exact paths should be returned by get.");
+    }
+
+    @Test
+    void rootAndRelativePaths() {
+        Path root = myHome.getRoot();
+        myTrie.put(root, "root");
+        myTrie.put(Path.of("relative", "dir"), "relative");
+
+        assertEquals("root", myTrie.longestMatch(myHome), "The root should match every absolute path.");
+        assertEquals("root", myTrie.get(root), "The root should be stored on its own.");
+        assertEquals("relative", myTrie.longestMatch(Path.of("relative", "dir", "file.txt")));
+        assertNull(myTrie.longestMatch(Path.of("dir")), "A relative path should not match the root.");
+    }
+
+    @Test
+    void putNull() {
+        assertThrows(IllegalArgumentException.class, () -> myTrie.put(myHome, null));
+    }
+}
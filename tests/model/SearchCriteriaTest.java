@@ -0,0 +1,156 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCriteriaTest {
+
+    private static List<String> search(SearchCriteria theCriteria) throws DatabaseException {
+        return DBManager.getDBManager().read(
+                "SELECT filename FROM event_log WHERE " + theCriteria.getCondition() + " ORDER BY id", theStatement -> {
+                    theCriteria.bind(theStatement, 1);
+                    List<String> names = new ArrayList<>();
+                    try (ResultSet res = theStatement.executeQuery()) {
+                        while (res.next()) {
+                            names.add(res.getString(1));
+                        }
+                    }
+                    return names;
+                });
+    }
+
+    private static String plan(SearchCriteria theCriteria) throws DatabaseException {
+        return DBManager.getDBManager().read(
+                "EXPLAIN QUERY PLAN SELECT filename FROM event_log WHERE " + theCriteria.getCondition(), theStatement -> {
+                    theCriteria.bind(theStatement, 1);
+                    StringBuilder details = new StringBuilder();
+                    try (ResultSet res = theStatement.executeQuery()) {
+                        while (res.next()) {
+                            details.append('\n').append(res.getString("detail"));
+                        }
+                    }
+                    return details.toString();
+                });
+    }
+
+    @Test
+    void emptyCriteria() {
+        assertTrue(SearchCriteria.ALL.isEmpty(), "Criteria with nothing set should match everything.");
+        assertEquals("1=1", SearchCriteria.ALL.getCondition(), "Empty criteria should have no conditions.");
+    }
+
+    @Test
+    void sameShapeSameSql() {
+        SearchCriteria first = new SearchCriteria.Builder().fileName("abc", SearchCriteria.Match.CONTAINS)
+                .kind("ENTRY_CREATE").build();
+        SearchCriteria second = new SearchCriteria.Builder().fileName("b'; DROP TABLE events; --",
+                SearchCriteria.Match.CONTAINS).kind("ENTRY_DELETE").build();
+        assertEquals(first.getCondition(), second.getCondition(), "Searches of one shape should share their SQL.");
+        assertFalse(second.getCondition().contains("DROP"), "User input should never be part of the SQL.");
+        assertEquals(List.of("\"b'; DROP TABLE events; --\"", "%b'; DROP TABLE events; --%", "ENTRY_DELETE"),
+                second.getParameters(),
+                "User input should be passed as parameters.");
+    }
+
+    @Test
+    void extensionGetsDot() {
+        assertEquals(List.of(".txt"), new SearchCriteria.Builder().extension("txt").build().getParameters(),
+                "An extension without a dot should get one.");
+    }
+
+    @Test
+    void extensionContains() throws DatabaseException {
+        DBManager.getDBManager().connect();
+        String root = "/test/extension" + System.nanoTime();
+        DBManager.getDBManager().appendEvents(List.of(
+                new Event(".TXT", "upper.TXT", root, "ENTRY_CREATE"),
+                new Event(".md", "notes.md", root, "ENTRY_CREATE")));
+
+        assertEquals(List.of("upper.TXT"), search(new SearchCriteria.Builder().path(root, SearchCriteria.Match.EXACT)
+                        .extension("tx", SearchCriteria.Match.CONTAINS).build()),
+                "Extension text should match anywhere in the extension, ignoring case.");
+    }
+
+    @Test
+    void prefixAndContains() throws DatabaseException {
+        DBManager.getDBManager().connect();
+        String root = "/test/criteria" + System.nanoTime();
+        DBManager.getDBManager().appendEvents(List.of(
+                new Event(".txt", "100%_done.txt", root, "ENTRY_CREATE"),
+                new Event(".txt", "100xxdone.txt", root + "/sub", "ENTRY_CREATE"),
+                new Event(".txt", "other.txt", root + "-sibling", "ENTRY_CREATE")));
+
+        assertEquals(List.of("100%_done.txt", "100xxdone.txt"), search(new SearchCriteria.Builder()
+                        .path(root, SearchCriteria.Match.PREFIX).fileName("100", SearchCriteria.Match.PREFIX).build()),
+                "A prefix should match the start of the column.");
+        assertEquals(List.of("100%_done.txt"), search(new SearchCriteria.Builder()
+                        .path(root, SearchCriteria.Match.PREFIX).fileName("%_", SearchCriteria.Match.CONTAINS).build()),
+                "Wildcard characters in the text should match literally.");
+    }
+
+    @Test
+    void prefixEnd() {
+        assertEquals("ac", SearchCriteria.prefixEnd("ab"), "The last character should be raised.");
+        assertEquals("a" + Character.toString(0x10000), SearchCriteria.prefixEnd("a\uffff"),
+                "The code point after U+FFFF should follow it.");
+        assertEquals("a\ue000", SearchCriteria.prefixEnd("a\ud7ff"), "The surrogate range should be skipped.");
+        assertEquals("b", SearchCriteria.prefixEnd("a" + Character.toString(Character.MAX_CODE_POINT)),
+                "A code point that cannot be raised should be dropped.");
+        assertNull(SearchCriteria.prefixEnd(Character.toString(Character.MAX_CODE_POINT)),
+                "A prefix of only the largest code point should have no end.");
+    }
+
+    @Test
+    void prefixPastBmp() throws DatabaseException {
+        DBManager.getDBManager().connect();
+        String root = "/test/bmp" + System.nanoTime();
+        String emoji = Character.toString(0x1F600);
+        DBManager.getDBManager().appendEvents(List.of(
+                new Event(".txt", "a\uffffz.txt", root, "ENTRY_CREATE"),
+                new Event(".txt", "a" + emoji + ".txt", root, "ENTRY_CREATE"),
+                new Event(".txt", "b.txt", root, "ENTRY_CREATE")));
+
+        assertEquals(List.of("a\uffffz.txt"), search(new SearchCriteria.Builder().path(root, SearchCriteria.Match.EXACT)
+                        .fileName("a\uffff", SearchCriteria.Match.PREFIX).build()),
+                "A prefix ending in U+FFFF should match.");
+        assertEquals(List.of("a\uffffz.txt", "a" + emoji + ".txt"), search(new SearchCriteria.Builder()
+                        .path(root, SearchCriteria.Match.EXACT).fileName("a", SearchCriteria.Match.PREFIX).build()),
+                "Names with characters outside the BMP should match their prefix.");
+        assertEquals(List.of("a" + emoji + ".txt"), search(new SearchCriteria.Builder().path(root, SearchCriteria.Match.EXACT)
+                        .fileName("a" + emoji, SearchCriteria.Match.PREFIX).build()),
+                "A prefix ending in a surrogate pair should match.");
+    }
+
+    @Test
+    void containsUsesTrigramIndex() throws DatabaseException {
+        DBManager.getDBManager().connect();
+        String root = "/test/trigram" + System.nanoTime();
+        DBManager.getDBManager().appendEvents(List.of(
+                new Event(".txt", "Quarterly \"Report\".txt", root + "/finance", "ENTRY_CREATE"),
+                new Event(".txt", "notes.txt", root + "/finance", "ENTRY_CREATE"),
+                new Event(".txt", "report.txt", root + "/other", "ENTRY_CREATE")));
+
+        SearchCriteria inPath = new SearchCriteria.Builder()
+                .path(root.substring(6) + "/fin", SearchCriteria.Match.CONTAINS).fileName("\"report\"", SearchCriteria.Match.CONTAINS).build();
+        assertEquals(List.of("Quarterly \"Report\".txt"), search(inPath),
+                "Text anywhere in the path and file name should match, ignoring case.");
+        String plan = plan(inPath);
+        assertFalse(plan.lines().anyMatch("SCAN e"::equals), "A substring search should not scan the events: " + plan);
+    }
+
+    @Test
+    void prefixUsesIndex() throws DatabaseException {
+        DBManager.getDBManager().connect();
+        for (SearchCriteria criteria : List.of(
+                new SearchCriteria.Builder().path("/home", SearchCriteria.Match.PREFIX).build(),
+                new SearchCriteria.Builder().fileName("report", SearchCriteria.Match.PREFIX).build())) {
+            String plan = plan(criteria);
+            assertFalse(plan.contains("\nSCAN "), "A prefix search should use an index: " + plan);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionLogTest {
+
+    @TempDir
+    Path myDirectory;
+
+    private static List<Event> events(String... theNames) {
+        List<Event> events = new ArrayList<>();
+        for (String name : theNames) {
+            events.add(new Event(".txt", name, "/test/session", "ENTRY_CREATE"));
+        }
+        return events;
+    }
+
+    private static List<String> saveNames(SessionLog theLog) throws DatabaseException {
+        List<String> names = new ArrayList<>();
+        theLog.save((theEvents, theLastRecord) -> theEvents.forEach(theEvent -> names.add(theEvent.getFileName())));
+        return names;
+    }
+
+    private static void copyJournal(Path theFrom, Path theTo) {
+        try (Stream<Path> files = Files.list(theFrom.resolve("journal"))) {
+            Files.createDirectories(theTo.resolve("journal"));
+            for (Path file : files.toList()) {
+                Files.copy(file, theTo.resolve("journal").resolve(file.getFileName()));
+            }
+        } catch (IOException theE) {
+            throw new UncheckedIOException(theE);
+        }
+    }
+
+    @Test
+    void appendAndSave() throws DatabaseException {
+        SessionLog log = new SessionLog(myDirectory, 10, 1024, 0);
+        log.append(events("a", "b"));
+        log.append(events("c"));
+        assertEquals(3, log.size(), "Appended events should be counted.");
+        assertEquals(List.of("a", "b", "c"), saveNames(log), "Save should hand over every event in order.");
+        assertEquals(0, log.size(), "Saved events should leave the log.");
+    }
+
+    @Test
+    void spillKeepsOrder() throws DatabaseException {
+        SessionLog log = new SessionLog(myDirectory, 2, 1024, 0);
+        log.append(events("a", "b"));
+        log.append(events("c"));
+        assertTrue(Files.exists(myDirectory.resolve("session.spill")), "Events over the limit should be spilled.");
+        assertEquals(3, log.size(), "Spilled events should be counted.");
+        assertEquals(List.of("a", "b", "c"), saveNames(log), "Spilled events should be saved before those in memory.");
+        assertFalse(Files.exists(myDirectory.resolve("session.saving")), "A successful save should remove its file.");
+    }
+
+    @Test
+    void clear() throws DatabaseException {
+        SessionLog log = new SessionLog(myDirectory, 1, 1024, 0);
+        log.append(events("a", "b"));
+        log.clear();
+        assertEquals(0, log.size(), "Clear should discard every event.");
+        assertFalse(Files.exists(myDirectory.resolve("session.spill")), "Clear should delete the spill file.");
+        assertTrue(saveNames(log).isEmpty(), "Nothing should be saved after a clear.");
+    }
+
+    @Test
+    void failedSaveKeepsEvents() throws DatabaseException {
+        SessionLog log = new SessionLog(myDirectory, 2, 1024, 0);
+        log.append(events("a", "b"));
+        log.append(events("c"));
+        assertThrows(DatabaseException.class, () -> log.save((theEvents, theLastRecord) -> {
+            throw new DatabaseException("Test failure");
+        }), "A failed save should be reported.");
+        log.append(events("d"));
+        assertEquals(4, log.size(), "A failed save should keep its events.");
+        assertEquals(List.of("a", "b", "c", "d"), saveNames(log), "The next save should hand over every event in order.");
+    }
+
+    @Test
+    void journalReplay() throws DatabaseException {
+        SessionLog log = new SessionLog(myDirectory, 100, 1024, 0);
+        log.append(events("a", "b"));
+
+        SessionLog recovered = new SessionLog(myDirectory, 100, 1024, 0);
+        assertEquals(2, recovered.size(), "Journaled events should be replayed after a crash.");
+        recovered.append(events("c"));
+        assertEquals(List.of("a", "b", "c"), saveNames(recovered), "Replayed events should be saved first.");
+        assertEquals(0, new SessionLog(myDirectory, 100, 1024, 0).size(), "Saved events should leave the journal.");
+    }
+
+    @Test
+    void savedJournalIsNotReplayed() throws DatabaseException, IOException {
+        Path crashed = Files.createDirectory(myDirectory.resolve("crashed"));
+        SessionLog log = new SessionLog(myDirectory, 100, 1024, 0);
+        log.append(events("a", "b"));
+        long[] saved = new long[1];
+        log.save((theEvents, theLastRecord) -> {
+            saved[0] = theLastRecord;
+            copyJournal(myDirectory, crashed);
+        });
+
+        assertEquals(2, new SessionLog(crashed, 100, 1024, 0).size(),
+                "Without a saved position the journal should be replayed.");
+        assertEquals(0, new SessionLog(crashed, 100, 1024, saved[0]).size(),
+                "A journal left behind after its events were saved should not be replayed.");
+    }
+
+    @Test
+    void unjournaledSessionIsNotReplayed() {
+        SessionLog log = new SessionLog(myDirectory, 100, 1024, 0);
+        log.setJournaled(false);
+        log.append(events("a", "b"));
+        assertEquals(0, new SessionLog(myDirectory, 100, 1024, 0).size(),
+                "Events appended with journaling off should not survive a restart.");
+    }
+
+    @Test
+    void failedSaveKeepsJournal() {
+        SessionLog log = new SessionLog(myDirectory, 100, 1024, 0);
+        log.setJournaled(true);
+        log.append(events("a"));
+        assertThrows(DatabaseException.class, () -> log.save((theEvents, theLastRecord) -> {
+            throw new DatabaseException("Test failure");
+        }), "A failed save should be reported.");
+        log.append(events("b"));
+        assertEquals(2, new SessionLog(myDirectory, 100, 1024, 0).size(),
+                "Events of a failed save should stay in the journal.");
+    }
+}
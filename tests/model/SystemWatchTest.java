@@ -2,11 +2,21 @@ package model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -43,6 +53,51 @@ class SystemWatchTest {
         assertThrows(IllegalStateException.class, systemWatch::stopWatch);
     }
 
+    @Test
+    void stopWhileRegistering(@TempDir Path theRoot) throws IOException {
+        for (int i = 0; i < 200; i++) {
+            Path dir = Files.createDirectories(theRoot.resolve("d" + i).resolve("sub"));
+            Files.writeString(dir.resolve("file.txt"), "x");
+        }
+        systemWatch.addDir(".txt", theRoot, true);
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured, true));
+        try {
+            for (int i = 0; i < 5; i++) {
+                systemWatch.startWatch();
+                systemWatch.stopWatch();
+            }
+        } finally {
+            System.setErr(err);
+        }
+        assertFalse(systemWatch.isRunning());
+        assertFalse(captured.toString().contains("is closed") || captured.toString().contains("Exception"),
+                "No task should reach a closed stage after stopping: " + captured);
+    }
+
+    @Test
+    void registerEvents(@TempDir Path theRoot) throws IOException, InterruptedException {
+        Files.createDirectories(theRoot.resolve("a").resolve("b"));
+        Files.writeString(theRoot.resolve("a").resolve("file.txt"), "x");
+        systemWatch.addDir(".txt", theRoot, true);
+        List<Object> started = new CopyOnWriteArrayList<>();
+        BlockingQueue<RegisterSummary> done = new LinkedBlockingQueue<>();
+        propertyChangeSupport.addPropertyChangeListener(ModelProperties.REGISTER_START,
+                theEvent -> started.add(theEvent.getNewValue()));
+        propertyChangeSupport.addPropertyChangeListener(ModelProperties.REGISTER_DONE,
+                theEvent -> done.add((RegisterSummary) theEvent.getNewValue()));
+
+        systemWatch.startWatch();
+        RegisterSummary summary = done.poll(10, TimeUnit.SECONDS);
+        systemWatch.stopWatch();
+
+        assertEquals(1, started.size(), "Registration should be announced once.");
+        assertNotNull(summary, "Registration should report when it is done.");
+        assertEquals(3, summary.getDirectories(), "Every directory in the tree should be counted.");
+        assertEquals(1, summary.getFiles(), "Every file in the tree should be counted.");
+    }
+
     @Test
     void clearLog() {
         assertDoesNotThrow(systemWatch::clearLog);
@@ -67,6 +122,21 @@ class SystemWatchTest {
         assertThrows(IllegalArgumentException.class, () -> systemWatch.addDir("", testDir, false), "It should not allow adding an empty extension.");
     }
 
+    @Test
+    void nestedRoots(@TempDir Path theRoot) throws IOException {
+        Path inner = Files.createDirectories(theRoot.resolve("inner").resolve("deep"));
+        systemWatch.addDir(".txt", theRoot, true);
+        systemWatch.addDir(".log", inner.getParent(), false);
+
+        assertEquals(inner.getParent(), systemWatch.filterFor(inner.getParent()).getRoot(),
+                "A non-recursive root should filter its own directory.");
+        assertEquals(theRoot, systemWatch.filterFor(inner).getRoot(),
+                "Below a non-recursive root the recursive root above it should filter.");
+        assertEquals(theRoot, systemWatch.filterFor(theRoot.resolve("other")).getRoot(),
+                "A recursive root should filter its whole tree.");
+        assertNull(systemWatch.filterFor(theRoot.getParent()), "A directory above every root has no filter.");
+    }
+
     @Test
     void removeDir() {
         Path testDir = Paths.get(System.getProperty("user.home"));
@@ -77,6 +147,11 @@ class SystemWatchTest {
         assertThrows(IllegalArgumentException.class, () -> systemWatch.removeDir(".txt", testDir, false), "It should not allow removing non-existent directory.");
     }
 
+    @Test
+    void getOverflowCount() {
+        assertEquals(0, systemWatch.getOverflowCount(), "No overflow should be counted before watching.");
+    }
+
     @Test
     void saveToDB() {
         assertDoesNotThrow(systemWatch::saveToDB);
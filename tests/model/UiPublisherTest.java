@@ -0,0 +1,87 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UiPublisherTest {
+
+    private static List<Event> events(int theFirst, int theCount) {
+        List<Event> events = new ArrayList<>();
+        for (int i = theFirst; i < theFirst + theCount; i++) {
+            events.add(new Event(".txt", "file" + i + ".txt", "/test/publisher", "ENTRY_MODIFY"));
+        }
+        return events;
+    }
+
+    private static void await(List<?> theList, int theSize) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (theList.size() < theSize && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void batchesOnEventDispatchThread() throws InterruptedException {
+        List<List<Event>> batches = new CopyOnWriteArrayList<>();
+        List<Event> received = new CopyOnWriteArrayList<>();
+        AtomicBoolean offEdt = new AtomicBoolean();
+        UiPublisher publisher = new UiPublisher(10, 1000, theBatch -> {
+            offEdt.compareAndSet(false, !SwingUtilities.isEventDispatchThread());
+            batches.add(theBatch);
+            received.addAll(theBatch);
+        }, (theRate, theSkipped) -> { });
+        try {
+            for (Event event : events(0, 200)) {
+                publisher.offer(event);
+            }
+            await(received, 200);
+            assertEquals(events(0, 200).stream().map(Event::getFileName).toList(),
+                    received.stream().map(Event::getFileName).toList(), "Every event should arrive in order.");
+            assertTrue(batches.size() < 200, "Events offered together should arrive in batches.");
+            assertFalse(offEdt.get(), "Batches should arrive on the event dispatch thread.");
+        } finally {
+            publisher.close();
+        }
+    }
+
+    @Test
+    void skipsWhatDoesNotFitInView() throws InterruptedException {
+        List<Event> received = new CopyOnWriteArrayList<>();
+        List<long[]> stats = new CopyOnWriteArrayList<>();
+        UiPublisher publisher = new UiPublisher(10, 5, received::addAll,
+                (theRate, theSkipped) -> stats.add(new long[] {theRate, theSkipped}));
+        try {
+            publisher.offer(events(0, 50));
+            await(stats, 1);
+            assertEquals(List.of("file45.txt", "file46.txt", "file47.txt", "file48.txt", "file49.txt"),
+                    received.stream().map(Event::getFileName).toList(), "Only the newest events should be shown.");
+            assertEquals(45, stats.getFirst()[1], "Skipped events should be counted.");
+            assertTrue(stats.getFirst()[0] > 0, "The rate of offered events should be reported.");
+        } finally {
+            publisher.close();
+        }
+    }
+
+    @Test
+    void clearDiscardsPending() throws InterruptedException {
+        List<Event> received = new CopyOnWriteArrayList<>();
+        UiPublisher publisher = new UiPublisher(1, 100, received::addAll, (theRate, theSkipped) -> { });
+        try {
+            publisher.offer(events(0, 10));
+            publisher.clear();
+            publisher.offer(events(10, 1));
+            await(received, 1);
+            assertEquals(List.of("file10.txt"), received.stream().map(Event::getFileName).toList(),
+                    "Events offered before a clear should not be shown.");
+        } finally {
+            publisher.close();
+        }
+    }
+}
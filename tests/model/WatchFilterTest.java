@@ -0,0 +1,47 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchFilterTest {
+
+    private final Path myRoot = Path.of(System.getProperty("user.home"));
+
+    @Test
+    void accepts() {
+        WatchFilter filter = new WatchFilter(myRoot, true, List.of(".txt", ".java"));
+
+        assertTrue(filter.accepts("notes.txt"));
+        assertTrue(filter.accepts("Main.java"));
+        assertFalse(filter.accepts("image.png"));
+        assertFalse(filter.accepts("txt"));
+    }
+
+    @Test
+    void acceptsEverything() {
+        WatchFilter filter = new WatchFilter(myRoot, false, List.of());
+
+        assertTrue(filter.accepts("image.png"));
+        assertTrue(filter.accepts("Makefile"));
+    }
+
+    @Test
+    void getRootAndRecursive() {
+        WatchFilter filter = new WatchFilter(myRoot, false, List.of(".txt"));
+
+        assertEquals(myRoot, filter.getRoot());
+        assertFalse(filter.isRecursive());
+    }
+
+    @Test
+    void extensionOf() {
+        assertEquals(".txt", WatchFilter.extensionOf("notes.txt"));
+        assertEquals(".gz", WatchFilter.extensionOf("archive.tar.gz"));
+        assertEquals("", WatchFilter.extensionOf(".gitignore"));
+        assertEquals("", WatchFilter.extensionOf("Makefile"));
+    }
+}